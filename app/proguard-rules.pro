@@ -23,4 +23,7 @@
 -keep interface com.mapsindoors.mapssdk.** { *; }
 -keep class com.mapsindoors.mapssdk.errors.** { *; }
 -keepclassmembers class com.mapsindoors.mapssdk.models.** { <fields>; }
--keep class com.mapsindoors.mapssdk.dbglog
\ No newline at end of file
+-keep class com.mapsindoors.mapssdk.dbglog
+
+# RouteJson builds routes through Gson, so the fields of the route models keep their names
+-keepclassmembers class com.mapsindoors.mapssdk.Route,com.mapsindoors.mapssdk.RouteLeg,com.mapsindoors.mapssdk.RouteStep,com.mapsindoors.mapssdk.RouteCoordinate { <fields>; }
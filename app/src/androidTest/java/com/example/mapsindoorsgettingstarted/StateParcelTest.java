@@ -0,0 +1,69 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.Route;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the fragment state models through a {@link Parcel}, as done when the state is saved.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StateParcelTest {
+
+    private static final List<MPLocation> LOCATIONS = Arrays.asList(
+            new MPLocation.Builder("a").setPosition(38.8975, -77.0374).setFloor(1).setName("Oval Office").build(),
+            new MPLocation.Builder("b").setPosition(38.8976, -77.0375).setFloor(0).setName("Kitchen").build());
+
+    @Test
+    public void locationListState_keepsKeyAndIds() {
+        LocationListState state = LocationListState.of(LOCATIONS);
+        LocationListState read = roundTrip(state, LocationListState.CREATOR);
+        assertEquals(state.mKey, read.mKey);
+        assertArrayEquals(new String[]{"a", "b"}, read.mLocationIds);
+        assertSame(LOCATIONS, read.fromStore());
+    }
+
+    @Test
+    public void locationListState_updateReusesTheKey() {
+        LocationListState state = LocationListState.of(LOCATIONS);
+        List<MPLocation> paged = LOCATIONS.subList(0, 1);
+        LocationListState updated = state.update(paged);
+        assertEquals(state.mKey, updated.mKey);
+        assertArrayEquals(new String[]{"a"}, roundTrip(updated, LocationListState.CREATOR).mLocationIds);
+        assertSame(paged, updated.fromStore());
+    }
+
+    @Test
+    public void routeState_keepsKeyAndStops() {
+        Route route = new Gson().fromJson("{\"legs\":[]}", Route.class);
+        RouteState state = RouteState.of(route, LOCATIONS);
+        RouteState read = roundTrip(state, RouteState.CREATOR);
+        assertEquals(state.mRouteKey, read.mRouteKey);
+        assertArrayEquals(new String[]{"a", "b"}, read.mStopIds);
+        assertSame(route, read.getRoute());
+    }
+
+    private static <T extends Parcelable> T roundTrip(T state, Parcelable.Creator<T> creator) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return creator.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Draws cluster markers with the number of locations they hold. Markers that are still shown
+ * after an update are kept, so only the clusters that changed are added or removed.
+ * All methods must be called on the main thread.
+ */
+class ClusterMarkers {
+
+    private static final int ICON_SIZE_DP = 36;
+    //Counts above this share one icon
+    private static final int MAX_LABELED_COUNT = 99;
+
+    private final GoogleMap mMap;
+    private final float mDensity;
+    private final Map<String, Marker> mMarkers = new HashMap<>();
+    //Markers kept by the current update, reused between updates
+    private final Map<String, Marker> mKept = new HashMap<>();
+    private final Map<String, BitmapDescriptor> mIcons = new HashMap<>();
+
+    /**
+     * @param map the map to draw on
+     * @param density the display density, to size the icons
+     */
+    ClusterMarkers(@NonNull GoogleMap map, float density) {
+        mMap = map;
+        mDensity = density;
+    }
+
+    /**
+     * Starts an update, followed by {@link #add} for every cluster and then {@link #endUpdate}.
+     */
+    void beginUpdate() {
+        mKept.clear();
+    }
+
+    void add(double lat, double lng, int count) {
+        String key = lat + "," + lng + "," + count;
+        Marker marker = mMarkers.remove(key);
+        if (marker == null) {
+            String label = count > MAX_LABELED_COUNT ? MAX_LABELED_COUNT + "+" : Integer.toString(count);
+            marker = mMap.addMarker(new MarkerOptions()
+                    .position(new LatLng(lat, lng))
+                    .anchor(0.5f, 0.5f)
+                    .icon(icon(label)));
+        }
+        mKept.put(key, marker);
+    }
+
+    /**
+     * Removes the markers of clusters that were not added in this update.
+     */
+    void endUpdate() {
+        for (Marker marker : mMarkers.values()) {
+            marker.remove();
+        }
+        mMarkers.clear();
+        mMarkers.putAll(mKept);
+        mKept.clear();
+    }
+
+    void clear() {
+        beginUpdate();
+        endUpdate();
+    }
+
+    @NonNull
+    private BitmapDescriptor icon(@NonNull String label) {
+        BitmapDescriptor icon = mIcons.get(label);
+        if (icon == null) {
+            int size = Math.round(ICON_SIZE_DP * mDensity);
+            Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(Color.WHITE);
+            canvas.drawCircle(size / 2f, size / 2f, size / 2f, paint);
+            paint.setColor(Color.DKGRAY);
+            canvas.drawCircle(size / 2f, size / 2f, size / 2f - 2 * mDensity, paint);
+            paint.setColor(Color.WHITE);
+            paint.setTextAlign(Paint.Align.CENTER);
+            paint.setTextSize(size / 3f);
+            canvas.drawText(label, size / 2f, size / 2f - (paint.descent() + paint.ascent()) / 2, paint);
+            icon = BitmapDescriptorFactory.fromBitmap(bitmap);
+            mIcons.put(label, icon);
+        }
+        return icon;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Bounded set of warm floors, which evicts the floor viewed least recently. The data of a warm
+ * floor lives where it is used, like the cluster index in the {@link SearchResultCuller}, so the
+ * set only tracks which floors are warm and tells when one is evicted. A floor counts as viewed
+ * when {@link #view} is called, and when it is added, since floors are only added ahead of being
+ * viewed. Also counts floor switches to warm and cold floors. Not thread safe.
+ */
+class FloorCache {
+
+    /**
+     * Told about floors leaving the set, so their data can be released.
+     */
+    interface EvictionListener {
+        void onEvicted(int floor);
+    }
+
+    private final int mMaxFloors;
+    private final EvictionListener mListener;
+    //In view order, the floor viewed least recently first. Only the keys are used, a map keeps the view order
+    private final LinkedHashMap<Integer, Boolean> mFloors = new LinkedHashMap<>(16, 0.75f, true);
+    private int mWarmSwitches;
+    private int mColdSwitches;
+
+    /**
+     * @param maxFloors the maximum amount of floors to keep, at least one
+     */
+    FloorCache(int maxFloors, @NonNull EvictionListener listener) {
+        if (maxFloors < 1) {
+            throw new IllegalArgumentException("maxFloors must be at least 1");
+        }
+        mMaxFloors = maxFloors;
+        mListener = listener;
+    }
+
+    /**
+     * @return true if the floor is warm, without counting it as viewed
+     */
+    boolean contains(int floor) {
+        return mFloors.containsKey(floor);
+    }
+
+    /**
+     * Counts a floor as viewed, if it is warm.
+     * @return true if the floor is warm
+     */
+    boolean view(int floor) {
+        return mFloors.get(floor) != null;
+    }
+
+    /**
+     * Adds a warm floor, evicting the floors viewed least recently beyond the maximum.
+     */
+    void add(int floor) {
+        mFloors.put(floor, Boolean.TRUE);
+        trimTo(mMaxFloors);
+    }
+
+    /**
+     * Evicts the floors viewed least recently until at most the given amount is left.
+     */
+    void trimTo(int maxFloors) {
+        Iterator<Integer> iterator = mFloors.keySet().iterator();
+        while (mFloors.size() > Math.max(0, maxFloors) && iterator.hasNext()) {
+            int eldest = iterator.next();
+            iterator.remove();
+            mListener.onEvicted(eldest);
+        }
+    }
+
+    int size() {
+        return mFloors.size();
+    }
+
+    /**
+     * Counts a switch to a floor, warm if the floor was cached before the switch.
+     */
+    void recordSwitch(boolean warm) {
+        if (warm) {
+            mWarmSwitches++;
+        } else {
+            mColdSwitches++;
+        }
+    }
+
+    int getWarmSwitches() {
+        return mWarmSwitches;
+    }
+
+    int getColdSwitches() {
+        return mColdSwitches;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mFloors.size() + "/" + mMaxFloors + " floors " + mFloors.keySet() + ", " + mWarmSwitches + " warm and "
+                + mColdSwitches + " cold switches";
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.Building;
+import com.mapsindoors.mapssdk.Floor;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapControl;
+import com.mapsindoors.mapssdk.MapsIndoors;
+import com.mapsindoors.mapssdk.Route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Warms up floors before the user switches to them, so a switch does not wait for the work the app
+ * does per floor: the locations of the floor are collected, their display rules and icons are
+ * resolved into the {@link LocationIconCache}, and the search results and cluster index of the
+ * floor are built by the {@link SearchResultCuller}. While navigating the floors of the next route
+ * legs are warmed, otherwise the floors above and below the current one in the floor list of its
+ * building. The locations are grouped by floor once per data load. Warm floors are tracked
+ * in a {@link FloorCache}, which evicts the floor viewed least recently and is trimmed when memory
+ * runs low, releasing what the culler built for it. The time from selecting a floor to MapControl
+ * reporting the floor change, and the app having updated the floor, is measured through
+ * {@link Metrics}, apart for warm and cold floors.
+ * All methods must be called on the main thread.
+ */
+class FloorPrefetcher {
+
+    private static final String TAG = "FloorPrefetcher";
+    static final int MAX_WARM_FLOORS = 5;
+    //How many of the legs after the current one have their floor warmed while navigating
+    static final int LEGS_AHEAD = 2;
+    //Icons resolved per floor, the search list resolves the rest as they are scrolled to
+    private static final int MAX_ICONS_PER_FLOOR = 64;
+
+    private final MapControl mMapControl;
+    private final LocationIconCache mIconCache;
+    private final SearchResultCuller mSearchResultCuller;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final FloorCache mFloors;
+    //Floors being warmed in the background
+    private final Set<Integer> mPending = new HashSet<>();
+    //The locations of each floor, grouped on the background thread when first needed and only used there
+    private Map<Integer, List<MPLocation>> mLocationsByFloor;
+    //The floor of each leg of the route being navigated, or null when browsing
+    private int[] mLegFloors;
+    //The switch being measured, ended by the floor update of its floor
+    private Metrics.Span mSwitchSpan;
+    private int mSwitchFloor;
+    private boolean mSwitchWarm;
+
+    FloorPrefetcher(@NonNull MapControl mapControl, @NonNull LocationIconCache iconCache,
+                    @NonNull SearchResultCuller searchResultCuller) {
+        mMapControl = mapControl;
+        mIconCache = iconCache;
+        mSearchResultCuller = searchResultCuller;
+        mFloors = new FloorCache(MAX_WARM_FLOORS, mSearchResultCuller::releaseFloor);
+    }
+
+    /**
+     * Selects a floor on the map, unless it is already shown, and measures how long the switch takes.
+     */
+    void selectFloor(int floor) {
+        if (floor == mMapControl.getCurrentFloorIndex()) {
+            return;
+        }
+        mSwitchWarm = mFloors.contains(floor);
+        mFloors.recordSwitch(mSwitchWarm);
+        //A switch started before this one has finished is not measured
+        mSwitchFloor = floor;
+        mSwitchSpan = Metrics.begin();
+        mMapControl.selectFloor(floor);
+    }
+
+    /**
+     * Call when the floor shown has changed, by the user or by {@link #selectFloor}, after the app
+     * has updated what it shows for the floor.
+     * @param building the building the floor belongs to, or null outside of buildings
+     */
+    void onFloorChanged(@Nullable Building building, int floor) {
+        if (mSwitchSpan != null && floor == mSwitchFloor) {
+            Metrics.end(mSwitchSpan, mSwitchWarm ? Metrics.Stage.FLOOR_SWITCH_WARM : Metrics.Stage.FLOOR_SWITCH_COLD);
+            mSwitchSpan = null;
+        }
+        mFloors.view(floor);
+        if (mLegFloors == null && building != null) {
+            //Floor indices need not be consecutive, so the neighbours are taken from the building
+            int[] floors = sortedFloors(building.getFloors());
+            int position = Arrays.binarySearch(floors, floor);
+            if (position >= 0) {
+                if (position + 1 < floors.length) {
+                    prefetch(floors[position + 1]);
+                }
+                if (position > 0) {
+                    prefetch(floors[position - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the locations grouped by floor. Call when the solution data has been (re)loaded.
+     */
+    void invalidate() {
+        if (!mExecutor.isShutdown()) {
+            mExecutor.execute(() -> mLocationsByFloor = null);
+        }
+    }
+
+    /**
+     * Starts or stops navigating a route, and warms the floors of its first legs.
+     * @param route the route being navigated, or null when browsing
+     */
+    void setRoute(@Nullable Route route) {
+        mLegFloors = route != null ? legFloors(RouteGeometry.from(route)) : null;
+        if (mLegFloors != null && mLegFloors.length > 0) {
+            prefetchLegsAfter(0);
+            prefetch(mLegFloors[0]);
+        }
+    }
+
+    /**
+     * Shows the floor of a route leg and warms the floors of the legs after it.
+     * @param leg the index of the leg
+     * @param floor the floor of the leg
+     */
+    void onLegSelected(int leg, int floor) {
+        selectFloor(floor);
+        prefetchLegsAfter(leg);
+    }
+
+    /**
+     * Releases warm floors when the system asks the app to use less memory.
+     * @param level the level passed to {@link ComponentCallbacks2#onTrimMemory}
+     */
+    void trim(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mFloors.trimTo(0);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            //Only the floor viewed last stays warm
+            mFloors.trimTo(1);
+        }
+        Log.d(TAG, "Trimmed at level " + level + " to " + mFloors);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mFloors.toString();
+    }
+
+    private void prefetchLegsAfter(int leg) {
+        if (mLegFloors == null) {
+            return;
+        }
+        for (int l = leg + 1; l < mLegFloors.length && l <= leg + LEGS_AHEAD; l++) {
+            prefetch(mLegFloors[l]);
+        }
+    }
+
+    /**
+     * Ends the background thread, floors being warmed are dropped. Call when the activity is destroyed.
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+        mHandler.removeCallbacksAndMessages(null);
+        mPending.clear();
+    }
+
+    private void prefetch(int floor) {
+        if (mFloors.contains(floor) || !mPending.add(floor)) {
+            return;
+        }
+        mExecutor.execute(() -> {
+            if (mLocationsByFloor == null) {
+                mLocationsByFloor = groupByFloor(MapsIndoors.getLocations());
+            }
+            List<MPLocation> onFloor = mLocationsByFloor.get(floor);
+            mHandler.post(() -> {
+                mPending.remove(floor);
+                //A floor without locations does not exist, or there is nothing to warm on it
+                if (onFloor == null) {
+                    return;
+                }
+                mIconCache.prefetch(onFloor, 0, MAX_ICONS_PER_FLOOR);
+                mSearchResultCuller.prepareFloor(floor);
+                mFloors.add(floor);
+            });
+        });
+    }
+
+    /**
+     * @return the locations of each floor, floors without locations are left out
+     */
+    @NonNull
+    private static Map<Integer, List<MPLocation>> groupByFloor(@Nullable List<MPLocation> locations) {
+        //The SDK has no locations yet when its data could not be loaded, they are grouped again on the next load
+        if (locations == null) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, List<MPLocation>> byFloor = new HashMap<>();
+        for (MPLocation location : locations) {
+            List<MPLocation> onFloor = byFloor.get(location.getFloor());
+            if (onFloor == null) {
+                onFloor = new ArrayList<>();
+                byFloor.put(location.getFloor(), onFloor);
+            }
+            onFloor.add(location);
+        }
+        return byFloor;
+    }
+
+    /**
+     * @return the indices of the floors, lowest first
+     */
+    @NonNull
+    private static int[] sortedFloors(@Nullable List<Floor> floors) {
+        if (floors == null) {
+            return new int[0];
+        }
+        int[] indices = new int[floors.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = floors.get(i).getZIndex();
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * @return the floor each leg of a route starts on, a leg without coordinates is on the floor of the leg before it
+     */
+    @NonNull
+    static int[] legFloors(@NonNull RouteGeometry geometry) {
+        int[] floors = new int[geometry.legCount()];
+        int floor = geometry.vertexCount() > 0 ? geometry.floor(0) : 0;
+        for (int l = 0; l < floors.length; l++) {
+            if (geometry.legStart(l) < geometry.legEnd(l)) {
+                floor = geometry.floor(geometry.legStart(l));
+            }
+            floors[l] = floor;
+        }
+        return floors;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mapsindoorsgettingstarted;
+
+/**
+ * Small geometry helpers for the short distances found inside a venue. Coordinates are projected
+ * onto a local flat plane (equirectangular), which is accurate to well below a meter at venue scale.
+ */
+final class GeoMath {
+
+    static final double EARTH_RADIUS_M = 6371008.8;
+    static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_M / 180;
+
+    private GeoMath() {
+    }
+
+    /**
+     * @return the distance in meters between two coordinates
+     */
+    static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dy = (lat2 - lat1) * METERS_PER_DEGREE;
+        double dx = (lng2 - lng1) * METERS_PER_DEGREE * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return the amount of meters per degree of longitude at the given latitude
+     */
+    static double metersPerDegreeLng(double lat) {
+        return METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+    }
+
+    /**
+     * Projects a point onto a segment.
+     * @return the position of the projection along the segment, from 0 (at a) to 1 (at b)
+     */
+    static double projectOnSegment(double lat, double lng, double latA, double lngA, double latB, double lngB) {
+        double scale = metersPerDegreeLng(latA);
+        double abx = (lngB - lngA) * scale;
+        double aby = (latB - latA) * METERS_PER_DEGREE;
+        double apx = (lng - lngA) * scale;
+        double apy = (lat - latA) * METERS_PER_DEGREE;
+        double lengthSquared = abx * abx + aby * aby;
+        if (lengthSquared == 0) {
+            return 0;
+        }
+        double t = (apx * abx + apy * aby) / lengthSquared;
+        return t < 0 ? 0 : (t > 1 ? 1 : t);
+    }
+
+    /**
+     * @return the distance in meters from a point to a segment
+     */
+    static double distanceToSegment(double lat, double lng, double latA, double lngA, double latB, double lngB) {
+        double t = projectOnSegment(lat, lng, latA, lngA, latB, lngB);
+        return distance(lat, lng, latA + (latB - latA) * t, lngA + (lngB - lngA) * t);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+/**
+ * Remembers the bounds of the last venue and the last floor, so on a cold start the camera can be
+ * fitted to the venue right away, before MapControl has finished loading.
+ */
+class LastCameraStore {
+
+    private static final String PREFERENCES_NAME = "last_camera";
+    private static final String KEY_SOUTH = "south";
+    private static final String KEY_WEST = "west";
+    private static final String KEY_NORTH = "north";
+    private static final String KEY_EAST = "east";
+    private static final String KEY_FLOOR = "floor";
+
+    private final SharedPreferences mPreferences;
+
+    LastCameraStore(@NonNull Context context) {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the bounds of the last venue, or null if none have been saved
+     */
+    @Nullable
+    LatLngBounds getVenueBounds() {
+        if (!mPreferences.contains(KEY_SOUTH)) {
+            return null;
+        }
+        return new LatLngBounds(
+                new LatLng(getDouble(KEY_SOUTH), getDouble(KEY_WEST)),
+                new LatLng(getDouble(KEY_NORTH), getDouble(KEY_EAST)));
+    }
+
+    /**
+     * @return the last saved floor index, or defaultFloor if none has been saved
+     */
+    int getFloor(int defaultFloor) {
+        return mPreferences.getInt(KEY_FLOOR, defaultFloor);
+    }
+
+    /**
+     * Saves the bounds of the venue shown, in the background.
+     */
+    void saveVenueBounds(@NonNull LatLngBounds bounds) {
+        mPreferences.edit()
+                .putLong(KEY_SOUTH, Double.doubleToRawLongBits(bounds.southwest.latitude))
+                .putLong(KEY_WEST, Double.doubleToRawLongBits(bounds.southwest.longitude))
+                .putLong(KEY_NORTH, Double.doubleToRawLongBits(bounds.northeast.latitude))
+                .putLong(KEY_EAST, Double.doubleToRawLongBits(bounds.northeast.longitude))
+                .apply();
+    }
+
+    /**
+     * Saves the floor shown, in the background.
+     */
+    void saveFloor(int floor) {
+        mPreferences.edit().putInt(KEY_FLOOR, floor).apply();
+    }
+
+    private double getDouble(String key) {
+        return Double.longBitsToDouble(mPreferences.getLong(key, 0));
+    }
+}
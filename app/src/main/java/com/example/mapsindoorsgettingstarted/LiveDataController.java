@@ -0,0 +1,113 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.mapsindoors.livesdk.LiveDataDomainTypes;
+import com.mapsindoors.livesdk.LiveUpdate;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapControl;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes over the live data updates of {@link MapControl} and redraws the map at most once per
+ * frame. Updates are coalesced per location off the main thread by a {@link LiveUpdateProcessor},
+ * and updates to locations on other floors or outside the camera bounds do not cause a redraw.
+ * Occupancy and availability updates are also recorded in an {@link OccupancyHistory}, as they
+ * arrive, so none are lost to coalescing. Every updated location, visible or not, has its icon
+ * resolved again by the {@link LocationIconCache}.
+ */
+class LiveDataController implements Choreographer.FrameCallback {
+
+    private final MapControl mMapControl;
+    private final GoogleMap mMap;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LiveUpdateProcessor<MPLocation> mProcessor = new LiveUpdateProcessor<>();
+    private final OccupancyHistory mOccupancyHistory;
+    private final LocationIconCache mIconCache;
+
+    /**
+     * @param occupancyHistory records the occupancy and availability updates
+     * @param iconCache told about the locations that were updated
+     */
+    LiveDataController(@NonNull MapControl mapControl, @NonNull GoogleMap map, @NonNull OccupancyHistory occupancyHistory,
+                       @NonNull LocationIconCache iconCache) {
+        mMapControl = mapControl;
+        mMap = map;
+        mOccupancyHistory = occupancyHistory;
+        mIconCache = iconCache;
+    }
+
+    /**
+     * Enables a live data domain on MapControl, with the updates going through this controller.
+     * @param domain one of the LiveDataDomainTypes
+     */
+    void enable(@NonNull String domain) {
+        mMapControl.enableLiveData(domain, location -> onLiveLocationUpdate(domain, location));
+    }
+
+    /**
+     * @return the processor, to read its throughput and drop counters
+     */
+    @NonNull
+    LiveUpdateProcessor<MPLocation> getProcessor() {
+        return mProcessor;
+    }
+
+    private void onLiveLocationUpdate(@NonNull String domain, @NonNull MPLocation location) {
+        record(domain, location);
+        //Only the first update of a batch schedules a frame, the rest are coalesced into it
+        if (mProcessor.submit(domain, location.getId(), location)) {
+            mMainHandler.post(() -> Choreographer.getInstance().postFrameCallback(this));
+        }
+    }
+
+    /**
+     * Records an occupancy or availability update in the history. Other domains are not kept.
+     */
+    private void record(@NonNull String domain, @NonNull MPLocation location) {
+        boolean occupancy = LiveDataDomainTypes.OCCUPANCY_DOMAIN.equals(domain);
+        if (!occupancy && !LiveDataDomainTypes.AVAILABILITY_DOMAIN.equals(domain)) {
+            return;
+        }
+        LiveUpdate update = location.getLiveUpdate(domain);
+        Map<String, Object> properties = update != null ? update.getProperties() : null;
+        if (properties == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (occupancy) {
+            Object people = properties.get("nrOfPeople");
+            if (people instanceof Number) {
+                mOccupancyHistory.recordOccupancy(location.getId(), now, ((Number) people).intValue());
+            }
+        } else {
+            Object available = properties.get("available");
+            if (available instanceof Boolean) {
+                mOccupancyHistory.recordAvailability(location.getId(), now, (Boolean) available);
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        int floor = mMapControl.getCurrentFloorIndex();
+        List<MPLocation> visible = mProcessor.drain(location -> {
+            //The update may have given the location another display rule, and with it another icon
+            mIconCache.invalidate(location.getId());
+            return location.getFloor() == floor && bounds.contains(location.getPoint().getLatLng());
+        });
+        //Locations that were skipped are drawn with their latest state when the camera or floor changes
+        if (!visible.isEmpty()) {
+            mMapControl.refresh();
+        }
+    }
+}
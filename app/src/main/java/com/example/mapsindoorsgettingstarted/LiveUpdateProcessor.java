@@ -0,0 +1,136 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects live updates from any thread and hands them out in batches, once per frame. Repeated
+ * updates to the same item within a batch are coalesced, so only the last one is kept, and updates
+ * to items that are not visible are dropped when the batch is drained. Throughput and drop
+ * counters are kept per domain.
+ * @param <T> the type of the updated items
+ */
+class LiveUpdateProcessor<T> {
+
+    /**
+     * Decides which updates are worth rendering.
+     */
+    interface Visibility<T> {
+        boolean isVisible(@NonNull T item);
+    }
+
+    //Pending updates by domain and id. Insertion ordered, so updates are delivered in arrival order.
+    private LinkedHashMap<String, Update<T>> mPending = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, DomainStats> mStats = new ConcurrentHashMap<>();
+
+    /**
+     * Adds an update. An earlier pending update of the same item in the same domain is replaced.
+     * @param domain the live data domain of the update
+     * @param id the id of the updated item
+     * @param item the updated item
+     * @return true if this is the first pending update of the batch, and a frame should be scheduled
+     */
+    boolean submit(@NonNull String domain, @NonNull String id, @NonNull T item) {
+        DomainStats stats = stats(domain);
+        stats.received.incrementAndGet();
+        synchronized (this) {
+            Update<T> previous = mPending.put(domain + '|' + id, new Update<>(domain, item));
+            if (previous != null) {
+                stats.coalesced.incrementAndGet();
+            }
+            return mPending.size() == 1 && previous == null;
+        }
+    }
+
+    /**
+     * Takes all pending updates, dropping those that are not visible.
+     * @param visibility decides which updates are kept
+     * @return the visible updates, in the order they arrived
+     */
+    @NonNull
+    List<T> drain(@NonNull Visibility<T> visibility) {
+        LinkedHashMap<String, Update<T>> batch;
+        synchronized (this) {
+            if (mPending.isEmpty()) {
+                return Collections.emptyList();
+            }
+            batch = mPending;
+            mPending = new LinkedHashMap<>();
+        }
+        List<T> visible = new ArrayList<>(batch.size());
+        for (Update<T> update : batch.values()) {
+            if (visibility.isVisible(update.item)) {
+                visible.add(update.item);
+                stats(update.domain).delivered.incrementAndGet();
+            } else {
+                stats(update.domain).dropped.incrementAndGet();
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * @return a copy of the counters, by domain
+     */
+    @NonNull
+    Map<String, long[]> getStats() {
+        Map<String, long[]> copy = new HashMap<>();
+        for (Map.Entry<String, DomainStats> entry : mStats.entrySet()) {
+            DomainStats stats = entry.getValue();
+            copy.put(entry.getKey(), new long[]{stats.received.get(), stats.coalesced.get(), stats.dropped.get(), stats.delivered.get()});
+        }
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LiveUpdateProcessor[");
+        for (Map.Entry<String, long[]> entry : getStats().entrySet()) {
+            long[] stats = entry.getValue();
+            builder.append(entry.getKey())
+                    .append(": received=").append(stats[0])
+                    .append(", coalesced=").append(stats[1])
+                    .append(", dropped=").append(stats[2])
+                    .append(", delivered=").append(stats[3])
+                    .append("; ");
+        }
+        return builder.append(']').toString();
+    }
+
+    private DomainStats stats(String domain) {
+        DomainStats stats = mStats.get(domain);
+        if (stats == null) {
+            stats = new DomainStats();
+            DomainStats existing = mStats.putIfAbsent(domain, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private static final class Update<T> {
+        final String domain;
+        final T item;
+
+        Update(String domain, T item) {
+            this.domain = domain;
+            this.item = item;
+        }
+    }
+
+    private static final class DomainStats {
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong coalesced = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mapsindoors.mapssdk.Point;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteCoordinate;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+import com.mapsindoors.mapssdk.TravelMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers route queries on the device, from a {@link RoutingGraph} of the venue. The SDK does not
+ * hand out the graph it routes on, so the graph is learned from the routes the routing service
+ * returns: their coordinates become nodes, and each pair of consecutive coordinates an edge for the
+ * travel mode the route was asked for. Corridors are taken to be walkable both ways. The more
+ * routes the user has asked for, the more of the venue can be routed through without a network.
+ * Merging routes copies the graph, so routes are merged in batches, and the graph is only written
+ * to app storage by {@link #flush()}. It is loaded at startup. All work happens on a background
+ * thread, results are delivered on the main thread.
+ */
+class LocalRouter {
+
+    /**
+     * Receives a locally planned route.
+     */
+    interface Callback {
+        /**
+         * @param route the route, or null if the graph does not connect the origin and destination
+         */
+        void onLocalRoute(@Nullable Route route);
+    }
+
+    private static final String TAG = "LocalRouter";
+    //Origins and destinations further than this from the graph are not routed
+    static final double MAX_SNAP_DISTANCE_M = 15;
+    private static final double WALKING_SPEED_MPS = 1.0;
+    private static final double BICYCLING_SPEED_MPS = 4.0;
+    private static final double DRIVING_SPEED_MPS = 8.0;
+    //Routes are merged into the graph once this many are waiting, or when the graph is needed
+    static final int LEARN_BATCH_SIZE = 8;
+
+    /**
+     * A route from the routing service waiting to be merged into the graph.
+     */
+    private static final class UnlearnedRoute {
+        final Route route;
+        final int modes;
+
+        UnlearnedRoute(Route route, int modes) {
+            this.route = route;
+            this.modes = modes;
+        }
+    }
+
+    private final File mFile;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    //Only touched on the executor
+    private RoutingGraph mGraph;
+    private RoutingGraph.Search mSearch;
+    private final List<UnlearnedRoute> mUnlearned = new ArrayList<>();
+    //True when the graph has grown since it was last written
+    private boolean mDirty;
+
+    /**
+     * @param file the file the graph is persisted to
+     */
+    LocalRouter(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Loads the persisted graph in the background, if there is one.
+     */
+    void loadAsync() {
+        mExecutor.execute(() -> {
+            if (mGraph != null || !mFile.exists()) {
+                return;
+            }
+            try (InputStream in = new FileInputStream(mFile)) {
+                long start = System.nanoTime();
+                setGraph(RoutingGraph.readFrom(in));
+                Log.d(TAG, "Loaded graph of " + mGraph.nodeCount() + " nodes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not load the routing graph, it will be learned again", e);
+                mFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Adds the path of a route from the routing service to the graph in the background. Routes are
+     * merged in batches of {@link #LEARN_BATCH_SIZE}.
+     * @param route the route
+     * @param travelMode the travel mode the route was asked for
+     */
+    void learn(@NonNull Route route, @NonNull TravelMode travelMode) {
+        int modes = modeFlag(travelMode);
+        mExecutor.execute(() -> {
+            mUnlearned.add(new UnlearnedRoute(route, modes));
+            if (mUnlearned.size() >= LEARN_BATCH_SIZE) {
+                mergeUnlearned();
+            }
+        });
+    }
+
+    /**
+     * Merges the routes still waiting and writes the graph in the background, if it grew since it
+     * was last written. Call when the app goes to the background.
+     */
+    void flush() {
+        mExecutor.execute(() -> {
+            mergeUnlearned();
+            if (mDirty) {
+                mDirty = !persist(mGraph);
+            }
+        });
+    }
+
+    /**
+     * Plans a route on the learned graph in the background.
+     * @param origin the point to route from
+     * @param destination the point to route to
+     * @param travelMode the travel mode to use
+     * @param callback receives the route on the main thread
+     */
+    void route(@NonNull Point origin, @NonNull Point destination, @NonNull TravelMode travelMode, @NonNull Callback callback) {
+        int modes = modeFlag(travelMode);
+        mExecutor.execute(() -> {
+            Metrics.Span span = Metrics.begin();
+            //Routes learned since the last batch may be just what connects the origin and destination
+            mergeUnlearned();
+            Route route = null;
+            RoutingGraph graph = mGraph;
+            if (graph != null) {
+                int from = graph.nearestNode(origin.getLat(), origin.getLng(), origin.getFloorIndex(), modes, MAX_SNAP_DISTANCE_M);
+                int to = graph.nearestNode(destination.getLat(), destination.getLng(), destination.getFloorIndex(), modes, MAX_SNAP_DISTANCE_M);
+                int[] path = from >= 0 && to >= 0 ? mSearch.find(from, to, modes) : null;
+                if (path != null) {
+                    route = RouteJson.toRoute(toRouteJson(graph, path, origin, destination, speed(travelMode)));
+                    RouteInstructions.of(route);
+                }
+            }
+            Metrics.end(span, Metrics.Stage.ROUTE_LOCAL);
+            Route result = route;
+            mHandler.post(() -> callback.onLocalRoute(result));
+        });
+    }
+
+    /**
+     * Merges the routes waiting to be learned into a copy of the graph.
+     */
+    private void mergeUnlearned() {
+        if (mUnlearned.isEmpty()) {
+            return;
+        }
+        RoutingGraph graph = mGraph;
+        RoutingGraph.Builder builder = graph != null ? new RoutingGraph.Builder(graph) : new RoutingGraph.Builder();
+        for (UnlearnedRoute unlearned : mUnlearned) {
+            int previous = -1;
+            for (RouteLeg leg : unlearned.route.getLegs()) {
+                for (RouteStep step : leg.getSteps()) {
+                    List<RouteCoordinate> geometry = step.getGeometry();
+                    if (geometry == null) {
+                        continue;
+                    }
+                    //Steps and legs follow on from each other, so the whole route is one chain of edges
+                    for (RouteCoordinate coordinate : geometry) {
+                        int node = builder.node(coordinate.getLat(), coordinate.getLng(), coordinate.getZIndex());
+                        if (previous >= 0) {
+                            builder.addTwoWayEdge(previous, node, unlearned.modes);
+                        }
+                        previous = node;
+                    }
+                }
+            }
+        }
+        mUnlearned.clear();
+        RoutingGraph learned = builder.build();
+        setGraph(learned);
+        //Routes through known corridors add nothing worth writing
+        if (graph == null || learned.nodeCount() != graph.nodeCount() || learned.edgeCount() != graph.edgeCount()) {
+            mDirty = true;
+        }
+    }
+
+    private void setGraph(RoutingGraph graph) {
+        mGraph = graph;
+        mSearch = graph.newSearch();
+    }
+
+    /**
+     * @return true if the graph has been written
+     */
+    private boolean persist(RoutingGraph graph) {
+        //Write to a temporary file first, so a crash never leaves a half written graph behind
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            graph.writeTo(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not persist the routing graph", e);
+            tmpFile.delete();
+            return false;
+        }
+        if (!tmpFile.renameTo(mFile)) {
+            tmpFile.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds the JSON of a route along a path, in the shape the routing service returns, so the
+     * result renders and reads like any other route. A leg is started at every floor change, with
+     * a single step per leg, and the origin and destination are joined to the ends of the path.
+     * The distance and duration of the route are those of its legs summed.
+     */
+    @NonNull
+    static JsonObject toRouteJson(@NonNull RoutingGraph graph, @NonNull int[] path, @NonNull Point origin,
+                                  @NonNull Point destination, double speed) {
+        JsonArray legs = new JsonArray();
+        JsonArray geometry = new JsonArray();
+        geometry.add(RouteJson.coordinate(origin.getLat(), origin.getLng(), origin.getFloorIndex()));
+        double lat = origin.getLat();
+        double lng = origin.getLng();
+        double distance = 0;
+        for (int i = 0; i < path.length; i++) {
+            int node = path[i];
+            if (i > 0 && graph.floor(node) != graph.floor(path[i - 1])) {
+                legs.add(leg(geometry, distance, speed));
+                geometry = new JsonArray();
+                distance = 0;
+            } else {
+                distance += GeoMath.distance(lat, lng, graph.lat(node), graph.lng(node));
+            }
+            geometry.add(RouteJson.coordinate(graph.lat(node), graph.lng(node), graph.floor(node)));
+            lat = graph.lat(node);
+            lng = graph.lng(node);
+        }
+        distance += GeoMath.distance(lat, lng, destination.getLat(), destination.getLng());
+        geometry.add(RouteJson.coordinate(destination.getLat(), destination.getLng(), destination.getFloorIndex()));
+        legs.add(leg(geometry, distance, speed));
+        return RouteJson.route(legs);
+    }
+
+    private static JsonObject leg(JsonArray geometry, double distance, double speed) {
+        JsonArray steps = new JsonArray();
+        steps.add(RouteJson.step(geometry, null, distance, distance / speed));
+        return RouteJson.leg(steps, distance, distance / speed);
+    }
+
+    static int modeFlag(@NonNull TravelMode travelMode) {
+        switch (travelMode) {
+            case BICYCLING:
+                return RoutingGraph.MODE_BICYCLING;
+            case DRIVING:
+                return RoutingGraph.MODE_DRIVING;
+            case TRANSIT:
+                return RoutingGraph.MODE_TRANSIT;
+            default:
+                return RoutingGraph.MODE_WALKING;
+        }
+    }
+
+    private static double speed(@NonNull TravelMode travelMode) {
+        switch (travelMode) {
+            case BICYCLING:
+                return BICYCLING_SPEED_MPS;
+            case DRIVING:
+                return DRIVING_SPEED_MPS;
+            default:
+                return WALKING_SPEED_MPS;
+        }
+    }
+}
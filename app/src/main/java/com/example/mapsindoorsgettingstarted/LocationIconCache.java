@@ -0,0 +1,228 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.LocationDisplayRule;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapControl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Memory bounded cache of location icons for the search list. Which display rule gives a location
+ * its icon is looked up once on the main thread and remembered. The icons are scaled down to the
+ * size of a row in the background, so the cache holds its own small copies rather than the bitmaps
+ * of the display rules, in an LRU cache sized by their byte count. Locations of the same type share
+ * one entry. What is remembered is dropped when the solution data is loaded again, and per location
+ * when live data may have changed its display rule. All methods must be called on the main thread.
+ */
+class LocationIconCache {
+
+    /**
+     * Receives an icon on the main thread.
+     */
+    interface Callback {
+        void onIcon(@Nullable Bitmap icon);
+    }
+
+    //Key remembered for locations without any icon
+    private static final String NO_ICON = "";
+    private static final int MAX_RESOLVED_LOCATIONS = 2048;
+
+    private final MapsActivity mMapActivity;
+    private final int mIconSizePx;
+    private final LruCache<String, Bitmap> mIcons;
+    //Location id to the key of its icon in mIcons, the memoized display rule resolution
+    private final LruCache<String, String> mIconKeys = new LruCache<>(MAX_RESOLVED_LOCATIONS);
+    //Icons being scaled, by key, with the callbacks waiting for them
+    private final Map<String, List<Callback>> mPending = new HashMap<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * @param mapActivity the activity holding the MapControl to get display rules from
+     * @param maxBytes the maximum amount of bitmap bytes to keep
+     * @param iconSizePx the size icons are scaled down to, the size of the icon in a row
+     */
+    LocationIconCache(@NonNull MapsActivity mapActivity, int maxBytes, int iconSizePx) {
+        mMapActivity = mapActivity;
+        mIconSizePx = iconSizePx;
+        mIcons = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Loads the icon of a location. The callback is called right away if the icon is cached.
+     */
+    void load(@NonNull MPLocation location, @NonNull Callback callback) {
+        String iconKey = iconKey(location);
+        if (iconKey == null || iconKey.equals(NO_ICON)) {
+            callback.onIcon(null);
+            return;
+        }
+        Bitmap icon = mIcons.get(iconKey);
+        if (icon != null) {
+            callback.onIcon(icon);
+            return;
+        }
+        scale(location, iconKey, callback);
+    }
+
+    /**
+     * Scales the icons of a range of locations in the background, so they are cached when scrolled to.
+     */
+    void prefetch(@NonNull List<MPLocation> locations, int from, int count) {
+        int end = Math.min(locations.size(), from + count);
+        for (int i = Math.max(0, from); i < end; i++) {
+            MPLocation location = locations.get(i);
+            String iconKey = iconKey(location);
+            if (iconKey != null && !iconKey.equals(NO_ICON) && mIcons.get(iconKey) == null) {
+                scale(location, iconKey, null);
+            }
+        }
+    }
+
+    /**
+     * Forgets all icons and which display rules they came from. Call when the solution data has been (re)loaded.
+     */
+    void invalidate() {
+        mIconKeys.evictAll();
+        mIcons.evictAll();
+    }
+
+    /**
+     * Forgets which display rule gives a location its icon, and the icon given to it alone. Call
+     * when a live update may have changed the display rule of the location.
+     */
+    void invalidate(@NonNull String locationId) {
+        mIconKeys.remove(locationId);
+        mIcons.remove(locationKey(locationId));
+    }
+
+    /**
+     * Ends the background thread, icons being scaled are not delivered. Call when the activity is destroyed.
+     */
+    void shutdown() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mPending.clear();
+    }
+
+    /**
+     * @return the key of an icon given to a single location
+     */
+    @NonNull
+    static String locationKey(@NonNull String locationId) {
+        return "location:" + locationId;
+    }
+
+    /**
+     * @return the key of an icon shared by all locations of a type
+     */
+    @NonNull
+    static String typeKey(@Nullable String type) {
+        return "type:" + type;
+    }
+
+    /**
+     * Finds the display rule giving a location its icon, once per location.
+     * @return the key of the icon, {@link #NO_ICON} if the location has none, or null if the map is not ready
+     */
+    @Nullable
+    private String iconKey(@NonNull MPLocation location) {
+        String iconKey = mIconKeys.get(location.getId());
+        if (iconKey != null) {
+            return iconKey;
+        }
+        MapControl mapControl = mMapActivity.getMapControl();
+        if (mapControl == null) {
+            return null;
+        }
+        //We start by checking if there is a specific Location icon assigned to the location
+        LocationDisplayRule locationDisplayRule = mapControl.getDisplayRule(location);
+        if (locationDisplayRule != null && locationDisplayRule.getIcon() != null) {
+            iconKey = locationKey(location.getId());
+        } else {
+            //Location does not have a specific displayRule, we instead use type Display rule, shared by all locations of the type
+            LocationDisplayRule typeDisplayRule = mapControl.getDisplayRule(location.getType());
+            iconKey = typeDisplayRule != null && typeDisplayRule.getIcon() != null ? typeKey(location.getType()) : NO_ICON;
+        }
+        mIconKeys.put(location.getId(), iconKey);
+        return iconKey;
+    }
+
+    /**
+     * Scales the icon of a location in the background and caches it, unless it is already being scaled.
+     * @param callback told about the icon, or null when prefetching
+     */
+    private void scale(@NonNull MPLocation location, @NonNull String iconKey, @Nullable Callback callback) {
+        List<Callback> callbacks = mPending.get(iconKey);
+        if (callbacks == null) {
+            callbacks = new ArrayList<>(1);
+            mPending.put(iconKey, callbacks);
+            Bitmap source = sourceIcon(location, iconKey);
+            mExecutor.execute(() -> {
+                Bitmap icon = source != null ? scaleDown(source, mIconSizePx) : null;
+                mMainHandler.post(() -> {
+                    if (icon != null) {
+                        mIcons.put(iconKey, icon);
+                    }
+                    List<Callback> waiting = mPending.remove(iconKey);
+                    if (waiting != null) {
+                        for (Callback waitingCallback : waiting) {
+                            waitingCallback.onIcon(icon);
+                        }
+                    }
+                });
+            });
+        }
+        if (callback != null) {
+            callbacks.add(callback);
+        }
+    }
+
+    /**
+     * @return the bitmap of the display rule an icon key was resolved from
+     */
+    @Nullable
+    private Bitmap sourceIcon(@NonNull MPLocation location, @NonNull String iconKey) {
+        MapControl mapControl = mMapActivity.getMapControl();
+        if (mapControl == null) {
+            return null;
+        }
+        LocationDisplayRule displayRule = iconKey.equals(locationKey(location.getId()))
+                ? mapControl.getDisplayRule(location)
+                : mapControl.getDisplayRule(location.getType());
+        return displayRule != null ? displayRule.getIcon() : null;
+    }
+
+    /**
+     * @return the bitmap scaled to fit a square of the given size, or a copy if it already fits
+     */
+    @NonNull
+    private static Bitmap scaleDown(@NonNull Bitmap source, int sizePx) {
+        int largest = Math.max(source.getWidth(), source.getHeight());
+        if (largest <= sizePx) {
+            return source.copy(source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888, false);
+        }
+        float scale = (float) sizePx / largest;
+        int width = Math.max(1, Math.round(source.getWidth() * scale));
+        int height = Math.max(1, Math.round(source.getHeight() * scale));
+        return Bitmap.createScaledBitmap(source, width, height, true);
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable on-device inverted index over location ids, used to search without querying the SDK.
+ * Names, aliases, types and floor names are tokenized into a sorted term dictionary, where every
+ * term points at the documents it occurs in. Lookups match query tokens by exact term, by prefix
+ * and, when that finds little, by edit distance (among terms sharing the first character), and rank the documents that match every token.
+ * The index does not depend on the SDK, so it can be built and measured on the JVM.
+ */
+class LocationIndex {
+
+    //Fields a term can occur in, stored in the low bits of each posting
+    static final int FIELD_NAME = 0;
+    static final int FIELD_ALIAS = 1;
+    static final int FIELD_TYPE = 2;
+    static final int FIELD_FLOOR = 3;
+    private static final int FIELD_BITS = 2;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+    private static final float[] FIELD_WEIGHTS = {1.0f, 0.8f, 0.5f, 0.3f};
+
+    //Fuzzy matching is only tried when exact and prefix matching found fewer documents than this
+    private static final int FUZZY_THRESHOLD = 10;
+    private static final int FUZZY_MIN_TOKEN_LENGTH = 3;
+
+    private static final int MAGIC = 0x4D494C49;
+    private static final int VERSION = 1;
+
+    private final String[] mIds;
+    //Sorted term dictionary, mPostings[i] holds the (document << FIELD_BITS | field) entries of mTerms[i]
+    private final String[] mTerms;
+    private final int[][] mPostings;
+
+    //Scratch arrays for searching, reused between queries to avoid allocating per document
+    private final float[] mScores;
+    private final float[] mTokenScores;
+    private final int[] mMatchedTokens;
+    private final int[] mTouched;
+    //Amount of postings matched by the current query token
+    private int mTokenHits;
+
+    private LocationIndex(String[] ids, String[] terms, int[][] postings) {
+        mIds = ids;
+        mTerms = terms;
+        mPostings = postings;
+        mScores = new float[ids.length];
+        mTokenScores = new float[ids.length];
+        mMatchedTokens = new int[ids.length];
+        mTouched = new int[ids.length];
+    }
+
+    /**
+     * @return the amount of documents in the index
+     */
+    int size() {
+        return mIds.length;
+    }
+
+    /**
+     * @return the amount of distinct terms in the index
+     */
+    int termCount() {
+        return mTerms.length;
+    }
+
+    /**
+     * @return an estimate of the heap used by the index, in bytes
+     */
+    long estimatedSizeBytes() {
+        long bytes = 0;
+        for (String id : mIds) {
+            bytes += 40 + id.length() * 2L;
+        }
+        for (int i = 0; i < mTerms.length; i++) {
+            bytes += 40 + mTerms[i].length() * 2L;
+            bytes += 16 + mPostings[i].length * 4L;
+        }
+        //The four scratch arrays
+        bytes += mIds.length * 16L;
+        return bytes;
+    }
+
+    /**
+     * Searches the index.
+     * @param query the text to search for
+     * @param limit the maximum amount of results
+     * @return the ids of the best matching documents, best match first
+     */
+    @NonNull
+    synchronized List<String> search(@Nullable String query, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        int touchedCount = 0;
+        for (int t = 0; t < tokens.length; t++) {
+            touchedCount = scoreToken(tokens[t], t, touchedCount);
+        }
+
+        //Collect the documents matching every token, best score first, ties broken by document order
+        int[] candidates = new int[touchedCount];
+        int candidateCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = mTouched[i];
+            if (mMatchedTokens[doc] == tokens.length) {
+                candidates[candidateCount++] = doc;
+            }
+        }
+        int[] top = topK(candidates, candidateCount, limit);
+
+        List<String> result = new ArrayList<>(top.length);
+        for (int doc : top) {
+            result.add(mIds[doc]);
+        }
+
+        //Reset the scratch state for the next query
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = mTouched[i];
+            mScores[doc] = 0;
+            mMatchedTokens[doc] = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Scores a single query token against the index and adds its best score per document to the totals.
+     * @return the new amount of touched documents
+     */
+    private int scoreToken(String token, int tokenIndex, int touchedCount) {
+        mTokenHits = 0;
+
+        //Exact and prefix matches are a contiguous range of the sorted dictionary
+        int lo = lowerBound(token);
+        for (int i = lo; i < mTerms.length && mTerms[i].startsWith(token); i++) {
+            float matchWeight = mTerms[i].length() == token.length()
+                    ? 1.0f
+                    : 0.6f + 0.4f * token.length() / mTerms[i].length();
+            touchedCount = addPostings(i, matchWeight, tokenIndex, touchedCount);
+        }
+
+        if (mTokenHits < FUZZY_THRESHOLD && token.length() >= FUZZY_MIN_TOKEN_LENGTH && !isNumber(token)) {
+            int maxEdits = token.length() >= 6 ? 2 : 1;
+            //Typos are rare in the first character, so only terms sharing it are compared.
+            //That keeps the scan to a small range of the dictionary.
+            char firstChar = token.charAt(0);
+            int end = lowerBound(String.valueOf((char) (firstChar + 1)));
+            for (int i = lowerBound(String.valueOf(firstChar)); i < end; i++) {
+                String term = mTerms[i];
+                if (Math.abs(term.length() - token.length()) > maxEdits && term.length() < token.length()) {
+                    continue;
+                }
+                //Compare against the term and against its prefix, so typos are forgiven while typing
+                int edits = editDistance(token, term, term.length(), maxEdits);
+                if (term.length() > token.length()) {
+                    edits = Math.min(edits, editDistance(token, term, token.length(), maxEdits) + 1);
+                }
+                if (edits > 0 && edits <= maxEdits) {
+                    touchedCount = addPostings(i, 0.5f - 0.15f * edits, tokenIndex, touchedCount);
+                }
+            }
+        }
+
+        //Move this token's best scores into the totals
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = mTouched[i];
+            if (mTokenScores[doc] > 0) {
+                mScores[doc] += mTokenScores[doc];
+                mMatchedTokens[doc]++;
+                mTokenScores[doc] = 0;
+            }
+        }
+        return touchedCount;
+    }
+
+    private int addPostings(int termIndex, float matchWeight, int tokenIndex, int touchedCount) {
+        for (int posting : mPostings[termIndex]) {
+            int doc = posting >>> FIELD_BITS;
+            //Documents missing an earlier token can never match every token, so skip them
+            if (mMatchedTokens[doc] != tokenIndex) {
+                continue;
+            }
+            float score = matchWeight * FIELD_WEIGHTS[posting & FIELD_MASK];
+            mTokenHits++;
+            if (tokenIndex == 0 && mScores[doc] == 0 && mTokenScores[doc] == 0) {
+                mTouched[touchedCount++] = doc;
+            }
+            if (score > mTokenScores[doc]) {
+                mTokenScores[doc] = score;
+            }
+        }
+        return touchedCount;
+    }
+
+    /**
+     * Selects the best documents with a bounded insertion sort, as the limit is small compared to the candidates.
+     */
+    private int[] topK(int[] candidates, int count, int limit) {
+        int[] top = new int[Math.min(limit, count)];
+        int size = 0;
+        for (int c = 0; c < count; c++) {
+            int doc = candidates[c];
+            if (size == top.length && !ranksBefore(doc, top[size - 1])) {
+                continue;
+            }
+            int i = size == top.length ? size - 1 : size++;
+            while (i > 0 && ranksBefore(doc, top[i - 1])) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = doc;
+        }
+        return top;
+    }
+
+    private boolean ranksBefore(int doc, int other) {
+        return mScores[doc] > mScores[other] || (mScores[doc] == mScores[other] && doc < other);
+    }
+
+    private static boolean isNumber(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int lowerBound(String token) {
+        int lo = 0;
+        int hi = mTerms.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mTerms[mid].compareTo(token) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Levenshtein distance, giving up early once the distance is known to exceed max.
+     * @param a the first string
+     * @param b the second string, of which only the first bLength characters are compared
+     * @param bLength the amount of characters of b to compare
+     * @param max the largest distance of interest
+     * @return the distance, or max + 1 if it is larger than max
+     */
+    static int editDistance(String a, String b, int bLength, int max) {
+        if (Math.abs(a.length() - bLength) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[bLength + 1];
+        int[] current = new int[bLength + 1];
+        for (int j = 0; j <= bLength; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= bLength; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[bLength], max + 1);
+    }
+
+    /**
+     * Splits text into lower case, accent free tokens of letters and digits.
+     */
+    @NonNull
+    static String[] tokenize(@Nullable String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Writes the index in a compact binary form.
+     */
+    void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(mIds.length);
+        for (String id : mIds) {
+            out.writeUTF(id);
+        }
+        out.writeInt(mTerms.length);
+        for (int i = 0; i < mTerms.length; i++) {
+            out.writeUTF(mTerms[i]);
+            int[] postings = mPostings[i];
+            out.writeInt(postings.length);
+            //Postings are sorted, so store them as deltas
+            int previous = 0;
+            for (int posting : postings) {
+                writeVarInt(out, posting - previous);
+                previous = posting;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(OutputStream)}.
+     * @throws IOException if the data can not be read or was written by another version
+     */
+    @NonNull
+    static LocationIndex readFrom(@NonNull InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a location index, or an unsupported version");
+        }
+        String[] ids = new String[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readUTF();
+        }
+        int termCount = in.readInt();
+        String[] terms = new String[termCount];
+        int[][] postings = new int[termCount][];
+        for (int i = 0; i < termCount; i++) {
+            terms[i] = in.readUTF();
+            int[] termPostings = new int[in.readInt()];
+            int previous = 0;
+            for (int j = 0; j < termPostings.length; j++) {
+                previous += readVarInt(in);
+                if ((previous >>> FIELD_BITS) >= ids.length) {
+                    throw new IOException("Corrupt location index");
+                }
+                termPostings[j] = previous;
+            }
+            postings[i] = termPostings;
+        }
+        return new LocationIndex(ids, terms, postings);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Collects documents and builds a {@link LocationIndex}.
+     */
+    static class Builder {
+        private final List<String> mIds = new ArrayList<>();
+        private final Map<String, IntList> mTermPostings = new HashMap<>();
+
+        /**
+         * Adds a document to the index.
+         * @param id the id of the location
+         * @param name the name of the location
+         * @param aliases the aliases of the location, if any
+         * @param type the type of the location, if any
+         * @param floorName the name of the floor of the location, if any
+         * @return this builder
+         */
+        @NonNull
+        Builder add(@NonNull String id, @Nullable String name, @Nullable List<String> aliases,
+                    @Nullable String type, @Nullable String floorName) {
+            int doc = mIds.size();
+            mIds.add(id);
+            addField(doc, name, FIELD_NAME);
+            if (aliases != null) {
+                for (String alias : aliases) {
+                    addField(doc, alias, FIELD_ALIAS);
+                }
+            }
+            addField(doc, type, FIELD_TYPE);
+            addField(doc, floorName, FIELD_FLOOR);
+            return this;
+        }
+
+        private void addField(int doc, @Nullable String value, int field) {
+            int posting = doc << FIELD_BITS | field;
+            for (String token : tokenize(value)) {
+                IntList postings = mTermPostings.get(token);
+                if (postings == null) {
+                    postings = new IntList();
+                    mTermPostings.put(token, postings);
+                }
+                //Documents are added in order, so only the last posting can be a duplicate
+                if (postings.size == 0 || postings.values[postings.size - 1] != posting) {
+                    postings.add(posting);
+                }
+            }
+        }
+
+        @NonNull
+        LocationIndex build() {
+            String[] terms = mTermPostings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            int[][] postings = new int[terms.length][];
+            for (int i = 0; i < terms.length; i++) {
+                int[] values = mTermPostings.get(terms[i]).toArray();
+                //A term can occur in several fields of a document, added out of order
+                Arrays.sort(values);
+                postings[i] = values;
+            }
+            return new LocationIndex(mIds.toArray(new String[0]), terms, postings);
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapsIndoors;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the on-device {@link LocationIndex}. The index is loaded from app storage at startup, and
+ * rebuilt and persisted in the background whenever the venue's locations have been loaded.
+ * Searching the index needs no network round trip, but the index only holds ids, so results are
+ * resolved through the locations the SDK has loaded or, before the first sync, through the
+ * {@link VenueSnapshotRepository}. When neither knows a result the search is left to the SDK.
+ */
+class LocationIndexRepository {
+
+    private static final String TAG = "LocationIndexRepository";
+
+    private final File mFile;
+    private final VenueSnapshotRepository mSnapshotRepository;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private volatile LocationIndex mIndex;
+
+    /**
+     * @param file the file the index is persisted to
+     * @param snapshotRepository resolves results while the SDK has not loaded its locations yet
+     */
+    LocationIndexRepository(@NonNull File file, @NonNull VenueSnapshotRepository snapshotRepository) {
+        mFile = file;
+        mSnapshotRepository = snapshotRepository;
+    }
+
+    /**
+     * @return the index, or null if it has not been loaded or built yet
+     */
+    @Nullable
+    LocationIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Loads the persisted index in the background, if there is one and no index has been built yet.
+     */
+    void loadAsync() {
+        mExecutor.execute(() -> {
+            if (mIndex != null || !mFile.exists()) {
+                return;
+            }
+            try (InputStream in = new FileInputStream(mFile)) {
+                long start = System.nanoTime();
+                LocationIndex index = LocationIndex.readFrom(in);
+                if (mIndex == null) {
+                    mIndex = index;
+                }
+                Log.d(TAG, "Loaded index of " + index.size() + " locations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not load the location index, it will be rebuilt", e);
+                mFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the index from the given locations in the background and persists it.
+     * @param locations all locations of the solution, null if the SDK has not loaded them, in which case the index is kept
+     */
+    void rebuildAsync(@Nullable List<MPLocation> locations) {
+        if (locations == null) {
+            Log.w(TAG, "No locations to build the index from");
+            return;
+        }
+        //Copy the list, the SDK may change it while we are building
+        final List<MPLocation> snapshot = new ArrayList<>(locations);
+        mExecutor.execute(() -> {
+            long start = System.nanoTime();
+            LocationIndex.Builder builder = new LocationIndex.Builder();
+            for (MPLocation location : snapshot) {
+                builder.add(location.getId(), location.getName(), location.getAliases(), location.getType(), location.getFloorName());
+            }
+            LocationIndex index = builder.build();
+            mIndex = index;
+            Log.d(TAG, "Built index of " + index.size() + " locations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            //Write to a temporary file first, so a crash never leaves a half written index behind
+            File tmpFile = new File(mFile.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                index.writeTo(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not persist the location index", e);
+                tmpFile.delete();
+                return;
+            }
+            if (!tmpFile.renameTo(mFile)) {
+                tmpFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Searches the index and resolves the results to locations.
+     * @param query the text to search for
+     * @param limit the maximum amount of results
+     * @return the matching locations, or null if there is no index or neither the SDK nor the snapshot know the locations
+     */
+    @Nullable
+    List<MPLocation> search(@NonNull String query, int limit) {
+        LocationIndex index = mIndex;
+        if (index == null) {
+            return null;
+        }
+        List<String> ids = index.search(query, limit);
+        List<MPLocation> locations = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            MPLocation location = MapsIndoors.getLocationById(id);
+            if (location == null) {
+                //Before the first sync the locations come from the snapshot of the last session
+                location = mSnapshotRepository.getLocation(id);
+            }
+            if (location == null) {
+                return null;
+            }
+            locations.add(location);
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapsIndoors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of locations as fragment state: the key of the list in the {@link ModelStore}, and the
+ * ids of the locations to look them up with when the list has left the store.
+ */
+final class LocationListState implements Parcelable {
+
+    final String mKey;
+    final String[] mLocationIds;
+
+    private LocationListState(String key, String[] locationIds) {
+        mKey = key;
+        mLocationIds = locationIds;
+    }
+
+    /**
+     * Puts the locations in the store and describes them.
+     */
+    @NonNull
+    static LocationListState of(@NonNull List<MPLocation> locations) {
+        return new LocationListState(ModelStore.putLocations(locations), ids(locations));
+    }
+
+    /**
+     * Puts changed locations in the store under the key of this state, replacing the ones it described.
+     * @return the state of the changed locations
+     */
+    @NonNull
+    LocationListState update(@NonNull List<MPLocation> locations) {
+        ModelStore.replaceLocations(mKey, locations);
+        return new LocationListState(mKey, ids(locations));
+    }
+
+    /**
+     * @return the locations from the store, or null if they have left it. Does not need the SDK.
+     */
+    @Nullable
+    List<MPLocation> fromStore() {
+        return ModelStore.getLocations(mKey);
+    }
+
+    /**
+     * Call once the SDK has loaded its locations.
+     * @return the locations from the store, or else the locations the SDK knows by their ids
+     */
+    @NonNull
+    List<MPLocation> resolve() {
+        List<MPLocation> locations = fromStore();
+        if (locations != null) {
+            return locations;
+        }
+        locations = new ArrayList<>(mLocationIds.length);
+        for (String id : mLocationIds) {
+            MPLocation location = MapsIndoors.getLocationById(id);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    @NonNull
+    private static String[] ids(@NonNull List<MPLocation> locations) {
+        String[] ids = new String[locations.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = locations.get(i).getId();
+        }
+        return ids;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mKey);
+        dest.writeStringArray(mLocationIds);
+    }
+
+    public static final Creator<LocationListState> CREATOR = new Creator<LocationListState>() {
+        @Override
+        public LocationListState createFromParcel(Parcel source) {
+            return new LocationListState(source.readString(), source.createStringArray());
+        }
+
+        @Override
+        public LocationListState[] newArray(int size) {
+            return new LocationListState[size];
+        }
+    };
+}
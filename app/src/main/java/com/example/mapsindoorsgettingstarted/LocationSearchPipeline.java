@@ -0,0 +1,273 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPFilter;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MPQuery;
+import com.mapsindoors.mapssdk.MapsIndoors;
+import com.mapsindoors.mapssdk.Venue;
+import com.mapsindoors.mapssdk.VenueCollection;
+import com.mapsindoors.mapssdk.errors.MIError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental search-as-you-type pipeline in front of {@link MapsIndoors#getLocationsAsync}.
+ * Keystrokes are debounced and results from queries that have been superseded are ignored.
+ * Once the on-device {@link LocationIndex} is available queries are answered from it without an
+ * SDK query. Until then, a query that extends the previous one is refined locally from the previous
+ * results, but only when those were complete (fewer than {@link #TAKE}), so nothing the SDK would
+ * return can be missing from them. Every field the SDK searches is matched, so results do not
+ * disappear while typing. Other repeated queries are served from a {@link QueryResultCache}
+ * without a round trip.
+ * Results are ranked by the {@link OccupancyHistory} before they are passed on, so locations that
+ * are free now, or usually are at this hour, come first.
+ */
+class LocationSearchPipeline {
+
+    /**
+     * Receives the results of the pipeline on the main thread.
+     */
+    interface Listener {
+        /**
+         * @param query the normalized query the results belong to
+         * @param locations the matching locations, may be empty
+         * @param submitted true if the search was explicitly submitted by the user
+         */
+        void onSearchResults(@NonNull String query, @NonNull List<MPLocation> locations, boolean submitted);
+
+        /**
+         * @param query the normalized query that failed
+         * @param error the error reported by the SDK
+         * @param submitted true if the search was explicitly submitted by the user
+         */
+        void onSearchError(@NonNull String query, @Nullable MIError error, boolean submitted);
+    }
+
+    //Time to wait after the last keystroke before a query is run
+    static final long DEBOUNCE_MS = 300;
+    //Amount of locations requested from the SDK per query
+    static final int TAKE = 30;
+    //Bounds of the query result cache
+    static final int CACHE_MAX_ENTRIES = 64;
+    static final long CACHE_MAX_AGE_MINUTES = 10;
+    private static final String TASK_KEY = "search";
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Listener mListener;
+    private final LocationIndexRepository mIndexRepository;
+    private final UiTaskScheduler mScheduler;
+    private final OccupancyHistory mOccupancyHistory;
+    //The filter never changes between queries, so it is only built once
+    private final MPFilter mFilter = new MPFilter.Builder().setTake(TAKE).build();
+    private final QueryResultCache<String, List<MPLocation>> mCache =
+            new QueryResultCache<>(CACHE_MAX_ENTRIES, CACHE_MAX_AGE_MINUTES, TimeUnit.MINUTES);
+
+    private Runnable mPendingQuery;
+
+    //The last query answered by the SDK or the cache, and whether its result list was complete (not cut by TAKE)
+    private String mLastQuery;
+    private List<MPLocation> mLastResults;
+    private boolean mLastResultsComplete;
+
+    /**
+     * @param scheduler delivers SDK results, dropping those of superseded queries
+     * @param occupancyHistory ranks the results by live occupancy and availability
+     */
+    LocationSearchPipeline(@NonNull Listener listener, @NonNull LocationIndexRepository indexRepository,
+                           @NonNull UiTaskScheduler scheduler, @NonNull OccupancyHistory occupancyHistory) {
+        mListener = listener;
+        mIndexRepository = indexRepository;
+        mScheduler = scheduler;
+        mOccupancyHistory = occupancyHistory;
+    }
+
+    /**
+     * Called whenever the search text changes. The query is run once the user stops typing.
+     * @param text the current text of the search field
+     */
+    void onQueryChanged(@Nullable CharSequence text) {
+        String query = normalize(text);
+        cancel();
+        if (query.isEmpty()) {
+            return;
+        }
+        //Every query supersedes the previous one, so results of older queries never reach the listener
+        final UiTaskScheduler.Ticket ticket = mScheduler.begin(TASK_KEY);
+        mPendingQuery = () -> run(query, ticket, false);
+        mHandler.postDelayed(mPendingQuery, DEBOUNCE_MS);
+    }
+
+    /**
+     * Runs a query right away, skipping the debounce. Used when the user presses search.
+     * @param text the text to search for
+     */
+    void submit(@Nullable CharSequence text) {
+        String query = normalize(text);
+        cancel();
+        if (query.isEmpty()) {
+            return;
+        }
+        run(query, mScheduler.begin(TASK_KEY), true);
+    }
+
+    /**
+     * Cancels the pending query and makes any query in flight stale.
+     */
+    void cancel() {
+        mScheduler.cancel(TASK_KEY);
+        if (mPendingQuery != null) {
+            mHandler.removeCallbacks(mPendingQuery);
+            mPendingQuery = null;
+        }
+    }
+
+    /**
+     * Drops all cached and remembered results. Call this when the venue or solution data has changed.
+     */
+    void invalidate() {
+        mCache.invalidate();
+        mLastQuery = null;
+        mLastResults = null;
+        mLastResultsComplete = false;
+    }
+
+    /**
+     * @return the cache used for query results, to read its hit and miss counters
+     */
+    @NonNull
+    QueryResultCache<String, List<MPLocation>> getCache() {
+        return mCache;
+    }
+
+    private void run(@NonNull String query, @NonNull UiTaskScheduler.Ticket ticket, boolean submitted) {
+        mPendingQuery = null;
+        Metrics.Span span = Metrics.begin();
+        //Answer from the on-device index when it is available and its results can be resolved, without an SDK query
+        List<MPLocation> indexed = mIndexRepository.search(query, TAKE);
+        if (indexed != null) {
+            Metrics.end(span, Metrics.Stage.SEARCH_INDEX);
+            mListener.onSearchResults(query, rank(indexed), submitted);
+            return;
+        }
+
+        //If the previous result set was complete, a longer query can only match a subset of it
+        if (mLastQuery != null && mLastResultsComplete && query.startsWith(mLastQuery)) {
+            List<MPLocation> refined = filter(mLastResults, query);
+            mLastQuery = query;
+            mLastResults = refined;
+            Metrics.end(span, Metrics.Stage.SEARCH_LOCAL);
+            mListener.onSearchResults(query, rank(refined), submitted);
+            return;
+        }
+
+        final String cacheKey = cacheKey(query);
+        List<MPLocation> cached = mCache.get(cacheKey);
+        if (cached != null) {
+            Metrics.end(span, Metrics.Stage.SEARCH_CACHE);
+            onResults(query, cached, submitted);
+            return;
+        }
+
+        MPQuery mpQuery = new MPQuery.Builder().setQuery(query).build();
+        MapsIndoors.getLocationsAsync(mpQuery, mFilter, (list, miError) -> {
+            mScheduler.post(ticket, () -> {
+                if (miError != null || list == null) {
+                    mListener.onSearchError(query, miError, submitted);
+                    return;
+                }
+                mCache.put(cacheKey, list);
+                Metrics.end(span, Metrics.Stage.SEARCH_SDK);
+                onResults(query, list, submitted);
+            });
+        });
+    }
+
+    private void onResults(@NonNull String query, @NonNull List<MPLocation> list, boolean submitted) {
+        mLastQuery = query;
+        mLastResults = list;
+        mLastResultsComplete = list.size() < TAKE;
+        mListener.onSearchResults(query, rank(list), submitted);
+    }
+
+    /**
+     * Ranks results by occupancy. Returns a new list if the order changed, so cached lists are never reordered.
+     */
+    @NonNull
+    private List<MPLocation> rank(@NonNull List<MPLocation> list) {
+        return mOccupancyHistory.rank(list, MPLocation::getId, System.currentTimeMillis());
+    }
+
+    /**
+     * Builds the cache key for a query. The current venue is part of the key, so switching venue never serves stale results.
+     */
+    @NonNull
+    private static String cacheKey(@NonNull String query) {
+        String venueId = "";
+        VenueCollection venues = MapsIndoors.getVenues();
+        if (venues != null) {
+            Venue venue = venues.getCurrentVenue();
+            if (venue != null) {
+                venueId = venue.getId();
+            }
+        }
+        return venueId + '|' + TAKE + '|' + query;
+    }
+
+    /**
+     * Filters a result set locally, keeping the locations that still match the query.
+     */
+    @NonNull
+    static List<MPLocation> filter(@NonNull List<MPLocation> locations, @NonNull String query) {
+        List<MPLocation> result = new ArrayList<>(locations.size());
+        for (MPLocation location : locations) {
+            if (matches(location, query)) {
+                result.add(location);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Matches the fields the SDK searches, so a location the SDK found for the shorter query is only
+     * dropped when the longer one can not match it either.
+     */
+    private static boolean matches(@NonNull MPLocation location, @NonNull String query) {
+        if (contains(location.getName(), query)
+                || contains(location.getDescription(), query)
+                || contains(location.getExternalId(), query)
+                || contains(location.getType(), query)
+                || contains(location.getFloorName(), query)) {
+            return true;
+        }
+        List<String> aliases = location.getAliases();
+        if (aliases != null) {
+            for (String alias : aliases) {
+                if (contains(alias, query)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(@Nullable String value, @NonNull String query) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(query);
+    }
+
+    @NonNull
+    static String normalize(@Nullable CharSequence text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toString().trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -8,6 +8,11 @@ import androidx.fragment.app.Fragment;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
@@ -18,51 +23,122 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.CameraPosition;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.textfield.TextInputEditText;
 import com.mapsindoors.livesdk.LiveDataDomainTypes;
 import com.mapsindoors.mapssdk.MPDirectionsRenderer;
-import com.mapsindoors.mapssdk.MPFilter;
 import com.mapsindoors.mapssdk.MPLocation;
-import com.mapsindoors.mapssdk.MPQuery;
-import com.mapsindoors.mapssdk.MPRoutingProvider;
 import com.mapsindoors.mapssdk.MapControl;
 import com.mapsindoors.mapssdk.MapsIndoors;
-import com.mapsindoors.mapssdk.OnRouteResultListener;
 import com.mapsindoors.mapssdk.Point;
 import com.mapsindoors.mapssdk.Route;
 import com.mapsindoors.mapssdk.TravelMode;
 import com.mapsindoors.mapssdk.Venue;
 import com.mapsindoors.mapssdk.errors.MIError;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
-public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback, OnRouteResultListener {
+
+public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback, LocationSearchPipeline.Listener, SearchResultPager.Listener, UserPositionTracker.Listener {
+
+    private static final String TAG = "MapsActivity";
+    private static final String METRICS_FILE = "metrics.tsv";
+    //The API key of the MapsIndoors solution
+    static final String MAPSINDOORS_API_KEY = "d876ff0e60bb430b8fabb145";
 
     private GoogleMap mMap;
     private MapControl mMapControl;
+    private LiveDataController mLiveDataController;
+    //History of the live occupancy and availability, which ranks the search results
+    private OccupancyHistoryRepository mOccupancyHistoryRepository;
+    private OccupancyHistory mOccupancyHistory;
+    private SearchResultCuller mSearchResultCuller;
+    private FloorPrefetcher mFloorPrefetcher;
+    private LocationIconCache mLocationIconCache;
     private View mMapView;
     private TextInputEditText mSearchTxtField;
-    private MPRoutingProvider mpRoutingProvider;
+    private RouteService mRouteService;
+    private LocalRouter mLocalRouter;
+    //Null when no content server is configured
+    private VenueContentRepository mVenueContentRepository;
+    private RoutePlanner mRoutePlanner;
+    private Metrics.Span mRouteSpan;
     private MPDirectionsRenderer mpDirectionsRenderer;
+    //The route being navigated, its levels of detail once built, and the level the renderer draws
+    private Route mRenderedRoute;
+    private RouteDetailLevels mRouteDetailLevels;
+    private Route mDrawnRoute;
+    private int mRouteLegIndex;
+    //Starts out hardcoded, and follows the position provider once it reports positions
     private Point mUserLocation = new Point(38.897389429704695, -77.03740973527613,0);
+    private UserPositionTracker mUserPositionTracker;
+    private Marker mUserMarker;
+    //The location the user is currently being routed to
+    private MPLocation mRouteDestination;
     private NavigationFragment mNavigationFragment;
     private SearchFragment mSearchFragment;
+    //The search results currently listed, the candidates for planned routes
+    private List<MPLocation> mSearchResults;
     private Fragment mCurrentFragment;
     private BottomSheetBehavior<FrameLayout> mBtmnSheetBehavior;
+    private LocationSearchPipeline mSearchPipeline;
+    private LocationIndexRepository mLocationIndexRepository;
+    private VenueSnapshotRepository mVenueSnapshotRepository;
+    private UiTaskScheduler mScheduler;
+    private SearchResultPager mSearchResultPager;
+    private StartupTrace mStartupTrace;
+    private LastCameraStore mLastCameraStore;
+    //True when the camera was placed over the venue, before MapControl was ready
+    private boolean mCameraRestored;
+    //False when the activity is recreated, the map fragment then restores its own camera
+    private boolean mColdStart;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mStartupTrace = new StartupTrace();
+        mColdStart = savedInstanceState == null;
+        //Hot path metrics are only collected in debug builds
+        Metrics.setEnabled(BuildConfig.DEBUG);
+        //Initialize MapsIndoors and set the google api Key. Done first, so the SDK loads its data while the map is getting ready.
+        MapsIndoors.initialize(getApplicationContext(), MAPSINDOORS_API_KEY);
+        MapsIndoors.setGoogleAPIKey(getString(R.string.google_maps_key));
+        mStartupTrace.mark("sdkInitialize");
+
         setContentView(R.layout.activity_maps);
+        mStartupTrace.mark("contentView");
         // Obtain the SupportMapFragment and get notified when the map is ready to be used.
         SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.map);
         mapFragment.getMapAsync(this);
         //The local variable for the MapFragments view.
         mMapView = mapFragment.getView();
+        mLastCameraStore = new LastCameraStore(this);
 
-        //Initialize MapsIndoors and set the google api Key
-        MapsIndoors.initialize(getApplicationContext(), "d876ff0e60bb430b8fabb145");
-        MapsIndoors.setGoogleAPIKey(getString(R.string.google_maps_key));
+        //The repositories outlive the activity, so their data is only loaded once per process
+        VenueRepositories repositories = VenueRepositories.get(this);
+        mVenueSnapshotRepository = repositories.getSnapshotRepository();
+        mLocationIndexRepository = repositories.getIndexRepository();
+        mLocalRouter = repositories.getLocalRouter();
+        mVenueContentRepository = repositories.getContentRepository();
+        mOccupancyHistoryRepository = repositories.getOccupancyHistoryRepository();
+        mOccupancyHistory = mOccupancyHistoryRepository.getHistory();
+        //SDK callbacks go through the scheduler, which drops them once the activity is destroyed
+        mScheduler = new UiTaskScheduler();
+        getLifecycle().addObserver(mScheduler);
+        mSearchPipeline = new LocationSearchPipeline(this, mLocationIndexRepository, mScheduler, mOccupancyHistory);
+        mSearchResultPager = new SearchResultPager(mLocationIndexRepository, this, mScheduler, mOccupancyHistory);
+        mRouteService = new RouteService(mLocalRouter);
+        mRoutePlanner = new RoutePlanner(mRouteService);
+        mUserPositionTracker = new UserPositionTracker(this);
+        //Icons for the search list at the size of a row, bounded to an eighth of the memory available to the app
+        mLocationIconCache = new LocationIconCache(this, (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8),
+                getResources().getDimensionPixelSize(R.dimen.search_icon_size));
 
         ImageButton searchBtn = findViewById(R.id.search_btn);
         mSearchTxtField = findViewById(R.id.search_edit_txt);
@@ -89,6 +165,34 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             }
             return false;
         });
+        //Searches as the user types, the pipeline debounces the keystrokes
+        mSearchTxtField.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {
+
+            }
+
+            @Override
+            public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
+
+            }
+
+            @Override
+            public void afterTextChanged(Editable editable) {
+                mSearchPipeline.onQueryChanged(editable);
+            }
+        });
+
+        //After a configuration change the fragment manager has recreated the fragment of the bottom sheet
+        Fragment restoredFragment = getSupportFragmentManager().findFragmentById(R.id.standardBottomSheet);
+        if (restoredFragment != null) {
+            mCurrentFragment = restoredFragment;
+            if (restoredFragment instanceof SearchFragment) {
+                mSearchFragment = (SearchFragment) restoredFragment;
+            } else if (restoredFragment instanceof NavigationFragment) {
+                mNavigationFragment = (NavigationFragment) restoredFragment;
+            }
+        }
 
         FrameLayout bottomSheet = findViewById(R.id.standardBottomSheet);
         mBtmnSheetBehavior = BottomSheetBehavior.from(bottomSheet);
@@ -97,12 +201,12 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
             public void onStateChanged(@NonNull View bottomSheet, int newState) {
                 if (newState == BottomSheetBehavior.STATE_HIDDEN) {
                     if (mCurrentFragment != null) {
-                        if (mCurrentFragment instanceof NavigationFragment) {
+                        if (mCurrentFragment instanceof NavigationFragment && mpDirectionsRenderer != null) {
                             //Clears the direction view if the navigation fragment is closed.
                             mpDirectionsRenderer.clear();
                         }
                         //Clears the map if any searches has been done.
-                        mMapControl.clearMap();
+                        clearSearchResultsFromMap();
                         //Removes the current fragment from the BottomSheet.
                         removeFragmentFromBottomSheet(mCurrentFragment);
                     }
@@ -116,6 +220,60 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //The background threads owned by the activity end with it
+        mUserPositionTracker.release();
+        mRouteService.shutdown();
+        mLocationIconCache.shutdown();
+        if (mFloorPrefetcher != null) {
+            mFloorPrefetcher.shutdown();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (mMap != null && mMapControl != null) {
+            mLastCameraStore.saveFloor(mMapControl.getCurrentFloorIndex());
+        }
+        //Routes learned this session are written while the app is in the background
+        mLocalRouter.flush();
+        //The weekly profiles of the live data build up over many sessions
+        mOccupancyHistoryRepository.flush();
+        Metrics.export(new File(getFilesDir(), METRICS_FILE));
+        logStats();
+    }
+
+    /**
+     * Logs the counters of the caches and pipelines, in debug builds only.
+     */
+    private void logStats() {
+        if (!BuildConfig.DEBUG) {
+            return;
+        }
+        Log.d(TAG, "Search " + mSearchPipeline.getCache());
+        Log.d(TAG, "Route " + mRouteService.getCache());
+        Log.d(TAG, "Scheduler " + mScheduler);
+        Log.d(TAG, "Models " + ModelStore.describe());
+        if (mLiveDataController != null) {
+            Log.d(TAG, "Live data " + mLiveDataController.getProcessor());
+            Log.d(TAG, "Occupancy " + mOccupancyHistory);
+        }
+        if (mFloorPrefetcher != null) {
+            Log.d(TAG, "Floors " + mFloorPrefetcher);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (mFloorPrefetcher != null) {
+            mFloorPrefetcher.trim(level);
+        }
+    }
+
     /**
      * Public getter for the MapControl object
      * @return MapControl object for this activity
@@ -124,6 +282,30 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         return mMapControl;
     }
 
+    /**
+     * Removes the search results from the map.
+     */
+    void clearSearchResultsFromMap() {
+        mSearchResultCuller.clear();
+        mMapControl.clearMap();
+    }
+
+    /**
+     * Public getter for the icon cache used by the search list
+     * @return LocationIconCache object for this activity
+     */
+    LocationIconCache getLocationIconCache() {
+        return mLocationIconCache;
+    }
+
+    /**
+     * @return the supplementary content of the current venue, or null if it is not configured or not loaded
+     */
+    @Nullable
+    VenueContent getVenueContent() {
+        return mVenueContentRepository != null ? mVenueContentRepository.getContent() : null;
+    }
+
     /**
      * Public getter for the
      * @return MPDirectionRenderer object for this activity
@@ -136,6 +318,20 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     @Override
     public void onMapReady(GoogleMap googleMap) {
         mMap = googleMap;
+        mStartupTrace.mark("mapReady");
+        if (!mColdStart) {
+            mCameraRestored = true;
+        } else {
+            //Fit the camera to the venue of last time, so it shows while MapControl is still loading
+            LatLngBounds venueBounds = mLastCameraStore.getVenueBounds();
+            if (venueBounds != null) {
+                //The map may not have been laid out yet, and it fills the screen
+                DisplayMetrics metrics = getResources().getDisplayMetrics();
+                mMap.moveCamera(CameraUpdateFactory.newLatLngBounds(venueBounds, metrics.widthPixels, metrics.heightPixels, 19));
+                mCameraRestored = true;
+                mStartupTrace.mark("cameraRestored");
+            }
+        }
         if (mMapView != null) {
             initMapControl(mMapView);
         }
@@ -148,22 +344,71 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     void initMapControl(View view) {
         //Creates a new instance of MapControl
         mMapControl = new MapControl(this);
-        //Enable Live Data on the map
-        enableLiveData();
         //Sets the Google map object and the map view to the MapControl
         mMapControl.setGoogleMap(mMap, view);
-        //Initiates the MapControl
+        //Search results are only passed to MapControl for the current floor and camera bounds
+        mSearchResultCuller = new SearchResultCuller(mMapControl, mMap, mScheduler, getResources().getDisplayMetrics().density);
+        mMapControl.addOnCameraIdleListener(() -> mSearchResultCuller.update());
+        mMapControl.addOnCameraIdleListener(this::updateRouteDetail);
+        //Floors the user is likely to switch to next are warmed up ahead of time
+        mFloorPrefetcher = new FloorPrefetcher(mMapControl, mLocationIconCache, mSearchResultCuller);
+        mMapControl.setOnFloorUpdateListener((building, floor) -> {
+            mSearchResultCuller.update();
+            mFloorPrefetcher.onFloorChanged(building, floor);
+        });
+        //Initiates the MapControl. The result is dropped if the activity is destroyed before it arrives
+        UiTaskScheduler.Ticket initTicket = mScheduler.begin("mapControlInit");
         mMapControl.init(miError -> {
-            if (miError == null) {
+            if (miError != null) {
+                return;
+            }
+            mScheduler.submit(initTicket, () -> {
+                //Refresh the snapshot, and rebuild the on-device search index only if the locations changed
+                //The SDK has no locations yet when its data could not be loaded
+                List<MPLocation> locations = MapsIndoors.getLocations();
+                if (locations != null) {
+                    mVenueSnapshotRepository.refreshAsync(locations, changed -> {
+                        if (changed || mLocationIndexRepository.getIndex() == null) {
+                            mLocationIndexRepository.rebuildAsync(locations);
+                        }
+                    });
+                }
                 //No errors so getting the first venue (in the white house solution the only one)
                 Venue venue = MapsIndoors.getVenues().getCurrentVenue();
-                runOnUiThread( ()-> {
-                    if (venue != null) {
-                        //Animates the camera to fit the new venue
-                        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(venue.getLatLngBoundingBox(), 19));
-                    }
+                Metrics.setVenue(venue != null ? venue.getId() : null);
+                return venue;
+            }, venue -> {
+                //The solution data has been (re)loaded, so previous search results and icons may be outdated
+                mSearchPipeline.invalidate();
+                mLocationIconCache.invalidate();
+                mFloorPrefetcher.invalidate();
+                //Follow the user position, if a position provider has been set
+                mUserPositionTracker.start();
+                if (mVenueContentRepository != null && venue != null) {
+                    mVenueContentRepository.loadAsync(venue.getId(), content -> {
+                        if (mSearchFragment != null) {
+                            mSearchFragment.refreshRows();
+                        }
+                    });
+                }
+                if (venue != null) {
+                    mLastCameraStore.saveVenueBounds(venue.getLatLngBoundingBox());
+                }
+                if (mCameraRestored) {
+                    //The camera is already over the venue, so only the floor from last time is restored
+                    mMapControl.selectFloor(mLastCameraStore.getFloor(mMapControl.getCurrentFloorIndex()));
+                } else if (venue != null) {
+                    //Animates the camera to fit the new venue
+                    mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(venue.getLatLngBoundingBox(), 19));
+                }
+                mStartupTrace.mark("mapControlInit");
+                restoreBottomSheet();
+                //Live data is only subscribed once the map has been drawn, so it does not compete with the first render
+                Choreographer.getInstance().postFrameCallback(frameTimeNanos -> {
+                    mStartupTrace.finish("firstInteractive");
+                    enableLiveData();
                 });
-            }
+            });
         });
     }
 
@@ -172,71 +417,214 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
      * @param searchQuery String to search for
      */
     void search(String searchQuery) {
-        //Query with a string to search on
-        MPQuery mpQuery = new MPQuery.Builder().setQuery(searchQuery).build();
-        //Filter for the search query, only taking 30 locations
-        MPFilter mpFilter = new MPFilter.Builder().setTake(30).build();
-
-        //Gets locations
-        MapsIndoors.getLocationsAsync(mpQuery, mpFilter, (list, miError) -> {
-            //Check if there is no error and the list is not empty
-            if (miError == null && !list.isEmpty()) {
-                //Create a new instance of the search fragment
-                mSearchFragment = SearchFragment.newInstance(list, this);
-                //Make a transaction to the bottomsheet
-                addFragmentToBottomSheet(mSearchFragment);
-                //Clear the search text, since we got a result
-                mSearchTxtField.getText().clear();
-                //Calling displaySearch results on the ui thread as camera movement is involved
-                runOnUiThread(()-> {
-                    mMapControl.displaySearchResults(list, true);
-                });
-            }else {
-                String alertDialogTitleTxt;
-                String alertDialogTxt;
-                if (list.isEmpty()) {
-                    alertDialogTitleTxt = "No results found";
-                    alertDialogTxt = "No results could be found for your search text. Try something else";
-                }else {
-                    if (miError != null) {
-                        alertDialogTitleTxt = "Error: " + miError.code;
-                        alertDialogTxt = miError.message;
-                    }else {
-                        alertDialogTitleTxt = "Unknown error";
-                        alertDialogTxt = "Something went wrong, try another search text";
-                    }
-                }
+        mSearchPipeline.submit(searchQuery);
+    }
 
+    /**
+     * Result callback from the search pipeline. Opens up a list of search results and shows them on the map.
+     * @param query the query the results belong to
+     * @param list the locations found
+     * @param submitted true if the user explicitly submitted the search
+     */
+    @Override
+    public void onSearchResults(@NonNull String query, @NonNull List<MPLocation> list, boolean submitted) {
+        //Results of a trailing keystroke never replace a route being navigated, only a submitted search does
+        if (!submitted && mNavigationFragment != null && mCurrentFragment == mNavigationFragment) {
+            return;
+        }
+        Metrics.Span shownSpan = Metrics.begin();
+        if (list.isEmpty()) {
+            //Only bother the user with a dialog when they asked for the search themselves
+            if (submitted) {
                 new AlertDialog.Builder(this)
-                        .setTitle(alertDialogTitleTxt)
-                        .setMessage(alertDialogTxt)
+                        .setTitle("No results found")
+                        .setMessage("No results could be found for your search text. Try something else")
                         .show();
             }
-        });
+            return;
+        }
+        mSearchResults = list;
+        //Further pages are fetched as the user scrolls the list
+        mSearchResultPager.reset(query, list);
+        if (mSearchFragment != null && mCurrentFragment == mSearchFragment) {
+            //The result list is already shown, so only the changes are applied
+            mSearchFragment.setLocations(list, shownSpan);
+        } else {
+            if (mNavigationFragment != null && mCurrentFragment == mNavigationFragment) {
+                //A submitted search ends the navigation, the same way closing it does
+                if (mpDirectionsRenderer != null) {
+                    mpDirectionsRenderer.clear();
+                }
+                removeFragmentFromBottomSheet(mNavigationFragment);
+            }
+            //Create a new instance of the search fragment
+            mSearchFragment = SearchFragment.newInstance(list, shownSpan);
+            //Make a transaction to the bottomsheet
+            addFragmentToBottomSheet(mSearchFragment);
+        }
+        //Clear the search text when the user submitted the search, since we got a result
+        if (submitted) {
+            mSearchPipeline.cancel();
+            mSearchTxtField.getText().clear();
+        }
+        //Results arrive on the main thread, which the camera movement needs. The camera only moves
+        //to the results of a submitted search, not on every keystroke
+        mSearchResultCuller.setResults(list, submitted);
+        if (submitted) {
+            //Prepare the routes to the top results while the user looks at the list
+            mRouteService.prefetch(mUserLocation, list, TravelMode.WALKING);
+        }
+    }
+
+    /**
+     * Called by the search fragment when the result list is scrolled.
+     * @param firstVisible position of the first visible row
+     * @param lastVisible position of the last visible row
+     */
+    void onSearchListScrolled(int firstVisible, int lastVisible) {
+        mSearchResultPager.onVisibleRangeChanged(firstVisible, lastVisible);
+    }
+
+    /**
+     * Called by the pager when pages of results have been loaded or dropped.
+     * @param window the locations currently paged in
+     */
+    @Override
+    public void onSearchWindowChanged(@NonNull List<MPLocation> window) {
+        if (mSearchFragment == null || mCurrentFragment != mSearchFragment) {
+            return;
+        }
+        mSearchResults = window;
+        mSearchFragment.setLocations(window);
+        //Show the paged in locations on the map as well, without moving the camera again
+        mSearchResultCuller.setResults(window, false);
+    }
+
+    /**
+     * Error callback from the search pipeline.
+     * @param query the query that failed
+     * @param miError the error from the SDK, if any
+     * @param submitted true if the user explicitly submitted the search
+     */
+    @Override
+    public void onSearchError(@NonNull String query, @Nullable MIError miError, boolean submitted) {
+        if (!submitted) {
+            return;
+        }
+        String alertDialogTitleTxt;
+        String alertDialogTxt;
+        if (miError != null) {
+            alertDialogTitleTxt = "Error: " + miError.code;
+            alertDialogTxt = miError.message;
+        }else {
+            alertDialogTitleTxt = "Unknown error";
+            alertDialogTxt = "Something went wrong, try another search text";
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(alertDialogTitleTxt)
+                .setMessage(alertDialogTxt)
+                .show();
     }
 
     /**
-     * Queries the MPRouting provider with a hardcoded user location and the location the user should be routed to
+     * Requests a route from the user location to the location the user should be routed to
      * @param mpLocation A MPLocation to navigate to
      */
     void createRoute(MPLocation mpLocation) {
-        //If MPRoutingProvider has not been instantiated create it here and assign the results call back to the activity.
-        if (mpRoutingProvider == null) {
-            mpRoutingProvider = new MPRoutingProvider();
-            mpRoutingProvider.setOnRouteResultListener(this);
+        //The user picked a destination, so the remaining prefetches and any planned route are not needed anymore
+        mRouteService.cancelPrefetch();
+        mRoutePlanner.cancel();
+        mRouteDestination = mpLocation;
+        //Measures from the tap to the route being drawn
+        mRouteSpan = Metrics.begin();
+        //Only the latest request is of interest, the user may tap another location before the route arrives
+        UiTaskScheduler.Ticket ticket = mScheduler.begin("route");
+        //Requests a route with the user location and the point from a location. Served from the cache if it was prefetched.
+        mRouteService.requestRoute(mUserLocation, mpLocation, TravelMode.WALKING,
+                (requestId, route, miError) -> mScheduler.post(ticket, () -> onRouteResult(route, miError, Collections.singletonList(mpLocation))));
+    }
+
+    /**
+     * Lets the user pick a route planned over the listed search results. Called when a search result is long pressed.
+     */
+    void showRoutePlanOptions() {
+        List<MPLocation> candidates = mSearchResults;
+        if (candidates == null || candidates.isEmpty()) {
+            return;
         }
-        mpRoutingProvider.setTravelMode(TravelMode.WALKING);
-        //Queries the MPRouting provider for a route with the hardcoded user location and the point from a location.
-        mpRoutingProvider.query(mUserLocation, mpLocation.getPoint());
+        int nearestOf = Math.min(RoutePlanner.MAX_CANDIDATES, candidates.size());
+        int tourOf = Math.min(RoutePlanner.MAX_TOUR_STOPS, candidates.size());
+        String[] options = {
+                getResources().getQuantityString(R.plurals.route_plan_nearest, nearestOf, nearestOf),
+                getResources().getQuantityString(R.plurals.route_plan_tour, tourOf, tourOf)
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.route_plan_title)
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) {
+                        routeToNearest(candidates);
+                    } else {
+                        routeThrough(candidates);
+                    }
+                    //Clearing map to remove the location filter from our search result
+                    clearSearchResultsFromMap();
+                })
+                .show();
+    }
+
+    /**
+     * Routes the user to whichever of the candidates has the shortest route, e.g. the nearest restroom.
+     * @param candidates the locations to pick from
+     */
+    void routeToNearest(List<MPLocation> candidates) {
+        mRouteService.cancelPrefetch();
+        mRouteSpan = Metrics.begin();
+        UiTaskScheduler.Ticket ticket = mScheduler.begin("route");
+        mRoutePlanner.planNearest(mUserLocation, candidates, TravelMode.WALKING, (stops, routes, miError) -> mScheduler.post(ticket, () -> {
+            if (stops == null) {
+                onRouteResult(null, miError, candidates);
+                return;
+            }
+            //Rerouting goes to the same location, the nearest one is not picked again
+            mRouteDestination = stops.get(0);
+            onRouteResult(routes.get(0), null, stops);
+        }));
+    }
+
+    /**
+     * Routes the user past all the stops, in the order that makes the shortest walk.
+     * @param stops the locations to visit
+     */
+    void routeThrough(List<MPLocation> stops) {
+        mRouteService.cancelPrefetch();
+        mRouteSpan = Metrics.begin();
+        UiTaskScheduler.Ticket ticket = mScheduler.begin("route");
+        mRoutePlanner.planTour(mUserLocation, stops, TravelMode.WALKING, (orderedStops, routes, miError) -> {
+            if (orderedStops == null) {
+                mScheduler.post(ticket, () -> onRouteResult(null, miError, stops));
+                return;
+            }
+            //The routes between the stops are chained into one route with a leg per part of the walk
+            mScheduler.submit(ticket, () -> {
+                Route route = RoutePlanner.chain(routes);
+                RouteInstructions.of(route);
+                return route;
+            }, route -> {
+                //Rerouting would drop the stops of the tour, so only single destination routes are rerouted
+                mRouteDestination = null;
+                onRouteResult(route, null, orderedStops);
+            });
+        });
     }
 
     /**
      * The result callback from the route query. Starts the rendering of the route and opens up a new instance of the navigation fragment on the bottom sheet.
      * @param route the route model used to render a navigation view.
      * @param miError an MIError if anything goes wrong when generating a route
+     * @param stops the locations the route goes to, in order
      */
-    @Override
-    public void onRouteResult(@Nullable Route route, @Nullable MIError miError) {
+    void onRouteResult(@Nullable Route route, @Nullable MIError miError, @NonNull List<MPLocation> stops) {
         //Return if either error is not null or the route is null
         if (miError != null || route == null) {
             new AlertDialog.Builder(this)
@@ -245,36 +633,162 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
                     .show();
             return;
         }
+        //Create a new instance of the navigation fragment. It only keeps the key of the route, the route is kept in the store.
+        mNavigationFragment = NavigationFragment.newInstance(RouteState.of(route, stops));
+        //Add the fragment to the BottomSheet
+        addFragmentToBottomSheet(mNavigationFragment);
+        renderRoute(route);
+        Metrics.end(mRouteSpan, Metrics.Stage.ROUTE_SHOWN);
+        mRouteSpan = null;
+    }
+
+    /**
+     * Draws a route on the map and follows the user along it.
+     */
+    private void renderRoute(@NonNull Route route) {
         //Create the MPDirectionsRenderer if it has not been instantiated.
         if (mpDirectionsRenderer == null) {
-            mpDirectionsRenderer = new MPDirectionsRenderer(this, mMap, mMapControl, i -> {
-                //Listener call back for when the user changes route leg. (By default is only called when a user presses the RouteLegs end marker)
-                mpDirectionsRenderer.setRouteLegIndex(i);
-                mMapControl.selectFloor(mpDirectionsRenderer.getCurrentFloor());
-            });
+            //Listener call back for when the user changes route leg. (By default is only called when a user presses the RouteLegs end marker)
+            mpDirectionsRenderer = new MPDirectionsRenderer(this, mMap, mMapControl, this::selectRouteLeg);
         }
         //Set the route on the Directions renderer
         mpDirectionsRenderer.setRoute(route);
-        //Create a new instance of the navigation fragment
-        mNavigationFragment = NavigationFragment.newInstance(route, this);
-        //Add the fragment to the BottomSheet
-        addFragmentToBottomSheet(mNavigationFragment);
-        //As camera movement is involved run this on the UIThread
-        runOnUiThread(()-> {
-            //Starts drawing and adjusting the map according to the route
-            mpDirectionsRenderer.initMap(true);
+        mRenderedRoute = route;
+        mDrawnRoute = route;
+        mRouteDetailLevels = null;
+        mRouteLegIndex = 0;
+        //The simplified levels of detail are drawn once built, until then the full route is drawn
+        UiTaskScheduler.Ticket ticket = mScheduler.begin("routeDetail");
+        mScheduler.submit(ticket, () -> RouteDetailLevels.of(route), levels -> {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Route " + levels);
+            }
+            mRouteDetailLevels = levels;
+            updateRouteDetail();
         });
+        //Watch for the user leaving the route
+        mUserPositionTracker.setRoute(route);
+        mFloorPrefetcher.setRoute(route);
+        //Starts drawing and adjusting the map according to the route, this is called on the main thread
+        mpDirectionsRenderer.initMap(true);
     }
 
+    /**
+     * Shows a leg of the route being navigated, on its floor.
+     * @param leg the index of the leg
+     */
+    void selectRouteLeg(int leg) {
+        mRouteLegIndex = leg;
+        mpDirectionsRenderer.setRouteLegIndex(leg);
+        //Update the floor on mapcontrol if the floor has changed for the routing, and warm up the floors of the next legs
+        mFloorPrefetcher.onLegSelected(leg, mpDirectionsRenderer.getCurrentFloor());
+    }
+
+    /**
+     * Draws the route being navigated at the level of detail of the current zoom, call when the camera has stopped moving.
+     * Only the drawn geometry changes, the camera stays where the user left it.
+     */
+    private void updateRouteDetail() {
+        if (mRouteDetailLevels == null || mpDirectionsRenderer == null) {
+            return;
+        }
+        CameraPosition camera = mMap.getCameraPosition();
+        Route detailed = mRouteDetailLevels.forZoom(camera.zoom);
+        Route route = detailed != null ? detailed : mRenderedRoute;
+        if (route == mDrawnRoute) {
+            return;
+        }
+        mDrawnRoute = route;
+        mpDirectionsRenderer.setRoute(route);
+        mpDirectionsRenderer.setRouteLegIndex(mRouteLegIndex);
+        //Showing the leg fits the camera to it, put it back. The camera then stops at the same zoom, in the same
+        //level of detail, so the idle listener does not swap the route again
+        mMap.moveCamera(CameraUpdateFactory.newCameraPosition(camera));
+    }
+
+    /**
+     * Shows the models of a fragment the bottom sheet held before a configuration change on the map
+     * again. A route that has left the store, e.g. after process death, is asked for again.
+     */
+    private void restoreBottomSheet() {
+        if (mSearchFragment != null && mCurrentFragment == mSearchFragment) {
+            mSearchFragment.resolveLocations();
+            mSearchResults = mSearchFragment.getLocations();
+            mSearchResultCuller.setResults(mSearchResults, false);
+        }
+        if (mNavigationFragment == null || mCurrentFragment != mNavigationFragment) {
+            return;
+        }
+        Route route = mNavigationFragment.getRoute();
+        if (route != null) {
+            renderRoute(route);
+            return;
+        }
+        List<MPLocation> stops = mNavigationFragment.getState().resolveStops();
+        if (stops == null || stops.isEmpty()) {
+            removeFragmentFromBottomSheet(mNavigationFragment);
+        } else if (stops.size() == 1) {
+            createRoute(stops.get(0));
+        } else {
+            routeThrough(stops);
+        }
+    }
+
+
+    /**
+     * Smoothed and rate limited position updates from the position tracker.
+     * @param position the new user position
+     */
+    @Override
+    public void onUserPositionChanged(@NonNull Point position) {
+        mUserLocation = position;
+        if (mMap == null) {
+            return;
+        }
+        if (mUserMarker == null) {
+            mUserMarker = mMap.addMarker(new MarkerOptions().position(position.getLatLng()).title("You"));
+        } else {
+            mUserMarker.setPosition(position.getLatLng());
+        }
+    }
+
+    /**
+     * Called by the position tracker when the user has walked away from the current route.
+     * @param position the user position
+     */
+    @Override
+    public void onUserOffRoute(@NonNull Point position) {
+        mUserLocation = position;
+        //Only reroute while the route is still being shown
+        if (mRouteDestination != null && mCurrentFragment instanceof NavigationFragment) {
+            createRoute(mRouteDestination);
+        }
+    }
+
+    /**
+     * Called by the position tracker when the user has come further along the current route.
+     * @param progress the progress along the route
+     */
+    @Override
+    public void onRouteProgress(@NonNull RouteProgress progress) {
+        if (mNavigationFragment != null && mCurrentFragment == mNavigationFragment) {
+            mNavigationFragment.onRouteProgress(progress);
+        }
+    }
 
     /**
      * Enables live data for the map.
      */
     void enableLiveData() {
+        if (mLiveDataController != null) {
+            return;
+        }
+        //Live updates are batched per frame and filtered to what is visible before redrawing the map
+        mLiveDataController = new LiveDataController(mMapControl, mMap, mOccupancyHistory, mLocationIconCache);
         //Enabling Live Data for the three known Live Data Domains enabled for this Solution.
-        mMapControl.enableLiveData(LiveDataDomainTypes.AVAILABILITY_DOMAIN);
-        mMapControl.enableLiveData(LiveDataDomainTypes.OCCUPANCY_DOMAIN);
-        mMapControl.enableLiveData(LiveDataDomainTypes.POSITION_DOMAIN);
+        mLiveDataController.enable(LiveDataDomainTypes.AVAILABILITY_DOMAIN);
+        mLiveDataController.enable(LiveDataDomainTypes.OCCUPANCY_DOMAIN);
+        mLiveDataController.enable(LiveDataDomainTypes.POSITION_DOMAIN);
     }
 
     void addFragmentToBottomSheet(Fragment newFragment) {
@@ -296,6 +810,18 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         if (mCurrentFragment.equals(fragment)) {
             mCurrentFragment = null;
         }
+        if (fragment instanceof NavigationFragment) {
+            //Navigation has ended, so stop watching for the user leaving the route
+            mRouteDestination = null;
+            mUserPositionTracker.setRoute(null);
+            mScheduler.cancel("routeDetail");
+            mRenderedRoute = null;
+            mDrawnRoute = null;
+            mRouteDetailLevels = null;
+            if (mFloorPrefetcher != null) {
+                mFloorPrefetcher.setRoute(null);
+            }
+        }
         getSupportFragmentManager().beginTransaction().remove(fragment).commit();
         runOnUiThread(()-> {
             mMapControl.setMapPadding(0,0,0,0);
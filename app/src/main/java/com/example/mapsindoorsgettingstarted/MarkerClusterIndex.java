@@ -0,0 +1,257 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Zoom aware clustering of points, built once per set of points. Every zoom level from
+ * {@link #MIN_ZOOM} to the max zoom gets its own set of clusters, made by greedily merging the
+ * clusters of the level above that are within a fixed amount of screen pixels of each other.
+ * Changing zoom only means reading another level, nothing is recomputed.
+ * Points are kept in web mercator coordinates scaled to 0..1, so a radius in pixels becomes
+ * a distance by dividing it by the world size in pixels at that zoom. The map tiles are 256 dp
+ * wide, so the world size in pixels depends on the display density.
+ */
+class MarkerClusterIndex {
+
+    /**
+     * Receives the clusters of a query.
+     */
+    interface Visitor {
+        /**
+         * @param lat the latitude of the weighted center of the cluster
+         * @param lng the longitude of the weighted center of the cluster
+         * @param count the number of points in the cluster
+         * @param point the index of the point if count is 1, otherwise -1
+         */
+        void visit(double lat, double lng, int count, int point);
+    }
+
+    static final int MIN_ZOOM = 0;
+    //In dp
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * The clusters of one zoom level, as parallel arrays.
+     */
+    private static final class Level {
+        final double[] x;
+        final double[] y;
+        final int[] count;
+        //Index of the single point in the cluster, or -1
+        final int[] point;
+
+        Level(double[] x, double[] y, int[] count, int[] point) {
+            this.x = x;
+            this.y = y;
+            this.count = count;
+            this.point = point;
+        }
+    }
+
+    private final int mMaxZoom;
+    //mLevels[zoom - MIN_ZOOM], mLevels[mMaxZoom + 1 - MIN_ZOOM] holds the unclustered points
+    private final Level[] mLevels;
+
+    /**
+     * Builds the clusters for all zoom levels, for a display density of 1.
+     */
+    MarkerClusterIndex(@NonNull double[] lats, @NonNull double[] lngs, int radiusPx, int maxZoom) {
+        this(lats, lngs, radiusPx, maxZoom, 1);
+    }
+
+    /**
+     * Builds the clusters for all zoom levels.
+     * @param lats the latitudes of the points
+     * @param lngs the longitudes of the points
+     * @param radiusPx points closer than this on screen are clustered
+     * @param maxZoom the highest zoom level to cluster at, above it all points are shown
+     * @param density the display density, pixels per dp
+     */
+    MarkerClusterIndex(@NonNull double[] lats, @NonNull double[] lngs, int radiusPx, int maxZoom, float density) {
+        if (lats.length != lngs.length) {
+            throw new IllegalArgumentException("lats and lngs differ in length");
+        }
+        mMaxZoom = maxZoom;
+        mLevels = new Level[maxZoom + 2 - MIN_ZOOM];
+
+        int size = lats.length;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        int[] count = new int[size];
+        int[] point = new int[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = projectX(lngs[i]);
+            y[i] = projectY(lats[i]);
+            count[i] = 1;
+            point[i] = i;
+        }
+        Level level = new Level(x, y, count, point);
+        mLevels[maxZoom + 1 - MIN_ZOOM] = level;
+        for (int zoom = maxZoom; zoom >= MIN_ZOOM; zoom--) {
+            level = cluster(level, radiusPx / (TILE_SIZE * density * Math.pow(2, zoom)));
+            mLevels[zoom - MIN_ZOOM] = level;
+        }
+    }
+
+    /**
+     * Merges the clusters of a level that are within the radius of each other.
+     * A uniform grid with cells of the radius size means only the 9 surrounding cells need checking.
+     */
+    private static Level cluster(@NonNull Level in, double radius) {
+        int size = in.x.length;
+        CellTable cells = new CellTable(size);
+        //The first cluster in a cell is found through the table, the rest are chained through next
+        int[] next = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            next[i] = cells.push(cellKey((int) (in.x[i] / radius), (int) (in.y[i] / radius)), i);
+        }
+
+        double[] x = new double[size];
+        double[] y = new double[size];
+        int[] count = new int[size];
+        int[] point = new int[size];
+        boolean[] merged = new boolean[size];
+        double radiusSquared = radius * radius;
+        int clusters = 0;
+        for (int i = 0; i < size; i++) {
+            if (merged[i]) {
+                continue;
+            }
+            merged[i] = true;
+            int column = (int) (in.x[i] / radius);
+            int row = (int) (in.y[i] / radius);
+            int weight = in.count[i];
+            double weightedX = in.x[i] * weight;
+            double weightedY = in.y[i] * weight;
+            for (int c = column - 1; c <= column + 1; c++) {
+                for (int r = row - 1; r <= row + 1; r++) {
+                    for (int j = cells.head(cellKey(c, r)); j >= 0; j = next[j]) {
+                        if (merged[j]) {
+                            continue;
+                        }
+                        double dx = in.x[j] - in.x[i];
+                        double dy = in.y[j] - in.y[i];
+                        if (dx * dx + dy * dy <= radiusSquared) {
+                            merged[j] = true;
+                            weight += in.count[j];
+                            weightedX += in.x[j] * in.count[j];
+                            weightedY += in.y[j] * in.count[j];
+                        }
+                    }
+                }
+            }
+            x[clusters] = weightedX / weight;
+            y[clusters] = weightedY / weight;
+            count[clusters] = weight;
+            point[clusters] = weight == 1 ? in.point[i] : -1;
+            clusters++;
+        }
+        return new Level(Arrays.copyOf(x, clusters), Arrays.copyOf(y, clusters),
+                Arrays.copyOf(count, clusters), Arrays.copyOf(point, clusters));
+    }
+
+    /**
+     * Visits the clusters of a zoom level inside a bounding box.
+     * @param zoom the zoom level, clamped to the levels of the index
+     */
+    void query(int zoom, double south, double west, double north, double east, @NonNull Visitor visitor) {
+        Level level = level(zoom);
+        double minX = projectX(west);
+        double maxX = projectX(east);
+        //Mercator y grows towards the south
+        double minY = projectY(north);
+        double maxY = projectY(south);
+        for (int i = 0; i < level.x.length; i++) {
+            double x = level.x[i];
+            double y = level.y[i];
+            if (y >= minY && y <= maxY && x >= minX && x <= maxX) {
+                visitor.visit(unprojectY(y), unprojectX(x), level.count[i], level.point[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the number of clusters at a zoom level, single points included
+     */
+    int clusterCount(int zoom) {
+        return level(zoom).x.length;
+    }
+
+    int getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    private Level level(int zoom) {
+        int clamped = Math.max(MIN_ZOOM, Math.min(mMaxZoom + 1, zoom));
+        return mLevels[clamped - MIN_ZOOM];
+    }
+
+    private static double projectX(double lng) {
+        return lng / 360 + 0.5;
+    }
+
+    private static double projectY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return Math.max(0, Math.min(1, y));
+    }
+
+    private static double unprojectX(double x) {
+        return (x - 0.5) * 360;
+    }
+
+    private static double unprojectY(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+
+    /**
+     * Open addressing hash table from a cell key to the first cluster in the cell, so building
+     * the levels does not box a key for every point.
+     */
+    private static final class CellTable {
+        private final long[] mKeys;
+        private final int[] mHeads;
+        private final int mMask;
+
+        CellTable(int expectedCells) {
+            int capacity = Integer.highestOneBit(Math.max(2, expectedCells) * 2 - 1) << 1;
+            mKeys = new long[capacity];
+            mHeads = new int[capacity];
+            Arrays.fill(mHeads, -1);
+            mMask = capacity - 1;
+        }
+
+        /**
+         * Makes a cluster the first in its cell.
+         * @return the previous first cluster in the cell, or -1
+         */
+        int push(long key, int cluster) {
+            int slot = slot(key);
+            int previous = mHeads[slot];
+            mKeys[slot] = key;
+            mHeads[slot] = cluster;
+            return previous;
+        }
+
+        /**
+         * @return the first cluster in a cell, or -1
+         */
+        int head(long key) {
+            return mHeads[slot(key)];
+        }
+
+        private int slot(long key) {
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mMask;
+            while (mHeads[slot] != -1 && mKeys[slot] != key) {
+                slot = (slot + 1) & mMask;
+            }
+            return slot;
+        }
+    }
+
+    private static long cellKey(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and allocation metrics of the hot paths, per venue. A {@link Span} is started where a
+ * user action begins and ended at each {@link Stage} it reaches, which records the time since the
+ * start in a {@link LatencyHistogram} of that stage. Spans can be passed between threads.
+ * When disabled, {@link #begin()} returns null and {@link #end} returns right away, so
+ * instrumented code pays a field read and nothing else.
+ */
+final class Metrics {
+
+    /**
+     * The measured stages, each ending a span started by the user action it belongs to.
+     */
+    enum Stage {
+        //Search query to results, by where the results came from
+        SEARCH_LOCAL("search.local"),
+        SEARCH_INDEX("search.index"),
+        SEARCH_CACHE("search.cache"),
+        SEARCH_SDK("search.sdk"),
+        //Results to the result list showing them
+        SEARCH_SHOWN("search.shown"),
+        //Route query to the route and its instructions being ready
+        ROUTE_QUERY("route.query"),
+        //Route query answered from the on-device routing graph
+        ROUTE_LOCAL("route.local"),
+        //Tapping a location to the route being rendered
+        ROUTE_SHOWN("route.shown"),
+        //Loading the supplementary venue content, from the request to the parsed content
+        CONTENT_LOAD("content.load"),
+        //Selecting a floor to the app having updated it for the floor change, for floors that were prefetched or not
+        FLOOR_SWITCH_WARM("floor.switch.warm"),
+        FLOOR_SWITCH_COLD("floor.switch.cold");
+
+        final String mName;
+
+        Stage(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * The start of a measured action.
+     */
+    static final class Span {
+        final long mStartNanos;
+        final long mStartAllocatedBytes;
+
+        private Span(long startNanos, long startAllocatedBytes) {
+            mStartNanos = startNanos;
+            mStartAllocatedBytes = startAllocatedBytes;
+        }
+    }
+
+    private static final String TAG = "Metrics";
+    private static final String NO_VENUE = "none";
+
+    /**
+     * The metrics of one venue.
+     */
+    private static final class VenueMetrics {
+        final LatencyHistogram[] mLatencies = new LatencyHistogram[Stage.values().length];
+        final AtomicLongArray mAllocatedBytes = new AtomicLongArray(Stage.values().length);
+
+        VenueMetrics() {
+            for (int i = 0; i < mLatencies.length; i++) {
+                mLatencies[i] = new LatencyHistogram();
+            }
+        }
+    }
+
+    private static volatile boolean sEnabled;
+    private static final Map<String, VenueMetrics> sVenues = new ConcurrentHashMap<>();
+    private static volatile VenueMetrics sCurrent = venue(NO_VENUE);
+    private static final ExecutorService sExportExecutor = Executors.newSingleThreadExecutor();
+
+    private Metrics() {
+    }
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Sets the venue that following measurements are recorded for.
+     * @param venueId the id of the venue, or null if no venue is loaded
+     */
+    static void setVenue(@Nullable String venueId) {
+        sCurrent = venue(venueId != null ? venueId : NO_VENUE);
+    }
+
+    private static VenueMetrics venue(@NonNull String venueId) {
+        VenueMetrics metrics = sVenues.get(venueId);
+        if (metrics == null) {
+            sVenues.putIfAbsent(venueId, new VenueMetrics());
+            metrics = sVenues.get(venueId);
+        }
+        return metrics;
+    }
+
+    /**
+     * Starts a span.
+     * @return the span, or null when metrics are disabled
+     */
+    @Nullable
+    static Span begin() {
+        if (!sEnabled) {
+            return null;
+        }
+        return new Span(System.nanoTime(), allocatedBytes());
+    }
+
+    /**
+     * Records a stage reached by a span. A span can end several stages.
+     * @param span the span from {@link #begin()}, null is ignored
+     * @param stage the stage that was reached
+     */
+    static void end(@Nullable Span span, @NonNull Stage stage) {
+        if (span == null) {
+            return;
+        }
+        VenueMetrics metrics = sCurrent;
+        metrics.mLatencies[stage.ordinal()].record(System.nanoTime() - span.mStartNanos);
+        metrics.mAllocatedBytes.addAndGet(stage.ordinal(), Math.max(0, allocatedBytes() - span.mStartAllocatedBytes));
+    }
+
+    /**
+     * The bytes allocated by the whole process so far. Work on other threads during a span is
+     * counted as well, so this is an upper bound of what the span itself allocated.
+     */
+    private static long allocatedBytes() {
+        String bytes = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        if (bytes == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(bytes);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return one tab separated line per venue and stage that has measurements, after a header line
+     */
+    @NonNull
+    static String report() {
+        StringBuilder builder = new StringBuilder("venue\tstage\tcount\tp50_us\tp99_us\tmean_us\tmax_us\tmean_alloc_bytes\n");
+        for (Map.Entry<String, VenueMetrics> entry : sVenues.entrySet()) {
+            VenueMetrics metrics = entry.getValue();
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram latency = metrics.mLatencies[stage.ordinal()];
+                long count = latency.count();
+                if (count == 0) {
+                    continue;
+                }
+                builder.append(entry.getKey()).append('\t')
+                        .append(stage.mName).append('\t')
+                        .append(count).append('\t')
+                        .append(latency.percentileMicros(50)).append('\t')
+                        .append(latency.percentileMicros(99)).append('\t')
+                        .append(latency.meanMicros()).append('\t')
+                        .append(latency.maxMicros()).append('\t')
+                        .append(metrics.mAllocatedBytes.get(stage.ordinal()) / count).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the report to logcat and to a file, in the background. Does nothing when disabled.
+     * @param file the file to write, replaced if it exists
+     */
+    static void export(@NonNull File file) {
+        if (!sEnabled) {
+            return;
+        }
+        sExportExecutor.execute(() -> {
+            String report = report();
+            Log.i(TAG, report);
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(report);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not write metrics to " + file, e);
+            }
+        });
+    }
+}
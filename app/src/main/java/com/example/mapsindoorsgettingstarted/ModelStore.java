@@ -0,0 +1,84 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.Route;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the routes and result lists shown by the fragments in memory once, so fragments only keep
+ * small {@link RouteState} and {@link LocationListState} models holding keys and ids. The store
+ * outlives configuration changes, so a recreated fragment finds its models again without new
+ * queries. It is bounded, and after eviction or process death fragments fall back to the ids.
+ */
+final class ModelStore {
+
+    //A shown route and one being replaced, plus a couple recently shown
+    private static final int MAX_ROUTES = 4;
+    private static final int MAX_LOCATION_LISTS = 4;
+    private static final long MAX_AGE_MINUTES = 60;
+
+    private static final QueryResultCache<String, Route> sRoutes =
+            new QueryResultCache<>(MAX_ROUTES, MAX_AGE_MINUTES, TimeUnit.MINUTES);
+    private static final QueryResultCache<String, List<MPLocation>> sLocationLists =
+            new QueryResultCache<>(MAX_LOCATION_LISTS, MAX_AGE_MINUTES, TimeUnit.MINUTES);
+
+    private ModelStore() {
+    }
+
+    /**
+     * @return the key to get the route with. Keys are random, so keys saved before process death never find other models.
+     */
+    @NonNull
+    static String putRoute(@NonNull Route route) {
+        String key = UUID.randomUUID().toString();
+        sRoutes.put(key, route);
+        return key;
+    }
+
+    /**
+     * @return the route, or null if it has been evicted
+     */
+    @Nullable
+    static Route getRoute(@NonNull String key) {
+        return sRoutes.get(key);
+    }
+
+    /**
+     * @return the key to get the locations with
+     */
+    @NonNull
+    static String putLocations(@NonNull List<MPLocation> locations) {
+        String key = UUID.randomUUID().toString();
+        sLocationLists.put(key, locations);
+        return key;
+    }
+
+    /**
+     * Replaces the locations kept under a key, so a list that changes does not take up a new entry every time.
+     */
+    static void replaceLocations(@NonNull String key, @NonNull List<MPLocation> locations) {
+        sLocationLists.put(key, locations);
+    }
+
+    /**
+     * @return the locations, or null if they have been evicted
+     */
+    @Nullable
+    static List<MPLocation> getLocations(@NonNull String key) {
+        return sLocationLists.get(key);
+    }
+
+    /**
+     * @return the hit and miss counters of the routes and location lists
+     */
+    @NonNull
+    static String describe() {
+        return "routes " + sRoutes + ", location lists " + sLocationLists;
+    }
+}
@@ -6,6 +6,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.NonNull;
 
 import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteLeg;
 
 import androidx.fragment.app.Fragment;
 import androidx.viewpager2.adapter.FragmentStateAdapter;
@@ -29,19 +30,44 @@ import java.util.concurrent.TimeUnit;
  * </pre>
  */
 public class NavigationFragment extends Fragment {
-    private Route mRoute;
-    private MapsActivity mMapsActivity;
+    private static final String ARG_ROUTE = "route";
 
-    public static NavigationFragment newInstance(Route route, MapsActivity mapsActivity) {
+    private RouteState mState;
+    //Null if the route has left the store, until the activity has asked for it again
+    private Route mRoute;
+    private ViewPager2 mViewPager;
+    private TextView mDistanceTxtView;
+    private TextView mInfoTxtView;
+
+    /**
+     * @param route the route, kept in the {@link ModelStore}
+     */
+    public static NavigationFragment newInstance(RouteState route) {
         final NavigationFragment fragment = new NavigationFragment();
-        fragment.mRoute = route;
-        fragment.mMapsActivity = mapsActivity;
+        Bundle arguments = new Bundle();
+        arguments.putParcelable(ARG_ROUTE, route);
+        fragment.setArguments(arguments);
         return fragment;
     }
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mState = requireArguments().getParcelable(ARG_ROUTE);
+        mRoute = mState.getRoute();
+    }
+
+    @NonNull
+    RouteState getState() {
+        return mState;
+    }
+
+    /**
+     * @return the route, or null if it has left the store
+     */
+    @Nullable
+    Route getRoute() {
+        return mRoute;
     }
 
     @Nullable
@@ -54,30 +80,36 @@ public class NavigationFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         RouteCollectionAdapter routeCollectionAdapter = new RouteCollectionAdapter(this);
-        ViewPager2 mViewPager = view.findViewById(R.id.view_pager);
+        mViewPager = view.findViewById(R.id.view_pager);
         mViewPager.setAdapter(routeCollectionAdapter);
         mViewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
             @Override
             public void onPageSelected(int position) {
                 super.onPageSelected(position);
+                MapsActivity mapsActivity = getMapsActivity();
+                //The renderer is only there once the route has been drawn, after a configuration change it is drawn again
+                if (mapsActivity.getMpDirectionsRenderer() == null) {
+                    return;
+                }
                 //When a page is selected call the renderer with the index
-                mMapsActivity.getMpDirectionsRenderer().setRouteLegIndex(position);
-                //Update the floor on mapcontrol if the floor might have changed for the routing
-                mMapsActivity.getMapControl().selectFloor(mMapsActivity.getMpDirectionsRenderer().getCurrentFloor());
+                mapsActivity.selectRouteLeg(position);
             }
         });
 
         //Assigning views
-        TextView distanceTxtView = view.findViewById(R.id.distanceTxt);
-        TextView infoTxtView = view.findViewById(R.id.infoTxt);
+        mDistanceTxtView = view.findViewById(R.id.distanceTxt);
+        mInfoTxtView = view.findViewById(R.id.infoTxt);
         ImageButton closeBtn = view.findViewById(R.id.closeBtn);
         ImageButton nextBtn = view.findViewById(R.id.arrow_next);
         ImageButton backBtn = view.findViewById(R.id.arrow_back);
 
         //Button for closing the bottom sheet. Clears the route through directionsRenderer as well, and changes map padding.
         closeBtn.setOnClickListener(v -> {
-            mMapsActivity.removeFragmentFromBottomSheet(this);
-            mMapsActivity.getMpDirectionsRenderer().clear();
+            MapsActivity mapsActivity = getMapsActivity();
+            mapsActivity.removeFragmentFromBottomSheet(this);
+            if (mapsActivity.getMpDirectionsRenderer() != null) {
+                mapsActivity.getMpDirectionsRenderer().clear();
+            }
         });
 
         //Next button for going through the legs of the route.
@@ -90,10 +122,73 @@ public class NavigationFragment extends Fragment {
             mViewPager.setCurrentItem(mViewPager.getCurrentItem() - 1, true);
         });
 
-        //Describing the distance in meters
-        distanceTxtView.setText("Distance: " + mRoute.getDistance() + " m");
-        //Describing the time it takes for the route in minutes
-        infoTxtView.setText("Time for route: " + TimeUnit.MINUTES.convert(mRoute.getDuration(), TimeUnit.SECONDS) + " minutes");
+        if (mRoute != null) {
+            mDistanceTxtView.setText(describeDistance(mRoute));
+            mInfoTxtView.setText(describeDuration(mRoute));
+        } else {
+            mDistanceTxtView.setText(R.string.route_loading);
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mViewPager = null;
+        mDistanceTxtView = null;
+        mInfoTxtView = null;
+    }
+
+    /**
+     * Shows how far the user has come along the route. Only the texts are updated, the leg is
+     * changed when the user has reached the next one.
+     * @param progress the progress, only passed in when it has changed
+     */
+    void onRouteProgress(@NonNull RouteProgress progress) {
+        if (mViewPager == null) {
+            return;
+        }
+        if (progress.mLeg != mViewPager.getCurrentItem()) {
+            //Selecting the page moves the renderer to the leg, see onPageSelected
+            mViewPager.setCurrentItem(progress.mLeg, true);
+        }
+        if (progress.mArrived) {
+            mDistanceTxtView.setText("You have arrived");
+            mInfoTxtView.setText("");
+            return;
+        }
+        mDistanceTxtView.setText("Distance left: " + Math.round(progress.mRemainingMeters) + " m, next step in "
+                + Math.round(progress.mStepRemainingMeters) + " m");
+        mInfoTxtView.setText("Time left: " + TimeUnit.MINUTES.convert(Math.round(progress.mRemainingSeconds), TimeUnit.SECONDS) + " minutes");
+    }
+
+    /**
+     * Describes the distance of a route in meters. Summed over the legs, so a route chained from
+     * several routes by {@link RoutePlanner#chain} is described in full.
+     */
+    @NonNull
+    static String describeDistance(@NonNull Route route) {
+        float distance = 0;
+        for (RouteLeg leg : route.getLegs()) {
+            distance += leg.getDistance();
+        }
+        return "Distance: " + distance + " m";
+    }
+
+    /**
+     * Describes the time it takes for the route in minutes, summed over the legs like {@link #describeDistance(Route)}.
+     */
+    @NonNull
+    static String describeDuration(@NonNull Route route) {
+        float duration = 0;
+        for (RouteLeg leg : route.getLegs()) {
+            duration += leg.getDuration();
+        }
+        return "Time for route: " + TimeUnit.MINUTES.convert((long) duration, TimeUnit.SECONDS) + " minutes";
+    }
+
+    @NonNull
+    private MapsActivity getMapsActivity() {
+        return (MapsActivity) requireActivity();
     }
 
     class RouteCollectionAdapter extends FragmentStateAdapter {
@@ -105,12 +200,12 @@ public class NavigationFragment extends Fragment {
         @NonNull
         @Override
         public Fragment createFragment(int position) {
-            return RouteLegFragment.newInstance(mRoute.getLegs().get(position));
+            return RouteLegFragment.newInstance(mState, position);
         }
 
         @Override
         public int getItemCount() {
-            return mRoute.getLegs().size();
+            return mRoute != null ? mRoute.getLegs().size() : 0;
         }
     }
 }
\ No newline at end of file
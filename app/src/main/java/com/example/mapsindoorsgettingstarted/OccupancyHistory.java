@@ -0,0 +1,434 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Keeps the history of the occupancy and availability live data of locations in fixed memory.
+ * Every location gets a slot with a ring of its latest raw samples, each packed into a long, and
+ * a profile of how often it was free at each hour of the week. The time between samples is
+ * downsampled into the profile once its hour has passed, so a location that changes a hundred
+ * times an hour costs as much as one that never changes. When all slots are taken, the location
+ * that was updated longest ago gives up its slot.
+ * Search results are ranked by whether they are free now, and then by how often they are free at
+ * this hour, with a couple of array reads per result. The history can be written to and read back
+ * from storage, so the profiles build up over the weeks. All methods are thread safe.
+ */
+class OccupancyHistory {
+
+    /**
+     * Gives the location id of a ranked item.
+     */
+    interface IdProvider<T> {
+        @NonNull
+        String id(@NonNull T item);
+    }
+
+    //What is known of a location right now
+    static final int UNKNOWN = 0;
+    static final int FREE = 1;
+    static final int BUSY = 2;
+
+    static final int DEFAULT_MAX_LOCATIONS = 2048;
+    static final int RING_SIZE = 16;
+    static final int HOURS_PER_WEEK = 7 * 24;
+    //A state older than this is not trusted, and the time since is not counted in the profile
+    static final long STATE_VALID_MS = 2 * 60 * 60 * 1000L;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    //An hour needs this much time with a known state to be counted in the profile
+    private static final long MIN_HOUR_COVERAGE_MS = 10 * 60 * 1000L;
+    //Each hour moves the profile a quarter of the way towards the free fraction of that hour
+    private static final int PROFILE_WEIGHT = 4;
+    //Profile entries hold the free fraction scaled to 0..PROFILE_SCALE, or PROFILE_UNKNOWN
+    private static final int PROFILE_SCALE = 250;
+    private static final byte PROFILE_UNKNOWN = (byte) 255;
+    //The epoch started on a Thursday, hours of the week count from Monday midnight
+    private static final long EPOCH_HOUR_OF_WEEK = 3 * 24;
+    //Identifies the stored form of the history
+    private static final int MAGIC = 0x4F434348;
+    private static final int VERSION = 1;
+
+    //Samples are packed as the time in milliseconds, the number of people and the state bits
+    private static final int PEOPLE_SHIFT = 4;
+    private static final int TIME_SHIFT = 20;
+    private static final long PEOPLE_MASK = 0xFFFF;
+    private static final int AVAILABILITY_KNOWN = 1;
+    private static final int AVAILABLE = 1 << 1;
+    private static final int OCCUPANCY_KNOWN = 1 << 2;
+
+    private final int mMaxLocations;
+    private final TimeZone mTimeZone;
+    private final Map<String, Integer> mSlots = new HashMap<>();
+    private final String[] mIds;
+    //RING_SIZE samples per slot, mRingHeads points at the newest one
+    private final long[] mSamples;
+    private final int[] mRingHeads;
+    private final int[] mRingCounts;
+    //The hour being collected for the profile, and how much of it the location was known and free
+    private final long[] mHours;
+    private final int[] mHourKnownMs;
+    private final int[] mHourFreeMs;
+    //HOURS_PER_WEEK entries per slot
+    private final byte[] mProfiles;
+    private long mEvictions;
+
+    OccupancyHistory() {
+        this(DEFAULT_MAX_LOCATIONS, TimeZone.getDefault());
+    }
+
+    /**
+     * @param maxLocations the number of locations history is kept for
+     * @param timeZone the time zone the hours of the week are counted in
+     */
+    OccupancyHistory(int maxLocations, @NonNull TimeZone timeZone) {
+        mMaxLocations = maxLocations;
+        mTimeZone = timeZone;
+        mIds = new String[maxLocations];
+        mSamples = new long[maxLocations * RING_SIZE];
+        mRingHeads = new int[maxLocations];
+        mRingCounts = new int[maxLocations];
+        mHours = new long[maxLocations];
+        mHourKnownMs = new int[maxLocations];
+        mHourFreeMs = new int[maxLocations];
+        mProfiles = new byte[maxLocations * HOURS_PER_WEEK];
+        Arrays.fill(mProfiles, PROFILE_UNKNOWN);
+    }
+
+    /**
+     * Records the number of people in a location, from the occupancy domain.
+     */
+    synchronized void recordOccupancy(@NonNull String id, long timeMillis, int people) {
+        int slot = slot(id, timeMillis);
+        int state = mRingCounts[slot] > 0 ? state(newest(slot)) & ~OCCUPANCY_KNOWN : 0;
+        record(slot, pack(timeMillis, Math.max(0, Math.min(people, (int) PEOPLE_MASK)), state | OCCUPANCY_KNOWN));
+    }
+
+    /**
+     * Records whether a location is available, from the availability domain.
+     */
+    synchronized void recordAvailability(@NonNull String id, long timeMillis, boolean available) {
+        int slot = slot(id, timeMillis);
+        long newest = mRingCounts[slot] > 0 ? newest(slot) : 0;
+        int state = state(newest) & OCCUPANCY_KNOWN | AVAILABILITY_KNOWN | (available ? AVAILABLE : 0);
+        record(slot, pack(timeMillis, people(newest), state));
+    }
+
+    /**
+     * @return {@link #FREE}, {@link #BUSY} or {@link #UNKNOWN}
+     */
+    synchronized int stateAt(@NonNull String id, long timeMillis) {
+        Integer slot = mSlots.get(id);
+        if (slot == null) {
+            return UNKNOWN;
+        }
+        long newest = newest(slot);
+        if (timeMillis - time(newest) > STATE_VALID_MS) {
+            return UNKNOWN;
+        }
+        return isFree(newest) ? FREE : BUSY;
+    }
+
+    /**
+     * How often a location is free at the hour of the week of a time. Until the location has a
+     * profile for that hour, the fraction of its recent samples' time it was free is used.
+     * @return the fraction of the time it was free, or -1 if that is not known
+     */
+    synchronized float usuallyFree(@NonNull String id, long timeMillis) {
+        Integer slot = mSlots.get(id);
+        if (slot == null) {
+            return -1;
+        }
+        int profile = mProfiles[slot * HOURS_PER_WEEK + hourOfWeek(timeMillis / HOUR_MS)] & 0xFF;
+        if (profile != (PROFILE_UNKNOWN & 0xFF)) {
+            return profile / (float) PROFILE_SCALE;
+        }
+        return recentFree(slot, timeMillis);
+    }
+
+    /**
+     * Orders items with the free ones first, then those nobody knows about, then the busy ones.
+     * Within each group the ones usually free at this hour come first. Items that rank the same
+     * keep their order, so without any live data the list is returned as it is.
+     * @return the ranked items, a new list if the order changed
+     */
+    @NonNull
+    <T> List<T> rank(@NonNull List<T> items, @NonNull IdProvider<T> ids, long timeMillis) {
+        int count = items.size();
+        float[] scores = new float[count];
+        boolean known = false;
+        synchronized (this) {
+            for (int i = 0; i < count; i++) {
+                String id = ids.id(items.get(i));
+                int state = stateAt(id, timeMillis);
+                float usuallyFree = usuallyFree(id, timeMillis);
+                known |= state != UNKNOWN || usuallyFree >= 0;
+                //Being free now outweighs any history, unknown locations rank between free and busy
+                float now = state == FREE ? 1 : state == UNKNOWN ? 0.5f : 0;
+                scores[i] = 2 * now + (usuallyFree >= 0 ? usuallyFree : 0.5f);
+            }
+        }
+        if (!known) {
+            return items;
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        //The sort is stable, so results keep their relevance order within the same score
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        List<T> ranked = new ArrayList<>(count);
+        for (Integer i : order) {
+            ranked.add(items.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * @return the samples of a location, oldest first, as they are packed
+     */
+    @NonNull
+    synchronized List<Long> samples(@NonNull String id) {
+        Integer slot = mSlots.get(id);
+        if (slot == null) {
+            return Collections.emptyList();
+        }
+        List<Long> samples = new ArrayList<>(mRingCounts[slot]);
+        for (int i = mRingCounts[slot] - 1; i >= 0; i--) {
+            samples.add(sampleBack(slot, i));
+        }
+        return samples;
+    }
+
+    /**
+     * Writes the history of every location in a compact binary form.
+     */
+    synchronized void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        //Slots are handed out in order and only ever reused, so the taken ones are the first
+        int count = mSlots.size();
+        out.writeInt(count);
+        for (int slot = 0; slot < count; slot++) {
+            out.writeUTF(mIds[slot]);
+            out.writeInt(mRingCounts[slot]);
+            for (int i = mRingCounts[slot] - 1; i >= 0; i--) {
+                out.writeLong(sampleBack(slot, i));
+            }
+            out.writeLong(mHours[slot]);
+            out.writeInt(mHourKnownMs[slot]);
+            out.writeInt(mHourFreeMs[slot]);
+            out.write(mProfiles, slot * HOURS_PER_WEEK, HOURS_PER_WEEK);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads back a history written by {@link #writeTo(OutputStream)}. Locations recorded since
+     * keep what they have, and locations that no longer fit are left out.
+     * @throws IOException if the data can not be read or was written by another version
+     */
+    void readFrom(@NonNull InputStream inputStream) throws IOException {
+        //Read everything first, so live updates are not held up by storage
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not an occupancy history, or an unsupported version");
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt occupancy history");
+        }
+        String[] ids = new String[count];
+        long[][] samples = new long[count][];
+        long[] hours = new long[count];
+        int[] hourKnownMs = new int[count];
+        int[] hourFreeMs = new int[count];
+        byte[] profiles = new byte[count * HOURS_PER_WEEK];
+        for (int i = 0; i < count; i++) {
+            ids[i] = in.readUTF();
+            int ringCount = in.readInt();
+            if (ringCount < 1 || ringCount > RING_SIZE) {
+                throw new IOException("Corrupt occupancy history");
+            }
+            samples[i] = new long[ringCount];
+            for (int j = 0; j < ringCount; j++) {
+                samples[i][j] = in.readLong();
+            }
+            hours[i] = in.readLong();
+            hourKnownMs[i] = in.readInt();
+            hourFreeMs[i] = in.readInt();
+            in.readFully(profiles, i * HOURS_PER_WEEK, HOURS_PER_WEEK);
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < count && mSlots.size() < mMaxLocations; i++) {
+                if (mSlots.containsKey(ids[i])) {
+                    continue;
+                }
+                int slot = mSlots.size();
+                mIds[slot] = ids[i];
+                mSlots.put(ids[i], slot);
+                System.arraycopy(samples[i], 0, mSamples, slot * RING_SIZE, samples[i].length);
+                mRingHeads[slot] = samples[i].length - 1;
+                mRingCounts[slot] = samples[i].length;
+                mHours[slot] = hours[i];
+                mHourKnownMs[slot] = hourKnownMs[i];
+                mHourFreeMs[slot] = hourFreeMs[i];
+                System.arraycopy(profiles, i * HOURS_PER_WEEK, mProfiles, slot * HOURS_PER_WEEK, HOURS_PER_WEEK);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mSlots.size() + "/" + mMaxLocations + " locations, " + mEvictions + " evicted";
+    }
+
+    private int slot(String id, long timeMillis) {
+        Integer slot = mSlots.get(id);
+        if (slot != null) {
+            return slot;
+        }
+        int free = mSlots.size();
+        if (free == mMaxLocations) {
+            //Hand over the slot of the location updated longest ago
+            free = 0;
+            for (int i = 1; i < mMaxLocations; i++) {
+                if (time(newest(i)) < time(newest(free))) {
+                    free = i;
+                }
+            }
+            mSlots.remove(mIds[free]);
+            mEvictions++;
+        }
+        mIds[free] = id;
+        mSlots.put(id, free);
+        mRingCounts[free] = 0;
+        mHours[free] = timeMillis / HOUR_MS;
+        mHourKnownMs[free] = 0;
+        mHourFreeMs[free] = 0;
+        Arrays.fill(mProfiles, free * HOURS_PER_WEEK, (free + 1) * HOURS_PER_WEEK, PROFILE_UNKNOWN);
+        return free;
+    }
+
+    private void record(int slot, long sample) {
+        if (mRingCounts[slot] > 0) {
+            long previous = newest(slot);
+            //Samples arriving out of order only replace the state, they do not go back in time
+            long time = Math.max(time(sample), time(previous));
+            collect(slot, time(previous), time, isFree(previous));
+            sample = pack(time, people(sample), state(sample));
+        }
+        mRingHeads[slot] = (mRingHeads[slot] + 1) % RING_SIZE;
+        mSamples[slot * RING_SIZE + mRingHeads[slot]] = sample;
+        mRingCounts[slot] = Math.min(mRingCounts[slot] + 1, RING_SIZE);
+    }
+
+    /**
+     * Counts the time a location spent in a state towards the hours it falls in, folding each hour into
+     * the profile once the time has moved past it. Time after a state is no longer valid is not counted.
+     */
+    private void collect(int slot, long from, long to, boolean free) {
+        to = Math.min(to, from + STATE_VALID_MS);
+        while (from < to) {
+            long hour = from / HOUR_MS;
+            if (hour != mHours[slot]) {
+                fold(slot);
+                mHours[slot] = hour;
+            }
+            long end = Math.min(to, (hour + 1) * HOUR_MS);
+            mHourKnownMs[slot] += (int) (end - from);
+            if (free) {
+                mHourFreeMs[slot] += (int) (end - from);
+            }
+            from = end;
+        }
+    }
+
+    private void fold(int slot) {
+        if (mHourKnownMs[slot] >= MIN_HOUR_COVERAGE_MS) {
+            int fraction = (int) ((long) mHourFreeMs[slot] * PROFILE_SCALE / mHourKnownMs[slot]);
+            int index = slot * HOURS_PER_WEEK + hourOfWeek(mHours[slot]);
+            int profile = mProfiles[index] & 0xFF;
+            mProfiles[index] = (byte) (profile == (PROFILE_UNKNOWN & 0xFF) ? fraction : profile + (fraction - profile) / PROFILE_WEIGHT);
+        }
+        mHourKnownMs[slot] = 0;
+        mHourFreeMs[slot] = 0;
+    }
+
+    /**
+     * The fraction of the time covered by the ring that the location was free, the latest state counting up to now.
+     */
+    private float recentFree(int slot, long timeMillis) {
+        long known = 0;
+        long free = 0;
+        long end = timeMillis;
+        for (int i = 0; i < mRingCounts[slot]; i++) {
+            long sample = sampleBack(slot, i);
+            long duration = Math.min(Math.max(0, end - time(sample)), STATE_VALID_MS);
+            known += duration;
+            if (isFree(sample)) {
+                free += duration;
+            }
+            end = time(sample);
+        }
+        return known > 0 ? free / (float) known : -1;
+    }
+
+    private int hourOfWeek(long hourOfEpoch) {
+        long offsetHours = mTimeZone.getOffset(hourOfEpoch * HOUR_MS) / HOUR_MS;
+        return (int) Math.floorMod(hourOfEpoch + offsetHours + EPOCH_HOUR_OF_WEEK, (long) HOURS_PER_WEEK);
+    }
+
+    private long newest(int slot) {
+        return mSamples[slot * RING_SIZE + mRingHeads[slot]];
+    }
+
+    //The sample i places before the newest
+    private long sampleBack(int slot, int i) {
+        return mSamples[slot * RING_SIZE + Math.floorMod(mRingHeads[slot] - i, RING_SIZE)];
+    }
+
+    static long pack(long timeMillis, int people, int state) {
+        return timeMillis << TIME_SHIFT | (people & PEOPLE_MASK) << PEOPLE_SHIFT | state;
+    }
+
+    static long time(long sample) {
+        return sample >>> TIME_SHIFT;
+    }
+
+    static int people(long sample) {
+        return (int) (sample >>> PEOPLE_SHIFT & PEOPLE_MASK);
+    }
+
+    private static int state(long sample) {
+        return (int) (sample & ((1 << PEOPLE_SHIFT) - 1));
+    }
+
+    /**
+     * A location is free when it is not marked unavailable and nobody is in it, and at least one of the two is known.
+     */
+    static boolean isFree(long sample) {
+        int state = state(sample);
+        if ((state & (AVAILABILITY_KNOWN | OCCUPANCY_KNOWN)) == 0) {
+            return false;
+        }
+        boolean available = (state & AVAILABILITY_KNOWN) == 0 || (state & AVAILABLE) != 0;
+        boolean empty = (state & OCCUPANCY_KNOWN) == 0 || people(sample) == 0;
+        return available && empty;
+    }
+}
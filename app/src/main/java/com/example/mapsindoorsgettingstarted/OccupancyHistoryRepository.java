@@ -0,0 +1,88 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the {@link OccupancyHistory} of the process and its copy in app storage. The weekly profiles
+ * take weeks of live data to build, so the history is loaded at startup and written by
+ * {@link #flush()} whenever the app goes to the background.
+ */
+class OccupancyHistoryRepository {
+
+    private static final String TAG = "OccupancyHistoryRepo";
+
+    private final File mFile;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final OccupancyHistory mHistory = new OccupancyHistory();
+
+    /**
+     * @param file the file the history is persisted to
+     */
+    OccupancyHistoryRepository(@NonNull File file) {
+        mFile = file;
+    }
+
+    @NonNull
+    OccupancyHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Reads the persisted history in the background, if there is one. A history that can not be read is deleted.
+     */
+    void loadAsync() {
+        mExecutor.execute(() -> {
+            if (!mFile.exists()) {
+                return;
+            }
+            try (InputStream in = new FileInputStream(mFile)) {
+                long start = System.nanoTime();
+                mHistory.readFrom(in);
+                Log.d(TAG, "Loaded " + mHistory + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not load the occupancy history, it will be collected again", e);
+                mFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Writes the history in the background. Call when the app goes to the background.
+     */
+    void flush() {
+        mExecutor.execute(() -> {
+            //Copied to memory first, so live updates only wait for the copy and not for storage
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                mHistory.writeTo(bytes);
+            } catch (IOException e) {
+                //Can not happen when writing to memory
+                throw new IllegalStateException(e);
+            }
+            //Write to a temporary file first, so a crash never leaves a half written history behind
+            File tmpFile = new File(mFile.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                bytes.writeTo(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not persist the occupancy history", e);
+                tmpFile.delete();
+                return;
+            }
+            if (!tmpFile.renameTo(mFile)) {
+                tmpFile.delete();
+            }
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies route polylines for drawing at lower zoom levels, with Douglas-Peucker, which keeps
+ * every dropped vertex within a tolerance in meters of the simplified polyline. Vertices where the
+ * floor changes are always kept, so each floor's part of a polyline is simplified on its own.
+ * The tolerance follows from a zoom band: about a pixel at the highest zoom level of the band.
+ */
+final class PolylineSimplifier {
+
+    //The zoom level from which each simplified level of detail is used, from the zoom of the last one on the full polyline is used
+    static final float[] BAND_ZOOMS = {15, 17, 19};
+    //How far a dropped vertex may be from the simplified polyline, in screen pixels (dp)
+    static final double TOLERANCE_PX = 1;
+    //Meters per pixel (dp) at zoom level 0 on the equator, for 256 dp map tiles
+    private static final double METERS_PER_PX_AT_ZOOM_0 = 2 * Math.PI * GeoMath.EARTH_RADIUS_M / 256;
+
+    private PolylineSimplifier() {
+    }
+
+    /**
+     * @return the amount of levels of detail, the last one being the full polyline
+     */
+    static int bandCount() {
+        return BAND_ZOOMS.length + 1;
+    }
+
+    /**
+     * @return the level of detail to draw at a zoom level, from 0 for the least detail to {@link #bandCount()} - 1 for the full polyline
+     */
+    static int band(float zoom) {
+        int band = 0;
+        while (band < BAND_ZOOMS.length && zoom >= BAND_ZOOMS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * @return the tolerance in meters of a level of detail at a latitude, 0 for the full polyline
+     */
+    static double tolerance(int band, double lat) {
+        if (band >= BAND_ZOOMS.length) {
+            return 0;
+        }
+        //The most detailed zoom level of the band, the one up to which the band is used
+        return TOLERANCE_PX * METERS_PER_PX_AT_ZOOM_0 * Math.cos(Math.toRadians(lat)) / Math.pow(2, BAND_ZOOMS[band]);
+    }
+
+    /**
+     * Simplifies a range of a polyline.
+     * @param from the first vertex of the range
+     * @param to the index after the last vertex of the range
+     * @param tolerance the distance in meters a dropped vertex may be from the simplified polyline
+     * @return the ascending indices of the vertices kept, always including the first and last one
+     */
+    @NonNull
+    static int[] simplify(@NonNull double[] lats, @NonNull double[] lngs, @NonNull int[] floors, int from, int to,
+                          double tolerance) {
+        int count = to - from;
+        if (count <= 2 || tolerance <= 0) {
+            int[] all = new int[Math.max(0, count)];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+        //Projected to meters on a flat plane around the first vertex, which is accurate at venue scale
+        double scaleLng = GeoMath.metersPerDegreeLng(lats[from]);
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = (lngs[from + i] - lngs[from]) * scaleLng;
+            y[i] = (lats[from + i] - lats[from]) * GeoMath.METERS_PER_DEGREE;
+        }
+        boolean[] kept = new boolean[count];
+        kept[0] = true;
+        kept[count - 1] = true;
+        for (int i = 1; i < count; i++) {
+            if (floors[from + i] != floors[from + i - 1]) {
+                kept[i - 1] = true;
+                kept[i] = true;
+            }
+        }
+
+        //Ranges still to simplify, as pairs of kept vertices, instead of recursing on long polylines
+        int[] stack = new int[32];
+        int top = 0;
+        int start = 0;
+        for (int i = 1; i < count; i++) {
+            if (kept[i]) {
+                if (i - start > 1) {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = start;
+                    stack[top++] = i;
+                }
+                start = i;
+            }
+        }
+        double toleranceSquared = tolerance * tolerance;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthestSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double distanceSquared = distanceToSegmentSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distanceSquared > farthestSquared) {
+                    farthest = i;
+                    farthestSquared = distanceSquared;
+                }
+            }
+            if (farthest < 0) {
+                continue;
+            }
+            kept[farthest] = true;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (farthest - first > 1) {
+                stack[top++] = first;
+                stack[top++] = farthest;
+            }
+            if (last - farthest > 1) {
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int keptCount = 0;
+        for (boolean k : kept) {
+            if (k) {
+                keptCount++;
+            }
+        }
+        int[] indices = new int[keptCount];
+        keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (kept[i]) {
+                indices[keptCount++] = from + i;
+            }
+        }
+        return indices;
+    }
+
+    private static double distanceToSegmentSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double abx = bx - ax;
+        double aby = by - ay;
+        double lengthSquared = abx * abx + aby * aby;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * abx + (py - ay) * aby) / lengthSquared;
+        t = t < 0 ? 0 : (t > 1 ? 1 : t);
+        double dx = px - (ax + abx * t);
+        double dy = py - (ay + aby * t);
+        return dx * dx + dy * dy;
+    }
+}
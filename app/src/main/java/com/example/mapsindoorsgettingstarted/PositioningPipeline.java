@@ -0,0 +1,144 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Turns a stream of raw position fixes into smoothed, rate limited position updates. Fixes are
+ * smoothed with a simple Kalman filter per axis, weighted by their reported accuracy. Updates are
+ * only passed on when enough time has passed or the user has moved noticeably. While a route is
+ * set, the user is only reported off route after several consecutive fixes far from the route, and
+ * never more often than the reroute cooldown allows.
+ * The pipeline is not thread safe, fixes must be passed in from a single thread.
+ */
+class PositioningPipeline {
+
+    /**
+     * Receives the output of the pipeline, on the thread the fixes were passed in on.
+     */
+    interface Listener {
+        /**
+         * Called with a smoothed position, at most every {@link #MIN_UPDATE_INTERVAL_MS}.
+         */
+        void onPositionChanged(double lat, double lng, int floor, double accuracy);
+
+        /**
+         * Called when the user has left the current route and it should be generated again.
+         */
+        void onOffRoute(double lat, double lng, int floor);
+    }
+
+    //Minimum time between two position updates
+    static final long MIN_UPDATE_INTERVAL_MS = 250;
+    //Movement in meters that is passed on even within the update interval
+    static final double MIN_UPDATE_DISTANCE_M = 2;
+    //How far the user has to be from the route to count as off route
+    static final double OFF_ROUTE_DISTANCE_M = 8;
+    //Consecutive off route fixes needed before rerouting, to ignore single outliers
+    static final int OFF_ROUTE_CONFIRMATIONS = 3;
+    //Minimum time between two reroutes
+    static final long REROUTE_COOLDOWN_MS = 10_000;
+    //How fast the position is expected to drift, in meters squared per second
+    private static final double PROCESS_NOISE = 1.5;
+    private static final double MIN_ACCURACY_M = 1;
+
+    private final Listener mListener;
+
+    //Filter state, the estimate and its variance in meters squared
+    private boolean mHasEstimate;
+    private double mLat;
+    private double mLng;
+    private int mFloor;
+    private double mVariance;
+    private long mLastFixTime;
+
+    private boolean mHasEmitted;
+    private double mEmittedLat;
+    private double mEmittedLng;
+    private int mEmittedFloor;
+    private long mEmittedTime;
+
+    private RouteGeometry mRoute;
+    private int mOffRouteCount;
+    private long mLastRerouteTime = Long.MIN_VALUE / 2;
+
+    PositioningPipeline(@NonNull Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets the route the user is following, or null if the user is not navigating.
+     */
+    void setRoute(@Nullable RouteGeometry route) {
+        mRoute = route;
+        mOffRouteCount = 0;
+    }
+
+    /**
+     * Passes in a raw position fix.
+     * @param lat the latitude of the fix
+     * @param lng the longitude of the fix
+     * @param floor the floor index of the fix
+     * @param accuracy the accuracy of the fix in meters
+     * @param timeMs the time of the fix in milliseconds, from a monotonic clock
+     */
+    void onRawFix(double lat, double lng, int floor, double accuracy, long timeMs) {
+        double measurementVariance = Math.max(accuracy, MIN_ACCURACY_M);
+        measurementVariance *= measurementVariance;
+
+        if (!mHasEstimate || floor != mFloor) {
+            //A floor change is a jump the filter should not smooth over
+            mHasEstimate = true;
+            mLat = lat;
+            mLng = lng;
+            mFloor = floor;
+            mVariance = measurementVariance;
+        } else {
+            double dt = Math.max(0, timeMs - mLastFixTime) / 1000.0;
+            double predictedVariance = mVariance + PROCESS_NOISE * dt;
+            double gain = predictedVariance / (predictedVariance + measurementVariance);
+            mLat += gain * (lat - mLat);
+            mLng += gain * (lng - mLng);
+            mVariance = (1 - gain) * predictedVariance;
+        }
+        mLastFixTime = timeMs;
+
+        emitIfNeeded(timeMs);
+        checkRoute(timeMs);
+    }
+
+    private void emitIfNeeded(long timeMs) {
+        if (mHasEmitted && mEmittedFloor == mFloor) {
+            boolean intervalPassed = timeMs - mEmittedTime >= MIN_UPDATE_INTERVAL_MS;
+            double moved = GeoMath.distance(mEmittedLat, mEmittedLng, mLat, mLng);
+            //Wait for the interval unless the user moved a lot, and skip updates that would not be visible
+            if ((!intervalPassed && moved < MIN_UPDATE_DISTANCE_M) || moved < 0.1) {
+                return;
+            }
+        }
+        mHasEmitted = true;
+        mEmittedLat = mLat;
+        mEmittedLng = mLng;
+        mEmittedFloor = mFloor;
+        mEmittedTime = timeMs;
+        mListener.onPositionChanged(mLat, mLng, mFloor, Math.sqrt(mVariance));
+    }
+
+    private void checkRoute(long timeMs) {
+        if (mRoute == null) {
+            return;
+        }
+        //Allow for the uncertainty of the estimate before calling the user off route
+        double threshold = OFF_ROUTE_DISTANCE_M + Math.sqrt(mVariance);
+        if (mRoute.distanceTo(mLat, mLng, mFloor) <= threshold) {
+            mOffRouteCount = 0;
+            return;
+        }
+        mOffRouteCount++;
+        if (mOffRouteCount >= OFF_ROUTE_CONFIRMATIONS && timeMs - mLastRerouteTime >= REROUTE_COOLDOWN_MS) {
+            mOffRouteCount = 0;
+            mLastRerouteTime = timeMs;
+            mListener.onOffRoute(mLat, mLng, mFloor);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.mapsindoorsgettingstarted;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small LRU cache for query results. Entries are evicted when the cache grows beyond its
+ * maximum size, or when they are older than the maximum age. Keeps hit and miss counters so it
+ * can be seen whether the cache pays off.
+ * @param <K> the key type, must implement equals and hashCode
+ * @param <V> the cached value type
+ */
+class QueryResultCache<K, V> {
+
+    private final int mMaxEntries;
+    private final long mMaxAgeNanos;
+    //Access ordered, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<K, Entry<V>> mEntries;
+
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    QueryResultCache(int maxEntries, long maxAge, TimeUnit unit) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        mMaxEntries = maxEntries;
+        mMaxAgeNanos = unit.toNanos(maxAge);
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets a cached value.
+     * @param key the key of the value
+     * @return the value, or null if it is not cached or has expired
+     */
+    synchronized V get(K key) {
+        Entry<V> entry = mEntries.get(key);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+        if (isExpired(entry, now())) {
+            mEntries.remove(key);
+            mEvictions++;
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return entry.value;
+    }
+
+    /**
+     * Checks if a non-expired value is cached, without counting a hit or miss.
+     */
+    synchronized boolean contains(K key) {
+        Entry<V> entry = mEntries.get(key);
+        return entry != null && !isExpired(entry, now());
+    }
+
+    /**
+     * Puts a value into the cache, evicting the least recently used entries if the cache is full.
+     */
+    synchronized void put(K key, V value) {
+        mEntries.put(key, new Entry<>(value, now()));
+        trim();
+    }
+
+    /**
+     * Removes all entries. Used when the underlying data has changed.
+     */
+    synchronized void invalidate() {
+        mEntries.clear();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    synchronized long getHitCount() {
+        return mHits;
+    }
+
+    synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long requests = mHits + mMisses;
+        int hitRate = requests == 0 ? 0 : (int) (mHits * 100 / requests);
+        return "QueryResultCache[size=" + mEntries.size() + ", hits=" + mHits + ", misses=" + mMisses
+                + ", evictions=" + mEvictions + ", hitRate=" + hitRate + "%]";
+    }
+
+    private void trim() {
+        long now = now();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next().getValue();
+            //Drop least recently used entries over the size limit, and any expired entry on the way
+            if (mEntries.size() > mMaxEntries || isExpired(entry, now)) {
+                iterator.remove();
+                mEvictions++;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.createdAt > mMaxAgeNanos;
+    }
+
+    long now() {
+        return System.nanoTime();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long createdAt;
+
+        Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteCoordinate;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A route at each level of detail of {@link PolylineSimplifier}, so the directions renderer only
+ * draws the vertices that are visible at the current zoom. The geometry of every step is simplified
+ * on its own, so legs and steps keep their ends and instructions. The simplified routes are built
+ * through {@link RouteJson} from the public getters of the route, and only carry what is drawn and
+ * read: the geometry, maneuvers, distances and durations. Only drawing uses the simplified routes,
+ * following the user along the route keeps using the full one. The levels are built once per route
+ * and kept for as long as the route is.
+ */
+final class RouteDetailLevels {
+
+    //The levels of the routes still in use, e.g. by the route cache
+    private static final Map<Route, RouteDetailLevels> sLevels = Collections.synchronizedMap(new WeakHashMap<>());
+
+    //The simplified routes, null for the full route, which is not referenced so it can be collected
+    private final Route[] mRoutes;
+    private final int[] mVertexCounts;
+
+    private RouteDetailLevels(@NonNull Route[] routes, @NonNull int[] vertexCounts) {
+        mRoutes = routes;
+        mVertexCounts = vertexCounts;
+    }
+
+    /**
+     * Gets the levels of detail of a route, building them the first time. A route is built for
+     * every level, so call this off the main thread.
+     */
+    @NonNull
+    static RouteDetailLevels of(@NonNull Route route) {
+        RouteDetailLevels levels = sLevels.get(route);
+        if (levels == null) {
+            levels = build(route);
+            sLevels.put(route, levels);
+        }
+        return levels;
+    }
+
+    private static RouteDetailLevels build(Route route) {
+        int bandCount = PolylineSimplifier.bandCount();
+        Route[] routes = new Route[bandCount];
+        int[] vertexCounts = new int[bandCount];
+        List<RouteLeg> legs = route.getLegs();
+        double lat = firstLat(legs);
+        for (int band = 0; band < bandCount; band++) {
+            double tolerance = PolylineSimplifier.tolerance(band, lat);
+            if (tolerance == 0) {
+                vertexCounts[band] = vertexCount(legs);
+                continue;
+            }
+            JsonArray simplifiedLegs = new JsonArray();
+            vertexCounts[band] = simplify(legs, tolerance, simplifiedLegs);
+            routes[band] = RouteJson.toRoute(RouteJson.route(simplifiedLegs));
+        }
+        return new RouteDetailLevels(routes, vertexCounts);
+    }
+
+    /**
+     * Adds the legs with the geometry of each step simplified, in the JSON form of {@link RouteJson}.
+     * @return the amount of vertices kept
+     */
+    private static int simplify(List<RouteLeg> legs, double tolerance, JsonArray simplifiedLegs) {
+        int vertexCount = 0;
+        for (RouteLeg leg : legs) {
+            JsonArray simplifiedSteps = new JsonArray();
+            for (RouteStep step : leg.getSteps()) {
+                List<RouteCoordinate> geometry = step.getGeometry();
+                JsonArray simplified = new JsonArray();
+                if (geometry != null && !geometry.isEmpty()) {
+                    double[] lats = new double[geometry.size()];
+                    double[] lngs = new double[geometry.size()];
+                    int[] floors = new int[geometry.size()];
+                    for (int i = 0; i < lats.length; i++) {
+                        RouteCoordinate coordinate = geometry.get(i);
+                        lats[i] = coordinate.getLat();
+                        lngs[i] = coordinate.getLng();
+                        floors[i] = coordinate.getZIndex();
+                    }
+                    for (int i : PolylineSimplifier.simplify(lats, lngs, floors, 0, lats.length, tolerance)) {
+                        simplified.add(RouteJson.coordinate(lats[i], lngs[i], floors[i]));
+                    }
+                    vertexCount += simplified.size();
+                }
+                simplifiedSteps.add(RouteJson.step(simplified, step.getManeuver(), step.getDistance(), step.getDuration()));
+            }
+            simplifiedLegs.add(RouteJson.leg(simplifiedSteps, leg.getDistance(), leg.getDuration()));
+        }
+        return vertexCount;
+    }
+
+    private static int vertexCount(List<RouteLeg> legs) {
+        int vertexCount = 0;
+        for (RouteLeg leg : legs) {
+            for (RouteStep step : leg.getSteps()) {
+                List<RouteCoordinate> geometry = step.getGeometry();
+                if (geometry != null) {
+                    vertexCount += geometry.size();
+                }
+            }
+        }
+        return vertexCount;
+    }
+
+    private static double firstLat(List<RouteLeg> legs) {
+        for (RouteLeg leg : legs) {
+            for (RouteStep step : leg.getSteps()) {
+                List<RouteCoordinate> geometry = step.getGeometry();
+                if (geometry != null && !geometry.isEmpty()) {
+                    return geometry.get(0).getLat();
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the route to draw at a zoom level, or null if the full route should be drawn
+     */
+    @Nullable
+    Route forZoom(float zoom) {
+        return mRoutes[PolylineSimplifier.band(zoom)];
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Vertices per level of detail:");
+        for (int count : mVertexCounts) {
+            text.append(' ').append(count);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteCoordinate;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The geometry of a {@link Route} flattened into primitive arrays once, so it can be measured
+ * against positions cheaply and without walking the SDK object graph. Segment i runs from vertex
+ * i to vertex i + 1, within a leg. The segments are indexed in a grid per floor, so the segments
+ * near a position are found without looking at the whole route.
+ */
+final class RouteGeometry {
+
+    /**
+     * Receives the segments found near a position.
+     */
+    interface SegmentVisitor {
+        /**
+         * Called for each segment in the cells near the position. A segment crossing several cells
+         * can be visited more than once, and segments a bit further away than asked for can be visited as well.
+         * @param segment the index of the segment, which is also the index of its first vertex
+         */
+        void visit(int segment);
+    }
+
+    //Size of the cells of the segment index
+    static final double CELL_SIZE_M = 4;
+    //Bits of a packed index entry, the segment in the low bits and the floor and cell above it
+    private static final int SEGMENT_BITS = 22;
+    private static final int CELL_BITS = 16;
+    private static final int CELL_OFFSET = 1 << (CELL_BITS - 1);
+    //Floors from -256 to 255 fit the 9 bits left, so entries stay positive and sort in key order
+    private static final int FLOOR_BITS = 9;
+    private static final int FLOOR_OFFSET = 1 << (FLOOR_BITS - 1);
+
+    private final double[] mLats;
+    private final double[] mLngs;
+    private final int[] mFloors;
+    //Index of the first vertex of each leg, with the vertex count as the last element
+    private final int[] mLegStarts;
+    //Index of the first vertex of each step, with the vertex count as the last element. Consecutive steps of a leg share a vertex.
+    private final int[] mStepStarts;
+    //Duration in seconds from the end of each step to the end of the route
+    private final double[] mDurationsAfter;
+    private final double[] mStepDurations;
+    //Distance in meters from the start of the route to each vertex
+    private final double[] mDistances;
+
+    //Origin and scale of the cells of the segment index
+    private final double mOriginLat;
+    private final double mOriginLng;
+    private final double mMetersPerDegreeLng;
+    //The segment index, sorted, each entry holding the floor and cell in the high bits and the segment in the low bits
+    private final long[] mCellEntries;
+
+    /**
+     * @param lats the latitudes of the vertices
+     * @param lngs the longitudes of the vertices
+     * @param floors the floor index of the vertices
+     * @param legStarts the index of the first vertex of each leg, followed by the amount of vertices
+     */
+    RouteGeometry(@NonNull double[] lats, @NonNull double[] lngs, @NonNull int[] floors, @NonNull int[] legStarts) {
+        //Without steps every leg is a single step, of unknown duration
+        this(lats, lngs, floors, legStarts, legStarts, new double[legStarts.length - 1]);
+    }
+
+    /**
+     * @param stepStarts the index of the first vertex of each step, followed by the amount of vertices
+     * @param stepDurations the duration of each step in seconds
+     */
+    RouteGeometry(@NonNull double[] lats, @NonNull double[] lngs, @NonNull int[] floors, @NonNull int[] legStarts,
+                  @NonNull int[] stepStarts, @NonNull double[] stepDurations) {
+        if (lats.length != lngs.length || lats.length != floors.length) {
+            throw new IllegalArgumentException("Coordinate arrays must have the same length");
+        }
+        if (legStarts.length == 0 || legStarts[legStarts.length - 1] != lats.length) {
+            throw new IllegalArgumentException("legStarts must end with the vertex count");
+        }
+        if (stepStarts.length == 0 || stepStarts[stepStarts.length - 1] != lats.length || stepDurations.length != stepStarts.length - 1) {
+            throw new IllegalArgumentException("stepStarts must end with the vertex count, and have a duration per step");
+        }
+        mLats = lats;
+        mLngs = lngs;
+        mFloors = floors;
+        mLegStarts = legStarts;
+        mStepStarts = stepStarts;
+        mStepDurations = stepDurations;
+        mDurationsAfter = new double[stepDurations.length];
+        for (int i = stepDurations.length - 2; i >= 0; i--) {
+            mDurationsAfter[i] = mDurationsAfter[i + 1] + stepDurations[i + 1];
+        }
+        mDistances = new double[lats.length];
+        for (int i = 1; i < lats.length; i++) {
+            mDistances[i] = mDistances[i - 1] + GeoMath.distance(lats[i - 1], lngs[i - 1], lats[i], lngs[i]);
+        }
+
+        mOriginLat = lats.length > 0 ? lats[0] : 0;
+        mOriginLng = lngs.length > 0 ? lngs[0] : 0;
+        mMetersPerDegreeLng = GeoMath.metersPerDegreeLng(mOriginLat);
+        mCellEntries = buildSegmentIndex();
+    }
+
+    /**
+     * Adds every segment to each cell its bounding box covers, on the floors of both its ends.
+     */
+    private long[] buildSegmentIndex() {
+        long[] entries = new long[Math.max(16, mLats.length * 2)];
+        int count = 0;
+        for (int l = 0; l < legCount(); l++) {
+            for (int i = mLegStarts[l]; i < mLegStarts[l + 1] - 1; i++) {
+                int minX = cellX(Math.min(mLngs[i], mLngs[i + 1]));
+                int maxX = cellX(Math.max(mLngs[i], mLngs[i + 1]));
+                int minY = cellY(Math.min(mLats[i], mLats[i + 1]));
+                int maxY = cellY(Math.max(mLats[i], mLats[i + 1]));
+                int floors = mFloors[i] == mFloors[i + 1] ? 1 : 2;
+                for (int f = 0; f < floors; f++) {
+                    int floor = f == 0 ? mFloors[i] : mFloors[i + 1];
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int x = minX; x <= maxX; x++) {
+                            if (count == entries.length) {
+                                entries = Arrays.copyOf(entries, count * 2);
+                            }
+                            entries[count++] = (cellKey(floor, x, y) << SEGMENT_BITS) | i;
+                        }
+                    }
+                }
+            }
+        }
+        entries = Arrays.copyOf(entries, count);
+        Arrays.sort(entries);
+        return entries;
+    }
+
+    private int cellX(double lng) {
+        return (int) Math.floor((lng - mOriginLng) * mMetersPerDegreeLng / CELL_SIZE_M);
+    }
+
+    private int cellY(double lat) {
+        return (int) Math.floor((lat - mOriginLat) * GeoMath.METERS_PER_DEGREE / CELL_SIZE_M);
+    }
+
+    private static long cellKey(int floor, int x, int y) {
+        long mask = (1L << CELL_BITS) - 1;
+        long floorMask = (1L << FLOOR_BITS) - 1;
+        return ((floor + FLOOR_OFFSET) & floorMask) << (2 * CELL_BITS) | ((y + CELL_OFFSET) & mask) << CELL_BITS | ((x + CELL_OFFSET) & mask);
+    }
+
+    /**
+     * Flattens the steps of every leg of a route.
+     */
+    @NonNull
+    static RouteGeometry from(@NonNull Route route) {
+        List<RouteLeg> legs = route.getLegs();
+        List<RouteCoordinate> coordinates = new ArrayList<>();
+        int[] legStarts = new int[legs.size() + 1];
+        List<Integer> stepStarts = new ArrayList<>();
+        List<Double> stepDurations = new ArrayList<>();
+        for (int l = 0; l < legs.size(); l++) {
+            legStarts[l] = coordinates.size();
+            for (RouteStep step : legs.get(l).getSteps()) {
+                int stepStart = coordinates.size();
+                List<RouteCoordinate> geometry = step.getGeometry();
+                if (geometry != null) {
+                    for (RouteCoordinate coordinate : geometry) {
+                        //Consecutive steps share their end and start coordinate
+                        int last = coordinates.size() - 1;
+                        if (last >= legStarts[l] && sameCoordinate(coordinates.get(last), coordinate)) {
+                            if (last == stepStart - 1) {
+                                stepStart = last;
+                            }
+                            continue;
+                        }
+                        coordinates.add(coordinate);
+                    }
+                }
+                stepStarts.add(stepStart);
+                stepDurations.add((double) step.getDuration());
+            }
+        }
+        legStarts[legs.size()] = coordinates.size();
+
+        double[] lats = new double[coordinates.size()];
+        double[] lngs = new double[coordinates.size()];
+        int[] floors = new int[coordinates.size()];
+        for (int i = 0; i < coordinates.size(); i++) {
+            RouteCoordinate coordinate = coordinates.get(i);
+            lats[i] = coordinate.getLat();
+            lngs[i] = coordinate.getLng();
+            floors[i] = coordinate.getZIndex();
+        }
+        int[] steps = new int[stepStarts.size() + 1];
+        double[] durations = new double[stepStarts.size()];
+        for (int i = 0; i < durations.length; i++) {
+            steps[i] = stepStarts.get(i);
+            durations[i] = stepDurations.get(i);
+        }
+        steps[durations.length] = coordinates.size();
+        return new RouteGeometry(lats, lngs, floors, legStarts, steps, durations);
+    }
+
+    private static boolean sameCoordinate(RouteCoordinate a, RouteCoordinate b) {
+        return a.getLat() == b.getLat() && a.getLng() == b.getLng() && a.getZIndex() == b.getZIndex();
+    }
+
+    int vertexCount() {
+        return mLats.length;
+    }
+
+    int legCount() {
+        return mLegStarts.length - 1;
+    }
+
+    double lat(int vertex) {
+        return mLats[vertex];
+    }
+
+    double lng(int vertex) {
+        return mLngs[vertex];
+    }
+
+    int floor(int vertex) {
+        return mFloors[vertex];
+    }
+
+    /**
+     * @return the index of the first vertex of the leg
+     */
+    int legStart(int leg) {
+        return mLegStarts[leg];
+    }
+
+    /**
+     * @return the index after the last vertex of the leg
+     */
+    int legEnd(int leg) {
+        return mLegStarts[leg + 1];
+    }
+
+    /**
+     * @return the leg the segment or vertex belongs to
+     */
+    int legOf(int vertex) {
+        return lastAtOrBefore(mLegStarts, vertex);
+    }
+
+    int stepCount() {
+        return mStepStarts.length - 1;
+    }
+
+    /**
+     * @return the step the segment belongs to, counted over the whole route
+     */
+    int stepOf(int segment) {
+        return lastAtOrBefore(mStepStarts, segment);
+    }
+
+    /**
+     * @return the index of the first step of the leg, counted over the whole route
+     */
+    int firstStepOf(int leg) {
+        return lastAtOrBefore(mStepStarts, mLegStarts[leg]);
+    }
+
+    /**
+     * @return the index of the first vertex of the step
+     */
+    int stepStart(int step) {
+        return mStepStarts[step];
+    }
+
+    /**
+     * @return the index of the last vertex of the step
+     */
+    int stepEnd(int step) {
+        int legEnd = legEnd(legOf(mStepStarts[step]));
+        //Steps of the same leg share their end and start vertex, the last step of a leg ends with the leg
+        return mStepStarts[step + 1] < legEnd ? mStepStarts[step + 1] : legEnd - 1;
+    }
+
+    /**
+     * @return the duration of the step in seconds
+     */
+    double stepDuration(int step) {
+        return mStepDurations[step];
+    }
+
+    /**
+     * @return the duration in seconds from the end of the step to the end of the route
+     */
+    double durationAfter(int step) {
+        return mDurationsAfter[step];
+    }
+
+    /**
+     * Finds the last element of a sorted array that is at most the value. Elements equal to the
+     * next one belong to empty ranges, so the last of equal elements is taken.
+     */
+    private static int lastAtOrBefore(int[] starts, int value) {
+        int low = 0;
+        int high = starts.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= value) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the distance in meters from the start of the route to the vertex
+     */
+    double distanceAt(int vertex) {
+        return mDistances[vertex];
+    }
+
+    /**
+     * @return the length of the route in meters
+     */
+    double length() {
+        return mDistances.length == 0 ? 0 : mDistances[mDistances.length - 1];
+    }
+
+    /**
+     * Visits the segments on the floor of a position that may lie within a radius of it, using the segment index.
+     * @param radius the radius in meters
+     */
+    void visitSegmentsNear(double lat, double lng, int floor, double radius, @NonNull SegmentVisitor visitor) {
+        double radiusLat = radius / GeoMath.METERS_PER_DEGREE;
+        double radiusLng = radius / mMetersPerDegreeLng;
+        int minX = cellX(lng - radiusLng);
+        int maxX = cellX(lng + radiusLng);
+        int minY = cellY(lat - radiusLat);
+        int maxY = cellY(lat + radiusLat);
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                long key = cellKey(floor, x, y);
+                int end = lowerBound((key + 1) << SEGMENT_BITS);
+                for (int i = lowerBound(key << SEGMENT_BITS); i < end; i++) {
+                    visitor.visit((int) (mCellEntries[i] & ((1L << SEGMENT_BITS) - 1)));
+                }
+            }
+        }
+    }
+
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = mCellEntries.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mCellEntries[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Measures how far a position is from the route. Only segments touching the floor of the position count.
+     * @return the distance in meters, or {@link Double#POSITIVE_INFINITY} if the route never visits the floor
+     */
+    double distanceTo(double lat, double lng, int floor) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int l = 0; l < legCount(); l++) {
+            for (int i = mLegStarts[l]; i < mLegStarts[l + 1] - 1; i++) {
+                if (mFloors[i] != floor && mFloors[i + 1] != floor) {
+                    continue;
+                }
+                double distance = GeoMath.distanceToSegment(lat, lng, mLats[i], mLngs[i], mLats[i + 1], mLngs[i + 1]);
+                if (distance < best) {
+                    best = distance;
+                }
+            }
+        }
+        return best;
+    }
+}
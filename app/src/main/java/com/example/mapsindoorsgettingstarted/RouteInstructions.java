@@ -0,0 +1,80 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The step instructions of every leg of a {@link Route}, built once per route and kept for as long
+ * as the route itself is reachable. Building is meant to happen in the background when the route
+ * arrives, so showing a leg only looks the instructions up.
+ */
+final class RouteInstructions {
+
+    //Keyed weakly by route, so instructions go away together with their route
+    private static final Map<Route, RouteInstructions> sInstructions = new WeakHashMap<>();
+
+    private final List<List<String>> mLegSteps;
+
+    private RouteInstructions(List<List<String>> legSteps) {
+        mLegSteps = legSteps;
+    }
+
+    /**
+     * Gets the instructions of a route, building them if that has not been done yet.
+     * @param route the route
+     * @return the instructions of the route
+     */
+    @NonNull
+    static RouteInstructions of(@NonNull Route route) {
+        synchronized (sInstructions) {
+            RouteInstructions instructions = sInstructions.get(route);
+            if (instructions != null) {
+                return instructions;
+            }
+        }
+        RouteInstructions instructions = build(route);
+        synchronized (sInstructions) {
+            sInstructions.put(route, instructions);
+        }
+        return instructions;
+    }
+
+    @NonNull
+    private static RouteInstructions build(@NonNull Route route) {
+        List<RouteLeg> legs = route.getLegs();
+        List<List<String>> legSteps = new ArrayList<>(legs.size());
+        StringBuilder builder = new StringBuilder();
+        for (RouteLeg leg : legs) {
+            List<RouteStep> steps = leg.getSteps();
+            List<String> stepTexts = new ArrayList<>(steps.size());
+            for (int i = 0; i < steps.size(); i++) {
+                builder.setLength(0);
+                builder.append("Step ").append(i + 1).append(' ').append(steps.get(i).getManeuver());
+                stepTexts.add(builder.toString());
+            }
+            legSteps.add(Collections.unmodifiableList(stepTexts));
+        }
+        return new RouteInstructions(Collections.unmodifiableList(legSteps));
+    }
+
+    int legCount() {
+        return mLegSteps.size();
+    }
+
+    /**
+     * @return the instructions of each step of the leg, in order
+     */
+    @NonNull
+    List<String> getSteps(int leg) {
+        return mLegSteps.get(leg);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteCoordinate;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+/**
+ * Builds routes in the JSON shape the routing service returns, as the SDK only creates routes from
+ * routing service responses. The JSON is made from values and the public getters of routes, and
+ * only holds what the app reads: the geometry, maneuver, distance and duration of the steps, and
+ * the distance and duration of the legs and the route.
+ * The SDK has no public way to build a route, so {@link #toRoute} reads the JSON into the fields
+ * of the SDK's route models with Gson. Their names are kept by a rule in proguard-rules.pro, and
+ * RouteJsonTest reads every value back through the getters, so an SDK update that renames a field
+ * fails the tests instead of drawing empty routes.
+ */
+final class RouteJson {
+
+    private static final String LEGS = "legs";
+    private static final String STEPS = "steps";
+    private static final String GEOMETRY = "geometry";
+    private static final String DISTANCE = "distance";
+    private static final String DURATION = "duration";
+    private static final Gson GSON = new Gson();
+
+    private RouteJson() {
+    }
+
+    @NonNull
+    static JsonObject coordinate(double lat, double lng, int floor) {
+        JsonObject coordinate = new JsonObject();
+        coordinate.addProperty("lat", lat);
+        coordinate.addProperty("lng", lng);
+        coordinate.addProperty("zLevel", floor);
+        return coordinate;
+    }
+
+    @NonNull
+    static JsonObject step(@NonNull JsonArray geometry, @Nullable String maneuver, double distance, double duration) {
+        JsonObject step = new JsonObject();
+        step.add(GEOMETRY, geometry);
+        if (maneuver != null) {
+            step.addProperty("maneuver", maneuver);
+        }
+        step.addProperty(DISTANCE, distance);
+        step.addProperty(DURATION, duration);
+        return step;
+    }
+
+    @NonNull
+    static JsonObject leg(@NonNull JsonArray steps, double distance, double duration) {
+        JsonObject leg = new JsonObject();
+        leg.add(STEPS, steps);
+        leg.addProperty(DISTANCE, distance);
+        leg.addProperty(DURATION, duration);
+        return leg;
+    }
+
+    /**
+     * Copies a leg of a route, step by step.
+     */
+    @NonNull
+    static JsonObject leg(@NonNull RouteLeg leg) {
+        JsonArray steps = new JsonArray();
+        for (RouteStep step : leg.getSteps()) {
+            JsonArray geometry = new JsonArray();
+            for (RouteCoordinate coordinate : step.getGeometry()) {
+                geometry.add(coordinate(coordinate.getLat(), coordinate.getLng(), coordinate.getZIndex()));
+            }
+            steps.add(step(geometry, step.getManeuver(), step.getDistance(), step.getDuration()));
+        }
+        return leg(steps, leg.getDistance(), leg.getDuration());
+    }
+
+    /**
+     * @return a route of the legs, its distance and duration are those of the legs summed
+     */
+    @NonNull
+    static JsonObject route(@NonNull JsonArray legs) {
+        double distance = 0;
+        double duration = 0;
+        for (JsonElement leg : legs) {
+            distance += leg.getAsJsonObject().get(DISTANCE).getAsDouble();
+            duration += leg.getAsJsonObject().get(DURATION).getAsDouble();
+        }
+        JsonObject route = new JsonObject();
+        route.add(LEGS, legs);
+        route.addProperty(DISTANCE, distance);
+        route.addProperty(DURATION, duration);
+        return route;
+    }
+
+    @NonNull
+    static Route toRoute(@NonNull JsonObject route) {
+        return GSON.fromJson(route, Route.class);
+    }
+}
@@ -5,14 +5,17 @@ import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TextView;
 
-import com.mapsindoors.mapssdk.RouteLeg;
-import com.mapsindoors.mapssdk.RouteStep;
+import com.mapsindoors.mapssdk.Route;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A simple {@link Fragment} subclass.
@@ -20,17 +23,32 @@ import com.mapsindoors.mapssdk.RouteStep;
  * create an instance of this fragment.
  */
 public class RouteLegFragment extends Fragment {
-    private RouteLeg mRouteLeg;
+    private static final String ARG_ROUTE = "route";
+    private static final String ARG_LEG = "leg";
+
+    private List<String> mSteps;
 
-    public static RouteLegFragment newInstance(RouteLeg routeLeg) {
+    /**
+     * @param route the route the leg belongs to
+     * @param leg the index of the leg
+     */
+    public static RouteLegFragment newInstance(RouteState route, int leg) {
         RouteLegFragment fragment = new RouteLegFragment();
-        fragment.mRouteLeg = routeLeg;
+        Bundle arguments = new Bundle();
+        arguments.putParcelable(ARG_ROUTE, route);
+        arguments.putInt(ARG_LEG, leg);
+        fragment.setArguments(arguments);
         return fragment;
     }
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        RouteState state = requireArguments().getParcelable(ARG_ROUTE);
+        Route route = state != null ? state.getRoute() : null;
+        //The instructions were built in the background when the route arrived, so this is a lookup.
+        //Without the route the list stays empty, until the navigation fragment has the route again.
+        mSteps = route != null ? RouteInstructions.of(route).getSteps(requireArguments().getInt(ARG_LEG)) : Collections.emptyList();
     }
 
     @Override
@@ -44,13 +62,9 @@ public class RouteLegFragment extends Fragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         //Assigning views
-        TextView stepTxtView = view.findViewById(R.id.steps_text_view);
-        String stepsString = "";
-        //A loop to write what to do for each step of the leg.
-        for (int i = 0; i < mRouteLeg.getSteps().size(); i++) {
-            RouteStep routeStep = mRouteLeg.getSteps().get(i);
-            stepsString += "Step " + (i + 1) + " " + routeStep.getManeuver() + "\n";
-        }
-        stepTxtView.setText(stepsString);
+        RecyclerView stepsList = view.findViewById(R.id.steps_list);
+        stepsList.setLayoutManager(new LinearLayoutManager(getContext()));
+        //The step texts are built once per route, so showing the leg only binds the visible rows
+        stepsList.setAdapter(new RouteStepAdapter(mSteps));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,214 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonArray;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.Point;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.TravelMode;
+import com.mapsindoors.mapssdk.errors.MIError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plans routes to several destinations: the nearest of a set, or a short order to visit all of
+ * them in. The walking distances between the origin and the destinations are collected with route
+ * queries through {@link RouteService}, so they are cached and shared with single routes, and at
+ * most {@link #MAX_CONCURRENT_QUERIES} run at the same time. {@link TourPlanner} then picks from
+ * the distance matrix.
+ * All methods must be called on the main thread, and callbacks are delivered on the main thread.
+ */
+class RoutePlanner {
+
+    /**
+     * Receives the result of a plan.
+     */
+    interface Callback {
+        /**
+         * @param stops the destinations in visiting order, or null if the plan failed
+         * @param routes the route to each stop from the one before it, the first from the origin
+         * @param error the error of a failed route query, if any
+         */
+        void onPlanned(@Nullable List<MPLocation> stops, @Nullable List<Route> routes, @Nullable MIError error);
+    }
+
+    //Amount of destinations the nearest one is picked from
+    static final int MAX_CANDIDATES = 10;
+    //A tour of n stops needs n * n route queries, 25 for 5 stops, so a tour fits in the route cache
+    static final int MAX_TOUR_STOPS = 5;
+    static final int MAX_CONCURRENT_QUERIES = 3;
+
+    private final RouteService mRouteService;
+    private Plan mPlan;
+
+    RoutePlanner(@NonNull RouteService routeService) {
+        mRouteService = routeService;
+    }
+
+    /**
+     * Finds the destination with the shortest route from the origin, among the first {@link #MAX_CANDIDATES}.
+     * Any plan still running is abandoned.
+     */
+    void planNearest(@NonNull Point origin, @NonNull List<MPLocation> candidates, @NonNull TravelMode travelMode, @NonNull Callback callback) {
+        List<MPLocation> destinations = new ArrayList<>(candidates.subList(0, Math.min(MAX_CANDIDATES, candidates.size())));
+        start(new Plan(origin, destinations, travelMode, false, callback));
+    }
+
+    /**
+     * Finds a short order to visit the first {@link #MAX_TOUR_STOPS} destinations in, starting at the origin.
+     * Any plan still running is abandoned.
+     */
+    void planTour(@NonNull Point origin, @NonNull List<MPLocation> stops, @NonNull TravelMode travelMode, @NonNull Callback callback) {
+        List<MPLocation> destinations = new ArrayList<>(stops.subList(0, Math.min(MAX_TOUR_STOPS, stops.size())));
+        start(new Plan(origin, destinations, travelMode, true, callback));
+    }
+
+    /**
+     * Abandons the running plan, its callback will not be called. Queries already running complete and are cached.
+     */
+    void cancel() {
+        mPlan = null;
+    }
+
+    private void start(Plan plan) {
+        mPlan = plan;
+        int count = plan.destinations.size();
+        if (count == 0) {
+            finish(plan);
+            return;
+        }
+        //Row 0 of the matrix is the origin, row i + 1 is destination i. Only a tour needs the rows of the destinations.
+        int rows = plan.tour ? count + 1 : 1;
+        for (int from = 0; from < rows; from++) {
+            for (int to = 0; to < count; to++) {
+                if (from - 1 == to) {
+                    plan.costs[from][to] = 0;
+                    continue;
+                }
+                plan.queue.add(new int[]{from, to});
+                plan.remaining++;
+            }
+        }
+        drain(plan);
+    }
+
+    private void drain(Plan plan) {
+        while (plan == mPlan && plan.active < MAX_CONCURRENT_QUERIES && !plan.queue.isEmpty()) {
+            int[] pair = plan.queue.poll();
+            int from = pair[0];
+            int to = pair[1];
+            Point origin = from == 0 ? plan.origin : plan.destinations.get(from - 1).getPoint();
+            plan.active++;
+            mRouteService.requestRoute(origin, plan.destinations.get(to), plan.travelMode,
+                    (requestId, route, miError) -> onRoute(plan, from, to, route, miError));
+        }
+    }
+
+    private void onRoute(Plan plan, int from, int to, @Nullable Route route, @Nullable MIError miError) {
+        plan.active--;
+        if (plan != mPlan) {
+            return;
+        }
+        if (route != null) {
+            plan.routes[from][to] = route;
+            plan.costs[from][to] = route.getDistance();
+        } else if (miError != null) {
+            plan.error = miError;
+        }
+        if (--plan.remaining > 0) {
+            drain(plan);
+            return;
+        }
+        finish(plan);
+    }
+
+    private void finish(Plan plan) {
+        mPlan = null;
+        if (!plan.tour) {
+            int nearest = TourPlanner.nearest(plan.costs[0]);
+            if (nearest < 0) {
+                plan.callback.onPlanned(null, null, plan.error);
+                return;
+            }
+            plan.callback.onPlanned(Collections.singletonList(plan.destinations.get(nearest)),
+                    Collections.singletonList(plan.routes[0][nearest]), null);
+            return;
+        }
+
+        int count = plan.destinations.size();
+        double[][] between = new double[count][];
+        System.arraycopy(plan.costs, 1, between, 0, count);
+        int[] order = TourPlanner.tour(plan.costs[0], between);
+        if (order == null || count == 0) {
+            plan.callback.onPlanned(null, null, plan.error);
+            return;
+        }
+        List<MPLocation> stops = new ArrayList<>(count);
+        List<Route> routes = new ArrayList<>(count);
+        int from = 0;
+        for (int stop : order) {
+            stops.add(plan.destinations.get(stop));
+            routes.add(plan.routes[from][stop]);
+            from = stop + 1;
+        }
+        plan.callback.onPlanned(stops, routes, null);
+    }
+
+    /**
+     * Chains routes into one route, with the legs of each route after those of the route before
+     * it, so the stops of a tour can be rendered and navigated leg by leg like a single route.
+     * The route is built by {@link RouteJson} from the legs of the routes, and its distance and
+     * duration are those of all legs. Building takes a while for long routes, so call this off the main thread.
+     * @param routes the routes, each starting where the previous one ends
+     * @return the chained route, or the route itself if there is only one
+     */
+    @NonNull
+    static Route chain(@NonNull List<Route> routes) {
+        if (routes.size() == 1) {
+            return routes.get(0);
+        }
+        JsonArray legs = new JsonArray();
+        for (Route route : routes) {
+            for (RouteLeg leg : route.getLegs()) {
+                legs.add(RouteJson.leg(leg));
+            }
+        }
+        return RouteJson.toRoute(RouteJson.route(legs));
+    }
+
+    private static final class Plan {
+        final Point origin;
+        final List<MPLocation> destinations;
+        final TravelMode travelMode;
+        final boolean tour;
+        final Callback callback;
+        //Costs and routes from the origin (row 0) and each destination (row i + 1) to each destination
+        final double[][] costs;
+        final Route[][] routes;
+        final ArrayDeque<int[]> queue = new ArrayDeque<>();
+        int active;
+        int remaining;
+        MIError error;
+
+        Plan(Point origin, List<MPLocation> destinations, TravelMode travelMode, boolean tour, Callback callback) {
+            this.origin = origin;
+            this.destinations = destinations;
+            this.travelMode = travelMode;
+            this.tour = tour;
+            this.callback = callback;
+            int count = destinations.size();
+            costs = new double[count + 1][count];
+            for (double[] row : costs) {
+                Arrays.fill(row, Double.POSITIVE_INFINITY);
+            }
+            routes = new Route[count + 1][count];
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.mapsindoorsgettingstarted;
+
+/**
+ * How far the user has come along a route, as reported by {@link RouteProgressTracker}.
+ */
+final class RouteProgress {
+
+    //The leg the user is on, and the step within that leg
+    final int mLeg;
+    final int mStep;
+    //Meters and seconds left to the end of the route
+    final double mRemainingMeters;
+    final double mRemainingSeconds;
+    //Meters left to the end of the current step, where the next maneuver is
+    final double mStepRemainingMeters;
+    final boolean mArrived;
+
+    RouteProgress(int leg, int step, double remainingMeters, double remainingSeconds, double stepRemainingMeters, boolean arrived) {
+        mLeg = leg;
+        mStep = step;
+        mRemainingMeters = remainingMeters;
+        mRemainingSeconds = remainingSeconds;
+        mStepRemainingMeters = stepRemainingMeters;
+        mArrived = arrived;
+    }
+
+    @Override
+    public String toString() {
+        return "leg " + mLeg + " step " + mStep + ", " + Math.round(mRemainingMeters) + " m / "
+                + Math.round(mRemainingSeconds) + " s left" + (mArrived ? ", arrived" : "");
+    }
+}
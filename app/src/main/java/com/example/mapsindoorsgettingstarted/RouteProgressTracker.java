@@ -0,0 +1,132 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Follows the user along a route. Each position is projected onto the nearby segments of the
+ * route, found through the segment index of {@link RouteGeometry}, and the leg and step are
+ * advanced as the user walks. Progress is only passed on when the leg or step changes, or the
+ * remaining distance changed noticeably, so listeners can update views on every call.
+ * The tracker is not thread safe, positions must be passed in from a single thread.
+ */
+class RouteProgressTracker implements RouteGeometry.SegmentVisitor {
+
+    /**
+     * Receives progress on the thread the positions were passed in on.
+     */
+    interface Listener {
+        void onRouteProgress(@NonNull RouteProgress progress);
+    }
+
+    //Positions further from the route are not matched, telling the user they are off route is up to the positioning pipeline
+    static final double MATCH_DISTANCE_M = 12;
+    //Every meter a match lies along the route from the previous one counts as this many meters away
+    //from the route, so where a route passes the same corridor twice the user is matched in walking order
+    private static final double SKIP_PENALTY = 0.1;
+    //Changes of the remaining distance smaller than this are not passed on
+    static final double MIN_CHANGE_M = 1;
+    //This close to the end of a leg the next leg is shown, and this close to the end of the route the user has arrived
+    static final double ARRIVAL_DISTANCE_M = 3;
+
+    private final Listener mListener;
+    private RouteGeometry mRoute;
+    //Distance along the route of the last match, the user is expected at the start of a new route
+    private double mAlong;
+    private RouteProgress mEmitted;
+
+    //State of the segment search of the current position
+    private double mLat;
+    private double mLng;
+    private int mBestSegment;
+    private double mBestCost;
+    private double mBestAlong;
+
+    RouteProgressTracker(@NonNull Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets the route the user is following, or null if the user is not navigating.
+     */
+    void setRoute(@Nullable RouteGeometry route) {
+        mRoute = route;
+        mAlong = 0;
+        mEmitted = null;
+    }
+
+    /**
+     * Passes in a position of the user. Positions away from the route are ignored.
+     */
+    void onPosition(double lat, double lng, int floor) {
+        RouteGeometry route = mRoute;
+        if (route == null) {
+            return;
+        }
+        mLat = lat;
+        mLng = lng;
+        mBestSegment = -1;
+        mBestCost = Double.POSITIVE_INFINITY;
+        route.visitSegmentsNear(lat, lng, floor, MATCH_DISTANCE_M, this);
+        if (mBestSegment < 0) {
+            return;
+        }
+        mAlong = mBestAlong;
+        emitIfChanged(progress(route, mBestSegment, mBestAlong));
+    }
+
+    @Override
+    public void visit(int segment) {
+        RouteGeometry route = mRoute;
+        double latA = route.lat(segment);
+        double lngA = route.lng(segment);
+        double latB = route.lat(segment + 1);
+        double lngB = route.lng(segment + 1);
+        double t = GeoMath.projectOnSegment(mLat, mLng, latA, lngA, latB, lngB);
+        double distance = GeoMath.distance(mLat, mLng, latA + (latB - latA) * t, lngA + (lngB - lngA) * t);
+        if (distance > MATCH_DISTANCE_M) {
+            return;
+        }
+        double along = route.distanceAt(segment) + t * (route.distanceAt(segment + 1) - route.distanceAt(segment));
+        double cost = distance + SKIP_PENALTY * Math.abs(along - mAlong);
+        //Where segments meet, the later one is taken, as the user has reached its start
+        if (cost < mBestCost || (cost == mBestCost && segment > mBestSegment)) {
+            mBestSegment = segment;
+            mBestCost = cost;
+            mBestAlong = along;
+        }
+    }
+
+    @NonNull
+    private static RouteProgress progress(RouteGeometry route, int segment, double along) {
+        int leg = route.legOf(segment);
+        int step = route.stepOf(segment);
+        //At the end of a leg the next one is shown, e.g. once the user stands at the elevator
+        if (leg < route.legCount() - 1 && route.distanceAt(route.legEnd(leg) - 1) - along <= ARRIVAL_DISTANCE_M) {
+            leg++;
+            step = route.firstStepOf(leg);
+            along = route.distanceAt(route.legStart(leg));
+        }
+        double remaining = Math.max(0, route.length() - along);
+        int stepEnd = route.stepEnd(step);
+        double stepRemaining = Math.max(0, route.distanceAt(stepEnd) - along);
+        double stepLength = route.distanceAt(stepEnd) - route.distanceAt(route.stepStart(step));
+        double seconds = route.durationAfter(step);
+        if (stepLength > 0) {
+            seconds += route.stepDuration(step) * stepRemaining / stepLength;
+        }
+        return new RouteProgress(leg, step - route.firstStepOf(leg), remaining, seconds, stepRemaining,
+                remaining <= ARRIVAL_DISTANCE_M);
+    }
+
+    private void emitIfChanged(RouteProgress progress) {
+        RouteProgress emitted = mEmitted;
+        if (emitted != null && emitted.mLeg == progress.mLeg && emitted.mStep == progress.mStep
+                && emitted.mArrived == progress.mArrived
+                && Math.abs(emitted.mRemainingMeters - progress.mRemainingMeters) < MIN_CHANGE_M) {
+            return;
+        }
+        mEmitted = progress;
+        mListener.onRouteProgress(progress);
+    }
+}
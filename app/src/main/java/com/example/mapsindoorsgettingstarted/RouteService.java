@@ -0,0 +1,279 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MPRoutingProvider;
+import com.mapsindoors.mapssdk.Point;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.TravelMode;
+import com.mapsindoors.mapssdk.errors.MIError;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes requests through {@link MPRoutingProvider} with a correlation id per request, and caches
+ * the resulting routes keyed by origin cell, destination and travel mode. Routes to the top search
+ * results can be prefetched in the background, so tapping a result renders right away.
+ * Routes are also answered by the {@link LocalRouter} when the routing service fails, or has not
+ * answered within {@link #LOCAL_FALLBACK_DELAY_MS}, so routing keeps working on a slow or dropped
+ * network. The routes of the routing service teach the local router the venue.
+ * All methods must be called on the main thread, and callbacks are delivered on the main thread.
+ */
+class RouteService {
+
+    /**
+     * Receives the result of a route request.
+     */
+    interface Callback {
+        /**
+         * @param requestId the id returned when the route was requested
+         * @param route the route, or null if it could not be generated
+         * @param error the error if anything went wrong
+         */
+        void onRouteResult(int requestId, @Nullable Route route, @Nullable MIError error);
+    }
+
+    //Amount of search results to prefetch routes for
+    static final int PREFETCH_COUNT = 5;
+    //Maximum amount of prefetch queries running at the same time
+    static final int MAX_CONCURRENT_PREFETCHES = 2;
+    //Origins within the same cell share routes, roughly 5 meters
+    private static final double ORIGIN_CELL_DEGREES = 0.00005;
+    private static final int CACHE_MAX_ENTRIES = 32;
+    private static final long CACHE_MAX_AGE_MINUTES = 5;
+    //Requests still waiting for the routing service after this long are answered locally if possible
+    static final long LOCAL_FALLBACK_DELAY_MS = 1500;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final LocalRouter mLocalRouter;
+    private final ExecutorService mPreparationExecutor = Executors.newSingleThreadExecutor();
+    private final QueryResultCache<String, Route> mCache =
+            new QueryResultCache<>(CACHE_MAX_ENTRIES, CACHE_MAX_AGE_MINUTES, TimeUnit.MINUTES);
+    //Queries running right now, by route key. Requests for a route already in flight wait for that query.
+    private final Map<String, InFlightQuery> mInFlight = new HashMap<>();
+    private final ArrayDeque<PrefetchJob> mPrefetchQueue = new ArrayDeque<>();
+    private int mActivePrefetches;
+    private int mNextRequestId;
+
+    /**
+     * @param localRouter answers requests the routing service can not, and learns from the ones it can
+     */
+    RouteService(@NonNull LocalRouter localRouter) {
+        mLocalRouter = localRouter;
+    }
+
+    /**
+     * Requests a route. If the route is cached the callback is posted right away, so it always runs after this method has returned the request id.
+     * @param origin the point to route from
+     * @param destination the location to route to
+     * @param travelMode the travel mode to use
+     * @param callback receives the result
+     * @return the id of this request, passed to the callback
+     */
+    int requestRoute(@NonNull Point origin, @NonNull MPLocation destination, @NonNull TravelMode travelMode, @NonNull Callback callback) {
+        final int requestId = ++mNextRequestId;
+        String key = routeKey(origin, destination, travelMode);
+
+        Route cached = mCache.get(key);
+        if (cached != null) {
+            mHandler.post(() -> callback.onRouteResult(requestId, cached, null));
+            return requestId;
+        }
+
+        InFlightQuery inFlight = mInFlight.get(key);
+        if (inFlight == null) {
+            inFlight = query(key, origin, destination, travelMode, false);
+        }
+        inFlight.waiting.add(new PendingRequest(requestId, callback));
+        //A prefetch nobody waited for gets its fallback once someone does
+        if (!inFlight.fallbackScheduled) {
+            inFlight.fallbackScheduled = true;
+            InFlightQuery waitedFor = inFlight;
+            mHandler.postDelayed(() -> answerLocally(waitedFor, false, null), LOCAL_FALLBACK_DELAY_MS);
+        }
+        return requestId;
+    }
+
+    /**
+     * Prefetches routes to the first {@link #PREFETCH_COUNT} destinations in the background.
+     * Any prefetch still queued from an earlier call is dropped.
+     * @param origin the point to route from
+     * @param destinations the destinations, in order of importance
+     * @param travelMode the travel mode to use
+     */
+    void prefetch(@NonNull Point origin, @NonNull List<MPLocation> destinations, @NonNull TravelMode travelMode) {
+        mPrefetchQueue.clear();
+        int count = Math.min(PREFETCH_COUNT, destinations.size());
+        for (int i = 0; i < count; i++) {
+            mPrefetchQueue.add(new PrefetchJob(origin, destinations.get(i), travelMode));
+        }
+        drainPrefetchQueue();
+    }
+
+    /**
+     * Drops all queued prefetches. Prefetches already running complete and are cached.
+     */
+    void cancelPrefetch() {
+        mPrefetchQueue.clear();
+    }
+
+    /**
+     * @return the route cache, to read its hit and miss counters
+     */
+    @NonNull
+    QueryResultCache<String, Route> getCache() {
+        return mCache;
+    }
+
+    private void drainPrefetchQueue() {
+        while (mActivePrefetches < MAX_CONCURRENT_PREFETCHES && !mPrefetchQueue.isEmpty()) {
+            PrefetchJob job = mPrefetchQueue.poll();
+            String key = routeKey(job.origin, job.destination, job.travelMode);
+            //Skip routes we already have, or are already asking for
+            if (mInFlight.containsKey(key) || mCache.contains(key)) {
+                continue;
+            }
+            mActivePrefetches++;
+            query(key, job.origin, job.destination, job.travelMode, true);
+        }
+    }
+
+    /**
+     * Ends the background thread and drops all requests and pending callbacks. Call when the owner is destroyed.
+     */
+    void shutdown() {
+        mPreparationExecutor.shutdownNow();
+        mHandler.removeCallbacksAndMessages(null);
+        mInFlight.clear();
+        mPrefetchQueue.clear();
+    }
+
+    private InFlightQuery query(String key, Point origin, MPLocation destination, TravelMode travelMode, boolean prefetch) {
+        InFlightQuery inFlight = new InFlightQuery(origin, destination.getPoint(), travelMode, prefetch);
+        mInFlight.put(key, inFlight);
+        //A provider per query, as a provider only has a single result listener
+        MPRoutingProvider routingProvider = new MPRoutingProvider();
+        routingProvider.setTravelMode(travelMode);
+        Metrics.Span span = Metrics.begin();
+        routingProvider.setOnRouteResultListener((route, miError) -> {
+            //Results arriving after shutdown have nobody to go to
+            if (mPreparationExecutor.isShutdown()) {
+                return;
+            }
+            mPreparationExecutor.execute(() -> {
+                //Build the step instructions before the route is handed out, off the main thread
+                if (route != null) {
+                    RouteInstructions.of(route);
+                }
+                Metrics.end(span, Metrics.Stage.ROUTE_QUERY);
+                mHandler.post(() -> onQueryResult(key, route, miError));
+            });
+        });
+        routingProvider.query(origin, destination.getPoint());
+        return inFlight;
+    }
+
+    private void onQueryResult(String key, @Nullable Route route, @Nullable MIError miError) {
+        InFlightQuery inFlight = mInFlight.remove(key);
+        if (inFlight == null) {
+            return;
+        }
+        if (route != null && miError == null) {
+            mCache.put(key, route);
+            mLocalRouter.learn(route, inFlight.travelMode);
+            deliver(inFlight, route, null);
+        } else {
+            answerLocally(inFlight, true, miError);
+        }
+        if (inFlight.prefetch) {
+            mActivePrefetches--;
+            drainPrefetchQueue();
+        }
+    }
+
+    /**
+     * Asks the local router for the route of a query that is still waited for. Locally planned
+     * routes are not cached, so the next request asks the routing service again.
+     * @param failed true if the routing service failed, then its error is passed on if the local router has no route either
+     * @param miError the error of the routing service
+     */
+    private void answerLocally(InFlightQuery inFlight, boolean failed, @Nullable MIError miError) {
+        if (inFlight.waiting.isEmpty()) {
+            return;
+        }
+        mLocalRouter.route(inFlight.origin, inFlight.destination, inFlight.travelMode, route -> {
+            if (route != null) {
+                deliver(inFlight, route, null);
+            } else if (failed) {
+                deliver(inFlight, null, miError);
+            }
+        });
+    }
+
+    /**
+     * Passes a result to everyone waiting for the query, once. Whatever comes in later is only cached.
+     */
+    private static void deliver(InFlightQuery inFlight, @Nullable Route route, @Nullable MIError miError) {
+        for (PendingRequest pending : inFlight.waiting) {
+            pending.callback.onRouteResult(pending.requestId, route, miError);
+        }
+        inFlight.waiting.clear();
+    }
+
+    @NonNull
+    private static String routeKey(@NonNull Point origin, @NonNull MPLocation destination, @NonNull TravelMode travelMode) {
+        long latCell = (long) Math.floor(origin.getLat() / ORIGIN_CELL_DEGREES);
+        long lngCell = (long) Math.floor(origin.getLng() / ORIGIN_CELL_DEGREES);
+        return latCell + ":" + lngCell + ":" + origin.getFloorIndex() + "|" + destination.getId() + "|" + travelMode.name();
+    }
+
+    private static final class InFlightQuery {
+        final Point origin;
+        final Point destination;
+        final TravelMode travelMode;
+        final boolean prefetch;
+        final List<PendingRequest> waiting = new ArrayList<>(1);
+        boolean fallbackScheduled;
+
+        InFlightQuery(Point origin, Point destination, TravelMode travelMode, boolean prefetch) {
+            this.origin = origin;
+            this.destination = destination;
+            this.travelMode = travelMode;
+            this.prefetch = prefetch;
+        }
+    }
+
+    private static final class PendingRequest {
+        final int requestId;
+        final Callback callback;
+
+        PendingRequest(int requestId, Callback callback) {
+            this.requestId = requestId;
+            this.callback = callback;
+        }
+    }
+
+    private static final class PrefetchJob {
+        final Point origin;
+        final MPLocation destination;
+        final TravelMode travelMode;
+
+        PrefetchJob(Point origin, MPLocation destination, TravelMode travelMode) {
+            this.origin = origin;
+            this.destination = destination;
+            this.travelMode = travelMode;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapsIndoors;
+import com.mapsindoors.mapssdk.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A route as fragment state: the key of the route in the {@link ModelStore}, and the ids of its
+ * stops in order, to ask for the route again when it has left the store.
+ */
+final class RouteState implements Parcelable {
+
+    final String mRouteKey;
+    final String[] mStopIds;
+
+    private RouteState(String routeKey, String[] stopIds) {
+        mRouteKey = routeKey;
+        mStopIds = stopIds;
+    }
+
+    /**
+     * Puts the route in the store and describes it.
+     * @param stops the locations the route goes to, in order
+     */
+    @NonNull
+    static RouteState of(@NonNull Route route, @NonNull List<MPLocation> stops) {
+        String[] ids = new String[stops.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = stops.get(i).getId();
+        }
+        return new RouteState(ModelStore.putRoute(route), ids);
+    }
+
+    /**
+     * @return the route, or null if it has left the store
+     */
+    @Nullable
+    Route getRoute() {
+        return ModelStore.getRoute(mRouteKey);
+    }
+
+    /**
+     * @return the stops, or null if the SDK does not know all of them
+     */
+    @Nullable
+    List<MPLocation> resolveStops() {
+        List<MPLocation> stops = new ArrayList<>(mStopIds.length);
+        for (String id : mStopIds) {
+            MPLocation location = MapsIndoors.getLocationById(id);
+            if (location == null) {
+                return null;
+            }
+            stops.add(location);
+        }
+        return stops;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mRouteKey);
+        dest.writeStringArray(mStopIds);
+    }
+
+    public static final Creator<RouteState> CREATOR = new Creator<RouteState>() {
+        @Override
+        public RouteState createFromParcel(Parcel source) {
+            return new RouteState(source.readString(), source.createStringArray());
+        }
+
+        @Override
+        public RouteState[] newArray(int size) {
+            return new RouteState[size];
+        }
+    };
+}
@@ -0,0 +1,49 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * Adapter showing the precomputed step instructions of a route leg.
+ */
+class RouteStepAdapter extends RecyclerView.Adapter<RouteStepAdapter.StepViewHolder> {
+
+    private final List<String> mSteps;
+
+    RouteStepAdapter(List<String> steps) {
+        mSteps = steps;
+    }
+
+    @NonNull
+    @Override
+    public StepViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new StepViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.fragment_route_step_item, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull StepViewHolder holder, int position) {
+        holder.text.setText(mSteps.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return mSteps.size();
+    }
+
+    static class StepViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView text;
+
+        StepViewHolder(View itemView) {
+            super(itemView);
+            text = itemView.findViewById(R.id.step_text);
+        }
+    }
+}
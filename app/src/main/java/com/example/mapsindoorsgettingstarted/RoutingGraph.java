@@ -0,0 +1,521 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact routing graph of a venue, kept as primitive arrays. Nodes are points on a floor,
+ * edges are directed and stored per node in compressed rows. Every edge carries the travel modes
+ * that may use it as bit flags, and an edge between two floors, like an elevator or stairs,
+ * costs {@link Builder#FLOOR_CHANGE_COST_M} on top of its length.
+ * The graph is immutable and can be shared between threads, shortest paths are found through a
+ * {@link Search}, which holds the scratch arrays of A* and belongs to a single thread.
+ */
+class RoutingGraph {
+
+    //Travel mode flags of an edge
+    static final int MODE_WALKING = 1;
+    static final int MODE_BICYCLING = 1 << 1;
+    static final int MODE_DRIVING = 1 << 2;
+    static final int MODE_TRANSIT = 1 << 3;
+    static final int ALL_MODES = MODE_WALKING | MODE_BICYCLING | MODE_DRIVING | MODE_TRANSIT;
+
+    private static final int MAGIC = 0x4D49524F;
+    private static final int VERSION = 1;
+
+    private final double[] mLats;
+    private final double[] mLngs;
+    private final int[] mFloors;
+    //The edges of node i are mTargets[mEdgeStarts[i]] to mTargets[mEdgeStarts[i + 1] - 1]
+    private final int[] mEdgeStarts;
+    private final int[] mTargets;
+    private final float[] mCosts;
+    private final byte[] mModes;
+    //The modes of all edges leaving a node, so nodes a mode can not leave are skipped when snapping
+    private final byte[] mNodeModes;
+    //The cheapest floor change, which the heuristic adds whenever the target is on another floor
+    private final float mMinFloorChangeCost;
+
+    private RoutingGraph(double[] lats, double[] lngs, int[] floors, int[] edgeStarts, int[] targets, float[] costs, byte[] modes) {
+        mLats = lats;
+        mLngs = lngs;
+        mFloors = floors;
+        mEdgeStarts = edgeStarts;
+        mTargets = targets;
+        mCosts = costs;
+        mModes = modes;
+        mNodeModes = new byte[lats.length];
+        float minFloorChangeCost = Float.POSITIVE_INFINITY;
+        for (int node = 0; node < lats.length; node++) {
+            for (int edge = edgeStarts[node]; edge < edgeStarts[node + 1]; edge++) {
+                mNodeModes[node] |= modes[edge];
+                if (floors[targets[edge]] != floors[node]) {
+                    minFloorChangeCost = Math.min(minFloorChangeCost, costs[edge]
+                            - (float) GeoMath.distance(lats[node], lngs[node], lats[targets[edge]], lngs[targets[edge]]));
+                }
+            }
+        }
+        //Without floor changes no route crosses floors, any estimate is fine
+        mMinFloorChangeCost = Float.isInfinite(minFloorChangeCost) ? 0 : Math.max(0, minFloorChangeCost);
+    }
+
+    int nodeCount() {
+        return mLats.length;
+    }
+
+    int edgeCount() {
+        return mTargets.length;
+    }
+
+    double lat(int node) {
+        return mLats[node];
+    }
+
+    double lng(int node) {
+        return mLngs[node];
+    }
+
+    int floor(int node) {
+        return mFloors[node];
+    }
+
+    /**
+     * Finds the node closest to a point, among the nodes on its floor that can be left with one of the modes.
+     * Scans all nodes, which takes microseconds for the few thousand nodes of a venue.
+     * @return the node, or -1 if there is none within the distance
+     */
+    int nearestNode(double lat, double lng, int floor, int modes, double maxDistance) {
+        int nearest = -1;
+        double nearestDistance = maxDistance;
+        for (int node = 0; node < mLats.length; node++) {
+            if (mFloors[node] != floor || (mNodeModes[node] & modes) == 0) {
+                continue;
+            }
+            double distance = GeoMath.distance(lat, lng, mLats[node], mLngs[node]);
+            if (distance <= nearestDistance) {
+                nearest = node;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return the cost of the edge between two nodes for one of the modes, or infinity if there is none
+     */
+    float cost(int from, int to, int modes) {
+        for (int edge = mEdgeStarts[from]; edge < mEdgeStarts[from + 1]; edge++) {
+            if (mTargets[edge] == to && (mModes[edge] & modes) != 0) {
+                return mCosts[edge];
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    @NonNull
+    Search newSearch() {
+        return new Search();
+    }
+
+    /**
+     * Writes the graph in a compact binary form.
+     */
+    void writeTo(@NonNull OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(mLats.length);
+        for (int node = 0; node < mLats.length; node++) {
+            out.writeDouble(mLats[node]);
+            out.writeDouble(mLngs[node]);
+            out.writeInt(mFloors[node]);
+        }
+        out.writeInt(mTargets.length);
+        for (int node = 0; node < mLats.length; node++) {
+            out.writeInt(mEdgeStarts[node + 1] - mEdgeStarts[node]);
+        }
+        for (int edge = 0; edge < mTargets.length; edge++) {
+            out.writeInt(mTargets[edge]);
+            out.writeFloat(mCosts[edge]);
+            out.writeByte(mModes[edge]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a graph written by {@link #writeTo(OutputStream)}.
+     * @throws IOException if the data can not be read or was written by another version
+     */
+    @NonNull
+    static RoutingGraph readFrom(@NonNull InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a routing graph, or an unsupported version");
+        }
+        int nodeCount = in.readInt();
+        double[] lats = new double[nodeCount];
+        double[] lngs = new double[nodeCount];
+        int[] floors = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            lats[node] = in.readDouble();
+            lngs[node] = in.readDouble();
+            floors[node] = in.readInt();
+        }
+        int edgeCount = in.readInt();
+        int[] edgeStarts = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            edgeStarts[node + 1] = edgeStarts[node] + in.readInt();
+        }
+        if (edgeStarts[nodeCount] != edgeCount) {
+            throw new IOException("Corrupt routing graph");
+        }
+        int[] targets = new int[edgeCount];
+        float[] costs = new float[edgeCount];
+        byte[] modes = new byte[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            targets[edge] = in.readInt();
+            if (targets[edge] < 0 || targets[edge] >= nodeCount) {
+                throw new IOException("Corrupt routing graph");
+            }
+            costs[edge] = in.readFloat();
+            modes[edge] = in.readByte();
+        }
+        return new RoutingGraph(lats, lngs, floors, edgeStarts, targets, costs, modes);
+    }
+
+    /**
+     * Finds shortest paths with A*. The estimate to the target is the straight line distance,
+     * plus the cheapest floor change when the target is on another floor. Every edge costs at
+     * least its length, and a floor change at least the cheapest one, so the estimate never
+     * overestimates and every node is settled once. The scratch arrays are reused between
+     * searches, a generation number tells which entries belong to the current search.
+     */
+    final class Search {
+
+        private final float[] mCost = new float[mLats.length];
+        private final int[] mParent = new int[mLats.length];
+        //The generation a node was reached and settled in
+        private final int[] mReached = new int[mLats.length];
+        private final int[] mSettled = new int[mLats.length];
+        private int mGeneration;
+        //Binary min heap of nodes, a node is pushed again when a cheaper way to it is found
+        private int[] mHeapNodes = new int[64];
+        private float[] mHeapKeys = new float[64];
+        private int mHeapSize;
+        private int mSettledCount;
+
+        private Search() {
+        }
+
+        /**
+         * @param from the node to start at
+         * @param to the node to go to
+         * @param modes the travel modes that may be used, edges without any of them are skipped
+         * @return the nodes of the cheapest path, from first to last, or null if the target can not be reached
+         */
+        @Nullable
+        int[] find(int from, int to, int modes) {
+            if (++mGeneration == 0) {
+                //Wrapped around, start over so old entries are not taken for current ones
+                Arrays.fill(mReached, 0);
+                Arrays.fill(mSettled, 0);
+                mGeneration = 1;
+            }
+            int generation = mGeneration;
+            double targetLat = mLats[to];
+            double targetLng = mLngs[to];
+            int targetFloor = mFloors[to];
+            mHeapSize = 0;
+            mSettledCount = 0;
+            mCost[from] = 0;
+            mParent[from] = -1;
+            mReached[from] = generation;
+            push(from, estimate(from, targetLat, targetLng, targetFloor));
+            while (mHeapSize > 0) {
+                int node = pop();
+                if (mSettled[node] == generation) {
+                    continue;
+                }
+                mSettled[node] = generation;
+                mSettledCount++;
+                if (node == to) {
+                    return path(to);
+                }
+                float cost = mCost[node];
+                for (int edge = mEdgeStarts[node]; edge < mEdgeStarts[node + 1]; edge++) {
+                    if ((mModes[edge] & modes) == 0) {
+                        continue;
+                    }
+                    int target = mTargets[edge];
+                    float targetCost = cost + mCosts[edge];
+                    if (mSettled[target] == generation || (mReached[target] == generation && mCost[target] <= targetCost)) {
+                        continue;
+                    }
+                    mReached[target] = generation;
+                    mCost[target] = targetCost;
+                    mParent[target] = node;
+                    push(target, targetCost + estimate(target, targetLat, targetLng, targetFloor));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the cost of the path found by the last search
+         */
+        float lastCost(int to) {
+            return mSettled[to] == mGeneration ? mCost[to] : Float.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return the number of nodes settled by the last search
+         */
+        int lastSettledCount() {
+            return mSettledCount;
+        }
+
+        private float estimate(int node, double targetLat, double targetLng, int targetFloor) {
+            float estimate = (float) GeoMath.distance(mLats[node], mLngs[node], targetLat, targetLng);
+            return mFloors[node] != targetFloor ? estimate + mMinFloorChangeCost : estimate;
+        }
+
+        private int[] path(int to) {
+            int length = 0;
+            for (int node = to; node >= 0; node = mParent[node]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int node = to; node >= 0; node = mParent[node]) {
+                path[--length] = node;
+            }
+            return path;
+        }
+
+        private void push(int node, float key) {
+            if (mHeapSize == mHeapNodes.length) {
+                mHeapNodes = Arrays.copyOf(mHeapNodes, mHeapSize * 2);
+                mHeapKeys = Arrays.copyOf(mHeapKeys, mHeapSize * 2);
+            }
+            int i = mHeapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (mHeapKeys[parent] <= key) {
+                    break;
+                }
+                mHeapNodes[i] = mHeapNodes[parent];
+                mHeapKeys[i] = mHeapKeys[parent];
+                i = parent;
+            }
+            mHeapNodes[i] = node;
+            mHeapKeys[i] = key;
+        }
+
+        private int pop() {
+            int top = mHeapNodes[0];
+            int node = mHeapNodes[--mHeapSize];
+            float key = mHeapKeys[mHeapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= mHeapSize) {
+                    break;
+                }
+                if (child + 1 < mHeapSize && mHeapKeys[child + 1] < mHeapKeys[child]) {
+                    child++;
+                }
+                if (key <= mHeapKeys[child]) {
+                    break;
+                }
+                mHeapNodes[i] = mHeapNodes[child];
+                mHeapKeys[i] = mHeapKeys[child];
+                i = child;
+            }
+            mHeapNodes[i] = node;
+            mHeapKeys[i] = key;
+            return top;
+        }
+    }
+
+    /**
+     * Collects nodes and edges. Nodes closer than {@link #MERGE_DISTANCE_M} on the same floor are
+     * merged, so the geometry of routes that pass the same corridor joins up into one graph, and
+     * an edge added twice keeps the modes of both. A graph can be extended by starting a builder from it.
+     */
+    static final class Builder {
+
+        //Nodes on the same floor closer than this are one node
+        static final double MERGE_DISTANCE_M = 1;
+        //What a floor change costs on top of its length, in meters of walking
+        static final float FLOOR_CHANGE_COST_M = 15;
+
+        private double[] mLats = new double[64];
+        private double[] mLngs = new double[64];
+        private int[] mFloors = new int[64];
+        private int mNodeCount;
+        //Nodes by merge cell, the cells are MERGE_DISTANCE_M wide so nodes to merge with lie in the 3 x 3 cells around
+        private final Map<Long, int[]> mCells = new HashMap<>();
+        //Edges by from and to node, the value is the index into the edge arrays
+        private final Map<Long, Integer> mEdgeIndex = new HashMap<>();
+        private int[] mFrom = new int[64];
+        private int[] mTo = new int[64];
+        private float[] mCosts = new float[64];
+        private byte[] mModes = new byte[64];
+        private int mEdgeCount;
+
+        Builder() {
+        }
+
+        /**
+         * Starts with all nodes and edges of a graph, keeping their order.
+         */
+        Builder(@NonNull RoutingGraph graph) {
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                addNode(graph.mLats[node], graph.mLngs[node], graph.mFloors[node]);
+            }
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                for (int edge = graph.mEdgeStarts[node]; edge < graph.mEdgeStarts[node + 1]; edge++) {
+                    putEdge(node, graph.mTargets[edge], graph.mCosts[edge], graph.mModes[edge]);
+                }
+            }
+        }
+
+        int nodeCount() {
+            return mNodeCount;
+        }
+
+        /**
+         * @return the node at a point, an existing one if one is close enough
+         */
+        int node(double lat, double lng, int floor) {
+            long cellLat = (long) Math.floor(lat * GeoMath.METERS_PER_DEGREE / MERGE_DISTANCE_M);
+            long cellLng = (long) Math.floor(lng * GeoMath.metersPerDegreeLng(lat) / MERGE_DISTANCE_M);
+            int nearest = -1;
+            double nearestDistance = MERGE_DISTANCE_M;
+            for (long y = cellLat - 1; y <= cellLat + 1; y++) {
+                for (long x = cellLng - 1; x <= cellLng + 1; x++) {
+                    int[] cell = mCells.get(cellKey(y, x, floor));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 1; i <= cell[0]; i++) {
+                        double distance = GeoMath.distance(lat, lng, mLats[cell[i]], mLngs[cell[i]]);
+                        if (distance < nearestDistance) {
+                            nearest = cell[i];
+                            nearestDistance = distance;
+                        }
+                    }
+                }
+            }
+            return nearest >= 0 ? nearest : addNode(lat, lng, floor);
+        }
+
+        private int addNode(double lat, double lng, int floor) {
+            if (mNodeCount == mLats.length) {
+                mLats = Arrays.copyOf(mLats, mNodeCount * 2);
+                mLngs = Arrays.copyOf(mLngs, mNodeCount * 2);
+                mFloors = Arrays.copyOf(mFloors, mNodeCount * 2);
+            }
+            int node = mNodeCount++;
+            mLats[node] = lat;
+            mLngs[node] = lng;
+            mFloors[node] = floor;
+            //Cells hold their count first, then the nodes
+            long key = cellKey((long) Math.floor(lat * GeoMath.METERS_PER_DEGREE / MERGE_DISTANCE_M),
+                    (long) Math.floor(lng * GeoMath.metersPerDegreeLng(lat) / MERGE_DISTANCE_M), floor);
+            int[] cell = mCells.get(key);
+            if (cell == null) {
+                cell = new int[4];
+            } else if (cell[0] == cell.length - 1) {
+                cell = Arrays.copyOf(cell, cell.length * 2);
+            }
+            cell[++cell[0]] = node;
+            mCells.put(key, cell);
+            return node;
+        }
+
+        /**
+         * Adds an edge from one node to another. It costs its length, plus {@link #FLOOR_CHANGE_COST_M}
+         * if the nodes are on different floors.
+         * @param modes the travel modes that may use the edge
+         */
+        Builder addEdge(int from, int to, int modes) {
+            if (from == to) {
+                return this;
+            }
+            float cost = (float) GeoMath.distance(mLats[from], mLngs[from], mLats[to], mLngs[to]);
+            if (mFloors[from] != mFloors[to]) {
+                cost += FLOOR_CHANGE_COST_M;
+            }
+            putEdge(from, to, cost, (byte) modes);
+            return this;
+        }
+
+        /**
+         * Adds an edge in both directions.
+         */
+        Builder addTwoWayEdge(int a, int b, int modes) {
+            addEdge(a, b, modes);
+            return addEdge(b, a, modes);
+        }
+
+        private void putEdge(int from, int to, float cost, byte modes) {
+            long key = ((long) from << 32) | to;
+            Integer existing = mEdgeIndex.get(key);
+            if (existing != null) {
+                mModes[existing] |= modes;
+                mCosts[existing] = Math.min(mCosts[existing], cost);
+                return;
+            }
+            if (mEdgeCount == mFrom.length) {
+                mFrom = Arrays.copyOf(mFrom, mEdgeCount * 2);
+                mTo = Arrays.copyOf(mTo, mEdgeCount * 2);
+                mCosts = Arrays.copyOf(mCosts, mEdgeCount * 2);
+                mModes = Arrays.copyOf(mModes, mEdgeCount * 2);
+            }
+            mFrom[mEdgeCount] = from;
+            mTo[mEdgeCount] = to;
+            mCosts[mEdgeCount] = cost;
+            mModes[mEdgeCount] = modes;
+            mEdgeIndex.put(key, mEdgeCount++);
+        }
+
+        @NonNull
+        RoutingGraph build() {
+            //Counting sort of the edges by their from node
+            int[] edgeStarts = new int[mNodeCount + 1];
+            for (int edge = 0; edge < mEdgeCount; edge++) {
+                edgeStarts[mFrom[edge] + 1]++;
+            }
+            for (int node = 0; node < mNodeCount; node++) {
+                edgeStarts[node + 1] += edgeStarts[node];
+            }
+            int[] next = Arrays.copyOf(edgeStarts, mNodeCount);
+            int[] targets = new int[mEdgeCount];
+            float[] costs = new float[mEdgeCount];
+            byte[] modes = new byte[mEdgeCount];
+            for (int edge = 0; edge < mEdgeCount; edge++) {
+                int slot = next[mFrom[edge]]++;
+                targets[slot] = mTo[edge];
+                costs[slot] = mCosts[edge];
+                modes[slot] = mModes[edge];
+            }
+            return new RoutingGraph(Arrays.copyOf(mLats, mNodeCount), Arrays.copyOf(mLngs, mNodeCount),
+                    Arrays.copyOf(mFloors, mNodeCount), edgeStarts, targets, costs, modes);
+        }
+
+        private static long cellKey(long cellLat, long cellLng, int floor) {
+            return (cellLat * 73856093L) ^ (cellLng * 19349663L) ^ ((long) floor << 56);
+        }
+    }
+}
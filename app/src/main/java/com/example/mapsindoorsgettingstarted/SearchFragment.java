@@ -12,17 +12,32 @@ import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+
+import java.util.Collections;
 import java.util.List;
 
 public class SearchFragment extends Fragment {
 
+    private static final String ARG_LOCATIONS = "locations";
+
     private List<MPLocation> mLocations = null;
-    private MapsActivity mMapActivity = null;
+    //Describes the locations in the model store. Kept so the same entry is reused every time the state is saved.
+    private LocationListState mState = null;
+    private SearchItemAdapter mAdapter = null;
+    //Ended once the locations are shown in the list
+    private Metrics.Span mShownSpan = null;
 
-    public static SearchFragment newInstance(List<MPLocation> locations, MapsActivity mapsActivity) {
+    /**
+     * @param locations the locations to show. Only their ids are kept in the arguments, the list itself is kept in the {@link ModelStore}.
+     */
+    public static SearchFragment newInstance(List<MPLocation> locations, @Nullable Metrics.Span shownSpan) {
         final SearchFragment fragment = new SearchFragment();
+        Bundle arguments = new Bundle();
+        fragment.mState = LocationListState.of(locations);
+        arguments.putParcelable(ARG_LOCATIONS, fragment.mState);
+        fragment.setArguments(arguments);
         fragment.mLocations = locations;
-        fragment.mMapActivity = mapsActivity;
+        fragment.mShownSpan = shownSpan;
         return fragment;
     }
 
@@ -36,12 +51,104 @@ public class SearchFragment extends Fragment {
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         final RecyclerView recyclerView = (RecyclerView) view;
-        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        recyclerView.setAdapter(new SearchItemAdapter(mLocations, mMapActivity));
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
+        //Reports the visible rows, so more results can be paged in near the end of the list
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                getMapsActivity().onSearchListScrolled(layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+            }
+        });
+        mAdapter = new SearchItemAdapter(getMapsActivity());
+        recyclerView.setAdapter(mAdapter);
+        submitLocations();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mAdapter = null;
+    }
+
+    /**
+     * Shows a new list of locations. The list is diffed against the shown one, so only changed rows are updated.
+     * @param locations the locations to show
+     */
+    void setLocations(List<MPLocation> locations) {
+        setLocations(locations, null);
+    }
+
+    /**
+     * Shows a new list of locations, like {@link #setLocations(List)}.
+     * @param shownSpan a span to end at {@link Metrics.Stage#SEARCH_SHOWN} once the list shows the locations
+     */
+    void setLocations(List<MPLocation> locations, @Nullable Metrics.Span shownSpan) {
+        mLocations = locations;
+        mShownSpan = shownSpan;
+        if (mAdapter != null) {
+            submitLocations();
+        }
+    }
+
+    /**
+     * Rebinds the shown rows, e.g. when the opening hours they show have changed.
+     */
+    void refreshRows() {
+        if (mAdapter != null) {
+            mAdapter.notifyItemRangeChanged(0, mAdapter.getItemCount());
+        }
+    }
+
+    private void submitLocations() {
+        Metrics.Span shownSpan = mShownSpan;
+        mShownSpan = null;
+        //The diff runs in the background, the callback comes once the rows have been updated
+        mAdapter.submitList(mLocations, () -> Metrics.end(shownSpan, Metrics.Stage.SEARCH_SHOWN));
     }
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (mLocations == null) {
+            //Recreated, the locations shown last are in the saved state, the first ones in the arguments
+            Bundle state = savedInstanceState != null ? savedInstanceState : requireArguments();
+            mState = state.getParcelable(ARG_LOCATIONS);
+            //Locations that have left the store are looked up by id in resolveLocations, once the SDK is ready
+            mLocations = mState != null ? mState.fromStore() : Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        //The shown list changes while paging, so it is only stored when the state is saved
+        if (mLocations != null) {
+            mState = mState != null ? mState.update(mLocations) : LocationListState.of(mLocations);
+        }
+        outState.putParcelable(ARG_LOCATIONS, mState);
+    }
+
+    /**
+     * Looks up the locations that had left the model store when the fragment was recreated.
+     * Call once the SDK has loaded its locations.
+     */
+    void resolveLocations() {
+        if (mLocations == null) {
+            setLocations(mState.resolve());
+        }
+    }
+
+    /**
+     * @return the locations shown, empty until they have been resolved
+     */
+    @NonNull
+    List<MPLocation> getLocations() {
+        return mLocations != null ? mLocations : Collections.emptyList();
+    }
+
+    @NonNull
+    private MapsActivity getMapsActivity() {
+        return (MapsActivity) requireActivity();
     }
 }
\ No newline at end of file
@@ -6,65 +6,127 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.mapsindoors.mapssdk.LocationDisplayRule;
 import com.mapsindoors.mapssdk.MPLocation;
 
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Adapter for the search result list. New result lists are diffed against the current one on a
+ * background thread, so only the rows that changed are rebound and animated.
+ */
+class SearchItemAdapter extends ListAdapter<MPLocation, ViewHolder> {
+
+    private static final DiffUtil.ItemCallback<MPLocation> DIFF_CALLBACK = new DiffUtil.ItemCallback<MPLocation>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MPLocation oldItem, @NonNull MPLocation newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
 
-class SearchItemAdapter extends RecyclerView.Adapter<ViewHolder> {
+        @Override
+        public boolean areContentsTheSame(@NonNull MPLocation oldItem, @NonNull MPLocation newItem) {
+            //A row shows the name, and an icon that depends on the type
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getType(), newItem.getType());
+        }
+    };
 
-    private final List<MPLocation> mLocations;
-    private final MapsActivity mMapActivity;
+    //Amount of icons to resolve ahead of the row being bound
+    private static final int ICON_PREFETCH_COUNT = 10;
 
-    SearchItemAdapter(List<MPLocation> locationList, MapsActivity activity) {
-        mLocations = locationList;
+    private final MapsActivity mMapActivity;
+    //Stable item ids by location id, so RecyclerView can keep rows when the list changes. Only the
+    //locations of the current list are kept, and ids are never handed out twice
+    private final Map<String, Long> mItemIds = new HashMap<>();
+    private long mNextItemId;
+    //The minute of the week opening hours are checked against, taken once per list
+    private int mMinuteOfWeek = VenueContent.minuteOfWeek(Calendar.getInstance());
+
+    SearchItemAdapter(MapsActivity activity) {
+        super(DIFF_CALLBACK);
         mMapActivity = activity;
+        setHasStableIds(true);
     }
 
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        return new ViewHolder(LayoutInflater.from(parent.getContext()), parent);
+        ViewHolder holder = new ViewHolder(LayoutInflater.from(parent.getContext()), parent);
+        //The click listener is set once per view holder, instead of on every bind
+        holder.itemView.setOnClickListener(view -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            mMapActivity.createRoute(getItem(position));
+            //Clearing map to remove the location filter from our search result
+            mMapActivity.clearSearchResultsFromMap();
+        });
+        //A long press plans a route over all the results instead
+        holder.itemView.setOnLongClickListener(view -> {
+            mMapActivity.showRoutePlanOptions();
+            return true;
+        });
+        return holder;
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<MPLocation> previousList, @NonNull List<MPLocation> currentList) {
+        mMinuteOfWeek = VenueContent.minuteOfWeek(Calendar.getInstance());
+        //Locations that left the list give up their ids, a location coming back later gets a new row
+        Set<String> current = new HashSet<>(currentList.size());
+        for (MPLocation location : currentList) {
+            current.add(location.getId());
+        }
+        mItemIds.keySet().retainAll(current);
     }
 
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
+        MPLocation location = getItem(position);
         //Setting the the text on the text view to the name of the location
-        holder.text.setText(mLocations.get(position).getName());
-
-        holder.itemView.setOnClickListener(view -> {
-            mMapActivity.createRoute(mLocations.get(position));
-            //Clearing map to remove the location filter from our search result
-            mMapActivity.getMapControl().clearMap();
-        });
+        holder.text.setText(location.getName());
 
         if (mMapActivity != null) {
-            //We start by checking if there is a specific Location icon assigned to the location
-            LocationDisplayRule locationDisplayRule = mMapActivity.getMapControl().getDisplayRule(mLocations.get(position));
-
-            if (locationDisplayRule != null && locationDisplayRule.getIcon() != null) {
-                //There is a specific icon on this location so we use that
-                mMapActivity.runOnUiThread(()-> {
-                    holder.imageView.setImageBitmap(locationDisplayRule.getIcon());
-                });
-            }else {
-                //Location does not have a specific displayRule, we instead use type Display rule
-                LocationDisplayRule typeDisplayRule = mMapActivity.getMapControl().getDisplayRule(mLocations.get(position).getType());
-
-                if (typeDisplayRule != null) {
-                    mMapActivity.runOnUiThread(()-> {
-                        holder.imageView.setImageBitmap(typeDisplayRule.getIcon());
-                    });
-                }
+            //Locations with opening hours in our own venue content say when they are closed
+            VenueContent content = mMapActivity.getVenueContent();
+            VenueContent.LocationContent locationContent = content != null ? content.get(location.getId()) : null;
+            if (locationContent != null && !locationContent.isOpenAt(mMinuteOfWeek)) {
+                holder.text.setText(holder.itemView.getContext().getString(R.string.search_result_closed, location.getName()));
             }
+
+            LocationIconCache iconCache = mMapActivity.getLocationIconCache();
+            //Remember which location the holder shows, it may be rebound before the icon has loaded
+            holder.boundLocationId = location.getId();
+            holder.imageView.setImageBitmap(null);
+            iconCache.load(location, icon -> {
+                if (location.getId().equals(holder.boundLocationId)) {
+                    holder.imageView.setImageBitmap(icon);
+                }
+            });
+            //Get the icons of the next rows ready before they are scrolled into view
+            iconCache.prefetch(getCurrentList(), position + 1, ICON_PREFETCH_COUNT);
         }
     }
 
     @Override
-    public int getItemCount() {
-        return mLocations.size();
+    public long getItemId(int position) {
+        String locationId = getItem(position).getId();
+        Long itemId = mItemIds.get(locationId);
+        if (itemId == null) {
+            itemId = mNextItemId++;
+            mItemIds.put(locationId, itemId);
+        }
+        return itemId;
     }
 
 }
@@ -73,10 +135,11 @@ class ViewHolder extends RecyclerView.ViewHolder {
 
     final TextView text;
     final ImageView imageView;
+    String boundLocationId;
 
     ViewHolder(LayoutInflater inflater, ViewGroup parent) {
         super(inflater.inflate(R.layout.fragment_search_list_item, parent, false));
         text = itemView.findViewById(R.id.text);
         imageView = itemView.findViewById(R.id.location_image);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,298 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MapControl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shows search results on the map, limited to the locations on the current floor and inside the
+ * camera bounds. The results are kept in a {@link SpatialGrid} that is updated incrementally when
+ * the result set changes, and the visible subset is recomputed when the camera stops moving or
+ * the floor changes. MapControl is only called when the visible subset actually changes.
+ * When a floor holds many results they are clustered by a {@link MarkerClusterIndex}, built once
+ * per floor and result set on the background pool of the {@link UiTaskScheduler}, and only the
+ * single locations are passed to MapControl. While the index of the floor shown is being built,
+ * no results are shown, and the floor is updated as soon as the index is ready.
+ * All methods must be called on the main thread.
+ */
+class SearchResultCuller {
+
+    //Roughly 20 meters, about the size of a room
+    private static final double CELL_DEGREES = 0.0002;
+    //Extra margin around the camera bounds, so markers are there before they scroll into view
+    private static final double BOUNDS_MARGIN = 0.2;
+    private static final int FIT_CAMERA_PADDING = 19;
+    //Floors with fewer results than this are not clustered
+    private static final int CLUSTER_MIN_RESULTS = 50;
+    private static final int CLUSTER_RADIUS_DP = 60;
+    //Above this zoom level all results are shown on their own
+    private static final int CLUSTER_MAX_ZOOM = 20;
+    private static final String CLUSTER_TASK_KEY = "clusterIndex";
+
+    private static final SpatialGrid.Locator<MPLocation> LOCATOR = new SpatialGrid.Locator<MPLocation>() {
+        @Override
+        public double lat(@NonNull MPLocation location) {
+            return location.getPoint().getLat();
+        }
+
+        @Override
+        public double lng(@NonNull MPLocation location) {
+            return location.getPoint().getLng();
+        }
+
+        @Override
+        public int floor(@NonNull MPLocation location) {
+            return location.getFloor();
+        }
+    };
+
+    private final MapControl mMapControl;
+    private final GoogleMap mMap;
+    private final ClusterMarkers mClusterMarkers;
+    private final UiTaskScheduler mScheduler;
+    private final float mDensity;
+    private final int mClusterRadiusPx;
+    private final SpatialGrid<MPLocation> mGrid = new SpatialGrid<>(CELL_DEGREES, LOCATOR);
+    private final Set<MPLocation> mResults = new HashSet<>();
+    //The locations last passed to MapControl
+    private Set<MPLocation> mDisplayed = Collections.emptySet();
+    //The results and cluster index of each floor, built when the floor is first shown or prepared
+    private final Map<Integer, List<MPLocation>> mFloorResults = new HashMap<>();
+    private final Map<Integer, MarkerClusterIndex> mClusterIndexes = new HashMap<>();
+    //The floors whose cluster index is being built
+    private final Set<Integer> mBuilding = new HashSet<>();
+
+    /**
+     * @param scheduler builds the cluster indexes in the background
+     * @param density the display density, to size the cluster radius and icons
+     */
+    SearchResultCuller(@NonNull MapControl mapControl, @NonNull GoogleMap map, @NonNull UiTaskScheduler scheduler, float density) {
+        mMapControl = mapControl;
+        mMap = map;
+        mScheduler = scheduler;
+        mDensity = density;
+        mClusterRadiusPx = Math.round(CLUSTER_RADIUS_DP * density);
+        mClusterMarkers = new ClusterMarkers(map, density);
+    }
+
+    /**
+     * Sets the search results to show. Only the differences to the previous results are applied to the index.
+     * @param locations the search results
+     * @param fitCamera true to move the camera so all results are in view
+     */
+    void setResults(@NonNull List<MPLocation> locations, boolean fitCamera) {
+        Set<MPLocation> newResults = new HashSet<>(locations);
+        if (!newResults.equals(mResults)) {
+            mFloorResults.clear();
+            mClusterIndexes.clear();
+            cancelBuilds();
+        }
+        for (MPLocation location : mResults) {
+            if (!newResults.contains(location)) {
+                mGrid.remove(location);
+            }
+        }
+        for (MPLocation location : newResults) {
+            if (!mResults.contains(location)) {
+                mGrid.add(location);
+            }
+        }
+        mResults.clear();
+        mResults.addAll(newResults);
+
+        if (fitCamera && !locations.isEmpty()) {
+            LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
+            for (MPLocation location : locations) {
+                boundsBuilder.include(location.getPoint().getLatLng());
+            }
+            //The visible results are shown once the camera has arrived
+            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(boundsBuilder.build(), FIT_CAMERA_PADDING), new GoogleMap.CancelableCallback() {
+                @Override
+                public void onFinish() {
+                    update();
+                }
+
+                @Override
+                public void onCancel() {
+                    update();
+                }
+            });
+        } else {
+            update();
+        }
+    }
+
+    /**
+     * Removes all results. MapControl itself is not cleared.
+     */
+    void clear() {
+        mGrid.clear();
+        mResults.clear();
+        mDisplayed = Collections.emptySet();
+        mFloorResults.clear();
+        mClusterIndexes.clear();
+        cancelBuilds();
+        mClusterMarkers.clear();
+    }
+
+    /**
+     * Recomputes the visible results, call when the camera has stopped moving or the floor has changed.
+     */
+    void update() {
+        if (mResults.isEmpty()) {
+            mClusterMarkers.clear();
+            return;
+        }
+        LatLngBounds bounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+        double latMargin = (bounds.northeast.latitude - bounds.southwest.latitude) * BOUNDS_MARGIN;
+        double lngMargin = (bounds.northeast.longitude - bounds.southwest.longitude) * BOUNDS_MARGIN;
+        double south = bounds.southwest.latitude - latMargin;
+        double west = bounds.southwest.longitude - lngMargin;
+        double north = bounds.northeast.latitude + latMargin;
+        double east = bounds.northeast.longitude + lngMargin;
+        int floor = mMapControl.getCurrentFloorIndex();
+        List<MPLocation> visible = new ArrayList<>();
+
+        List<MPLocation> floorResults = floorResults(floor);
+        MarkerClusterIndex clusterIndex = null;
+        if (floorResults.size() >= CLUSTER_MIN_RESULTS) {
+            clusterIndex = clusterIndex(floor, floorResults);
+            if (clusterIndex == null) {
+                //What is shown belongs to other results or another floor, so it is hidden until the index has
+                //been built, which runs this update again for the camera of that moment
+                hide();
+                return;
+            }
+        }
+        mClusterMarkers.beginUpdate();
+        if (clusterIndex != null) {
+            int zoom = (int) mMap.getCameraPosition().zoom;
+            clusterIndex.query(zoom, south, west, north, east, (lat, lng, count, point) -> {
+                if (count == 1) {
+                    visible.add(floorResults.get(point));
+                } else {
+                    mClusterMarkers.add(lat, lng, count);
+                }
+            });
+        } else {
+            mGrid.query(floor, south, west, north, east, visible);
+        }
+        mClusterMarkers.endUpdate();
+
+        Set<MPLocation> visibleSet = new HashSet<>(visible);
+        if (visibleSet.equals(mDisplayed)) {
+            return;
+        }
+        mDisplayed = visibleSet;
+        mMapControl.displaySearchResults(visible, false);
+    }
+
+    /**
+     * Removes the results and clusters from the map, until the next update shows them again.
+     */
+    private void hide() {
+        mClusterMarkers.clear();
+        if (!mDisplayed.isEmpty()) {
+            mDisplayed = Collections.emptySet();
+            mMapControl.clearMap();
+        }
+    }
+
+    /**
+     * Builds the results and cluster index of a floor ahead of it being shown. The index is built
+     * on the background pool, only the results of the floor are picked out on the main thread.
+     */
+    void prepareFloor(int floor) {
+        if (mResults.isEmpty()) {
+            return;
+        }
+        List<MPLocation> floorResults = floorResults(floor);
+        if (floorResults.size() >= CLUSTER_MIN_RESULTS) {
+            clusterIndex(floor, floorResults);
+        }
+    }
+
+    /**
+     * Drops the results and cluster index of a floor that is not shown, they are built again when needed.
+     */
+    void releaseFloor(int floor) {
+        if (floor == mMapControl.getCurrentFloorIndex()) {
+            return;
+        }
+        mFloorResults.remove(floor);
+        mClusterIndexes.remove(floor);
+        if (mBuilding.remove(floor)) {
+            mScheduler.cancel(CLUSTER_TASK_KEY + floor);
+        }
+    }
+
+    @NonNull
+    private List<MPLocation> floorResults(int floor) {
+        List<MPLocation> floorResults = mFloorResults.get(floor);
+        if (floorResults == null) {
+            floorResults = new ArrayList<>();
+            for (MPLocation location : mResults) {
+                if (location.getFloor() == floor) {
+                    floorResults.add(location);
+                }
+            }
+            mFloorResults.put(floor, floorResults);
+        }
+        return floorResults;
+    }
+
+    /**
+     * @return the cluster index of a floor, or null if it is still being built, in which case the
+     * floor is updated once it has been
+     */
+    @Nullable
+    private MarkerClusterIndex clusterIndex(int floor, @NonNull List<MPLocation> floorResults) {
+        MarkerClusterIndex index = mClusterIndexes.get(floor);
+        if (index == null && mBuilding.add(floor)) {
+            //Building takes tens of milliseconds for tens of thousands of results, too long for the main thread
+            boolean submitted = mScheduler.submit(mScheduler.begin(CLUSTER_TASK_KEY + floor), () -> {
+                double[] lats = new double[floorResults.size()];
+                double[] lngs = new double[floorResults.size()];
+                for (int i = 0; i < lats.length; i++) {
+                    lats[i] = floorResults.get(i).getPoint().getLat();
+                    lngs[i] = floorResults.get(i).getPoint().getLng();
+                }
+                return new MarkerClusterIndex(lats, lngs, mClusterRadiusPx, CLUSTER_MAX_ZOOM, mDensity);
+            }, built -> {
+                mBuilding.remove(floor);
+                mClusterIndexes.put(floor, built);
+                if (floor == mMapControl.getCurrentFloorIndex()) {
+                    update();
+                }
+            });
+            if (!submitted) {
+                //Tried again on the next update
+                mBuilding.remove(floor);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Drops the cluster indexes being built, they belong to results that are no longer shown.
+     */
+    private void cancelBuilds() {
+        for (int floor : mBuilding) {
+            mScheduler.cancel(CLUSTER_TASK_KEY + floor);
+        }
+        mBuilding.clear();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.mapsindoors.mapssdk.MPFilter;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.MPQuery;
+import com.mapsindoors.mapssdk.MapsIndoors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages through the results of a search beyond the first page, as the user scrolls the result list.
+ * Further pages are fetched with skip and take, from the on-device index when it is available and
+ * from the SDK otherwise. Only a window of {@link #MAX_PAGES} pages is kept in memory; pages far
+ * from what the user is looking at are dropped and fetched again when scrolled back to. Every page
+ * is ranked by the {@link OccupancyHistory} like the first, so rows never move between pages.
+ * All methods must be called on the main thread.
+ */
+class SearchResultPager {
+
+    /**
+     * Receives the locations currently held in memory.
+     */
+    interface Listener {
+        /**
+         * @param window the locations of the loaded pages, in result order
+         */
+        void onSearchWindowChanged(@NonNull List<MPLocation> window);
+    }
+
+    static final int PAGE_SIZE = LocationSearchPipeline.TAKE;
+    //Maximum amount of pages kept in memory
+    static final int MAX_PAGES = 5;
+    //Start loading the next page when this close to the edge of the window
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    private static final String TASK_KEY = "searchPage";
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final LocationIndexRepository mIndexRepository;
+    private final Listener mListener;
+    private final UiTaskScheduler mScheduler;
+    private final OccupancyHistory mOccupancyHistory;
+
+    private String mQuery;
+    //Replaced for every new query, so pages of an older query are dropped
+    private UiTaskScheduler.Ticket mTicket;
+    //The loaded pages, mPages.get(0) is page mFirstPage
+    private final List<List<MPLocation>> mPages = new ArrayList<>();
+    private int mFirstPage;
+    private boolean mReachedEnd;
+    private boolean mLoading;
+
+    SearchResultPager(@NonNull LocationIndexRepository indexRepository, @NonNull Listener listener,
+                      @NonNull UiTaskScheduler scheduler, @NonNull OccupancyHistory occupancyHistory) {
+        mIndexRepository = indexRepository;
+        mListener = listener;
+        mScheduler = scheduler;
+        mOccupancyHistory = occupancyHistory;
+    }
+
+    /**
+     * Starts paging a new search.
+     * @param query the query of the search
+     * @param firstPage the first page of results, already fetched and ranked by the search pipeline
+     */
+    void reset(@NonNull String query, @NonNull List<MPLocation> firstPage) {
+        mTicket = mScheduler.begin(TASK_KEY);
+        mQuery = query;
+        mPages.clear();
+        mPages.add(firstPage);
+        mFirstPage = 0;
+        mReachedEnd = firstPage.size() < PAGE_SIZE;
+        mLoading = false;
+    }
+
+    /**
+     * Called when the result list has been scrolled.
+     * @param firstVisible the position of the first visible row in the window
+     * @param lastVisible the position of the last visible row in the window
+     */
+    void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        if (mQuery == null || mLoading) {
+            return;
+        }
+        if (lastVisible >= windowSize() - PREFETCH_DISTANCE && !mReachedEnd) {
+            load(mFirstPage + mPages.size(), false);
+        } else if (firstVisible < PREFETCH_DISTANCE && mFirstPage > 0) {
+            load(mFirstPage - 1, true);
+        }
+    }
+
+    private int windowSize() {
+        int size = 0;
+        for (List<MPLocation> page : mPages) {
+            size += page.size();
+        }
+        return size;
+    }
+
+    private void load(int page, boolean prepend) {
+        mLoading = true;
+        final UiTaskScheduler.Ticket ticket = mTicket;
+        final String query = mQuery;
+
+        //The index answers right away, but the result is still posted so scroll callbacks are not nested
+        List<MPLocation> indexed = mIndexRepository.search(query, (page + 1) * PAGE_SIZE);
+        if (indexed != null) {
+            List<MPLocation> pageItems = indexed.size() > page * PAGE_SIZE
+                    ? new ArrayList<>(indexed.subList(page * PAGE_SIZE, indexed.size()))
+                    : Collections.emptyList();
+            mHandler.post(() -> {
+                if (mScheduler.isCurrent(ticket)) {
+                    onPageLoaded(page, pageItems, prepend);
+                }
+            });
+            return;
+        }
+
+        MPQuery mpQuery = new MPQuery.Builder().setQuery(query).build();
+        MPFilter mpFilter = new MPFilter.Builder().setSkip(page * PAGE_SIZE).setTake(PAGE_SIZE).build();
+        MapsIndoors.getLocationsAsync(mpQuery, mpFilter, (list, miError) -> mScheduler.post(ticket, () -> {
+            if (miError != null || list == null) {
+                //Allow a retry on the next scroll
+                mLoading = false;
+                return;
+            }
+            onPageLoaded(page, list, prepend);
+        }));
+    }
+
+    private void onPageLoaded(int page, @NonNull List<MPLocation> loaded, boolean prepend) {
+        mLoading = false;
+        List<MPLocation> items = mOccupancyHistory.rank(loaded, MPLocation::getId, System.currentTimeMillis());
+        if (prepend) {
+            mPages.add(0, items);
+            mFirstPage = page;
+            //Drop the page furthest below the user
+            if (mPages.size() > MAX_PAGES) {
+                mPages.remove(mPages.size() - 1);
+                mReachedEnd = false;
+            }
+        } else {
+            if (items.size() < PAGE_SIZE) {
+                mReachedEnd = true;
+            }
+            if (items.isEmpty()) {
+                return;
+            }
+            mPages.add(items);
+            //Drop the page furthest above the user
+            if (mPages.size() > MAX_PAGES) {
+                mPages.remove(0);
+                mFirstPage++;
+            }
+        }
+
+        List<MPLocation> window = new ArrayList<>(windowSize());
+        for (List<MPLocation> loadedPage : mPages) {
+            window.addAll(loadedPage);
+        }
+        mListener.onSearchWindowChanged(window);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform grid over latitude and longitude, one per floor, for finding the items inside a
+ * bounding box without looking at every item. Items can be added and removed one at a time.
+ * @param <T> the type of the indexed items
+ */
+class SpatialGrid<T> {
+
+    /**
+     * Tells the grid where an item is.
+     */
+    interface Locator<T> {
+        double lat(@NonNull T item);
+
+        double lng(@NonNull T item);
+
+        int floor(@NonNull T item);
+    }
+
+    private final double mCellDegrees;
+    private final Locator<T> mLocator;
+    //Floor index to cell key to the items in that cell
+    private final Map<Integer, Map<Long, List<T>>> mFloors = new HashMap<>();
+    private int mSize;
+
+    /**
+     * @param cellDegrees the size of a cell in degrees
+     * @param locator tells the grid where items are
+     */
+    SpatialGrid(double cellDegrees, @NonNull Locator<T> locator) {
+        mCellDegrees = cellDegrees;
+        mLocator = locator;
+    }
+
+    void add(@NonNull T item) {
+        Map<Long, List<T>> cells = mFloors.get(mLocator.floor(item));
+        if (cells == null) {
+            cells = new HashMap<>();
+            mFloors.put(mLocator.floor(item), cells);
+        }
+        long key = cellKey(cell(mLocator.lat(item)), cell(mLocator.lng(item)));
+        List<T> items = cells.get(key);
+        if (items == null) {
+            items = new ArrayList<>(4);
+            cells.put(key, items);
+        }
+        items.add(item);
+        mSize++;
+    }
+
+    /**
+     * Removes an item. The item must not have moved since it was added.
+     * @return true if the item was found
+     */
+    boolean remove(@NonNull T item) {
+        Map<Long, List<T>> cells = mFloors.get(mLocator.floor(item));
+        if (cells == null) {
+            return false;
+        }
+        long key = cellKey(cell(mLocator.lat(item)), cell(mLocator.lng(item)));
+        List<T> items = cells.get(key);
+        if (items == null || !items.remove(item)) {
+            return false;
+        }
+        if (items.isEmpty()) {
+            cells.remove(key);
+        }
+        mSize--;
+        return true;
+    }
+
+    void clear() {
+        mFloors.clear();
+        mSize = 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Finds the items on a floor inside a bounding box.
+     * @param out receives the items, in no particular order
+     */
+    void query(int floor, double south, double west, double north, double east, @NonNull List<T> out) {
+        Map<Long, List<T>> cells = mFloors.get(floor);
+        if (cells == null) {
+            return;
+        }
+        int minRow = cell(south);
+        int maxRow = cell(north);
+        int minColumn = cell(west);
+        int maxColumn = cell(east);
+        long boxCells = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+
+        if (boxCells > cells.size()) {
+            //Zoomed far out, walking the occupied cells is cheaper than walking the box
+            for (List<T> items : cells.values()) {
+                for (T item : items) {
+                    if (contains(item, south, west, north, east)) {
+                        out.add(item);
+                    }
+                }
+            }
+            return;
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                List<T> items = cells.get(cellKey(row, column));
+                if (items == null) {
+                    continue;
+                }
+                boolean edge = row == minRow || row == maxRow || column == minColumn || column == maxColumn;
+                for (T item : items) {
+                    //Only cells on the edge of the box can hold items outside it
+                    if (!edge || contains(item, south, west, north, east)) {
+                        out.add(item);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean contains(T item, double south, double west, double north, double east) {
+        double lat = mLocator.lat(item);
+        double lng = mLocator.lng(item);
+        return lat >= south && lat <= north && lng >= west && lng <= east;
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / mCellDegrees);
+    }
+
+    private static long cellKey(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each startup phase takes, from process start, so the time to the first
+ * interactive map can be measured on cold and warm starts.
+ */
+class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+    //Set once the first activity of the process has started, every later start is a warm start
+    private static boolean sProcessStarted;
+
+    private final boolean mColdStart;
+    private final long mStartTime;
+    private final List<String> mPhases = new ArrayList<>();
+    private final List<Long> mTimes = new ArrayList<>();
+    private boolean mFinished;
+
+    /**
+     * Starts a trace. Cold starts are measured from process start, warm starts from now.
+     */
+    StartupTrace() {
+        mColdStart = !sProcessStarted;
+        sProcessStarted = true;
+        mStartTime = mColdStart ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Records that a phase has completed. Only the first completion of a phase is recorded.
+     * Can be called from any thread.
+     * @param phase the name of the phase
+     */
+    synchronized void mark(@NonNull String phase) {
+        if (mFinished || mPhases.contains(phase)) {
+            return;
+        }
+        mPhases.add(phase);
+        mTimes.add(SystemClock.elapsedRealtime() - mStartTime);
+    }
+
+    /**
+     * Records the last phase and logs the trace. Later marks are ignored.
+     * @param phase the name of the last phase
+     */
+    synchronized void finish(@NonNull String phase) {
+        mark(phase);
+        mFinished = true;
+        Log.i(TAG, toString());
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(mColdStart ? "Cold start" : "Warm start");
+        for (int i = 0; i < mPhases.size(); i++) {
+            builder.append(", ").append(mPhases.get(i)).append('=').append(mTimes.get(i)).append("ms");
+        }
+        return builder.toString();
+    }
+}
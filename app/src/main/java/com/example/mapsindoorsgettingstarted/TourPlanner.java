@@ -0,0 +1,119 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Picks destinations from a cost matrix, e.g. walking distances. Costs may differ per direction,
+ * and unreachable pairs are {@link Double#POSITIVE_INFINITY}. A tour starts at a fixed origin and
+ * ends at the last stop, it does not return to the origin.
+ */
+final class TourPlanner {
+
+    //Improvements smaller than this are rounding noise, and would only make the search go around in circles
+    private static final double EPSILON = 1e-9;
+
+    private TourPlanner() {
+    }
+
+    /**
+     * @param costs the cost from the origin to each destination
+     * @return the index of the cheapest reachable destination, or -1 if none can be reached
+     */
+    static int nearest(@NonNull double[] costs) {
+        int nearest = -1;
+        double nearestCost = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < costs.length; i++) {
+            if (costs[i] < nearestCost) {
+                nearest = i;
+                nearestCost = costs[i];
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds a short order to visit all destinations in. Starts from the nearest neighbour order,
+     * and improves it with 2-opt, reversing parts of the order for as long as that makes it cheaper.
+     * @param fromOrigin the cost from the origin to each destination
+     * @param between between[i][j] is the cost from destination i to destination j
+     * @return the destination indices in visiting order, or null if no order reaching every destination was found
+     */
+    @Nullable
+    static int[] tour(@NonNull double[] fromOrigin, @NonNull double[][] between) {
+        int[] order = nearestNeighbour(fromOrigin, between);
+        double cost = cost(order, fromOrigin, between);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < order.length - 1; i++) {
+                for (int k = i + 1; k < order.length; k++) {
+                    reverse(order, i, k);
+                    //Recomputed in full, as with costs that differ per direction the reversed part changes as well
+                    double candidate = cost(order, fromOrigin, between);
+                    if (candidate < cost - EPSILON) {
+                        cost = candidate;
+                        improved = true;
+                    } else {
+                        reverse(order, i, k);
+                    }
+                }
+            }
+        }
+        return cost < Double.POSITIVE_INFINITY ? order : null;
+    }
+
+    /**
+     * @return the cost of visiting the destinations in the given order, starting at the origin
+     */
+    static double cost(@NonNull int[] order, @NonNull double[] fromOrigin, @NonNull double[][] between) {
+        if (order.length == 0) {
+            return 0;
+        }
+        double cost = fromOrigin[order[0]];
+        for (int i = 1; i < order.length; i++) {
+            cost += between[order[i - 1]][order[i]];
+        }
+        return cost;
+    }
+
+    /**
+     * When no unvisited destination can be reached from the current one, the first unvisited
+     * destination is taken anyway, so 2-opt gets a chance to find an order around the one way parts.
+     */
+    @NonNull
+    private static int[] nearestNeighbour(double[] fromOrigin, double[][] between) {
+        int count = fromOrigin.length;
+        int[] order = new int[count];
+        boolean[] visited = new boolean[count];
+        double[] costs = fromOrigin;
+        for (int i = 0; i < count; i++) {
+            int next = -1;
+            double nextCost = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < count; j++) {
+                if (!visited[j] && costs[j] < nextCost) {
+                    next = j;
+                    nextCost = costs[j];
+                }
+            }
+            if (next < 0) {
+                next = 0;
+                while (visited[next]) {
+                    next++;
+                }
+            }
+            order[i] = next;
+            visited[next] = true;
+            costs = between[next];
+        }
+        return order;
+    }
+
+    private static void reverse(int[] order, int from, int to) {
+        while (from < to) {
+            int swap = order[from];
+            order[from++] = order[to];
+            order[to--] = swap;
+        }
+    }
+}
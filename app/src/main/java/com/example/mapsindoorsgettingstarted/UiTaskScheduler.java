@@ -0,0 +1,237 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the work behind SDK callbacks on a small bounded background pool, and only the final UI
+ * change on the main thread. Work is started under a {@link Ticket}; starting a new ticket with the
+ * same key supersedes the older one, and results of superseded tickets, or that arrive after the
+ * lifecycle owner has been destroyed, are dropped instead of touching the UI.
+ * Queue depth and the time tasks wait for the pool and for the main thread are recorded.
+ * The main thread is reached through a {@link MainThread}, the main looper unless one is given.
+ */
+class UiTaskScheduler implements LifecycleEventObserver {
+
+    /**
+     * Applies a prepared result on the main thread.
+     */
+    interface UiAction<T> {
+        void apply(T result);
+    }
+
+    /**
+     * The thread UI changes are applied on.
+     */
+    interface MainThread {
+        /**
+         * @return true if called on the main thread
+         */
+        boolean isCurrent();
+
+        /**
+         * Runs a task on the main thread later.
+         */
+        void post(@NonNull Runnable task);
+    }
+
+    /**
+     * The main thread of the app, reached through its looper.
+     */
+    static final class LooperMainThread implements MainThread {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public boolean isCurrent() {
+            return Looper.myLooper() == Looper.getMainLooper();
+        }
+
+        @Override
+        public void post(@NonNull Runnable task) {
+            mHandler.post(task);
+        }
+    }
+
+    /**
+     * Identifies one piece of work. Only the newest ticket of a key is current.
+     */
+    static final class Ticket {
+        final String mKey;
+
+        private Ticket(String key) {
+            mKey = key;
+        }
+    }
+
+    private static final String TAG = "UiTaskScheduler";
+    static final int POOL_SIZE = 2;
+    static final int QUEUE_CAPACITY = 32;
+
+    private final MainThread mMainThread;
+    private final Map<String, Ticket> mCurrent = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor mExecutor;
+    private volatile boolean mDestroyed;
+
+    private final LatencyHistogram mQueueWait = new LatencyHistogram();
+    private final LatencyHistogram mMainWait = new LatencyHistogram();
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+    private final AtomicLong mSuperseded = new AtomicLong();
+    private final AtomicLong mAfterDestroy = new AtomicLong();
+    private final AtomicLong mRejected = new AtomicLong();
+
+    UiTaskScheduler() {
+        this(new LooperMainThread());
+    }
+
+    /**
+     * @param mainThread the thread UI changes are applied on
+     */
+    UiTaskScheduler(@NonNull MainThread mainThread) {
+        mMainThread = mainThread;
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts new work for a key, superseding any earlier work for the same key. Can be called from any thread.
+     * @param key what the work is for, e.g. "route"
+     */
+    @NonNull
+    Ticket begin(@NonNull String key) {
+        Ticket ticket = new Ticket(key);
+        mCurrent.put(key, ticket);
+        return ticket;
+    }
+
+    /**
+     * Supersedes any work for a key without starting new work.
+     */
+    void cancel(@NonNull String key) {
+        mCurrent.remove(key);
+    }
+
+    /**
+     * @return true if the ticket has not been superseded or cancelled, and the owner is not destroyed
+     */
+    boolean isCurrent(@NonNull Ticket ticket) {
+        return !mDestroyed && mCurrent.get(ticket.mKey) == ticket;
+    }
+
+    /**
+     * Prepares a result on the background pool and applies it on the main thread, unless the
+     * ticket has been superseded by then. Can be called from any thread.
+     * @param prepare the background work, skipped if the ticket is no longer current when it starts
+     * @param apply the UI change
+     * @return false if the work was dropped right away, because the ticket is not current or the pool is full
+     */
+    <T> boolean submit(@NonNull Ticket ticket, @NonNull Callable<T> prepare, @NonNull UiAction<T> apply) {
+        if (!isDeliverable(ticket)) {
+            return false;
+        }
+        long queuedAt = System.nanoTime();
+        Runnable task = () -> {
+            mQueueWait.record(System.nanoTime() - queuedAt);
+            if (!isDeliverable(ticket)) {
+                return;
+            }
+            T result;
+            try {
+                result = prepare.call();
+            } catch (Exception e) {
+                Log.w(TAG, "Preparing " + ticket.mKey + " failed", e);
+                return;
+            }
+            post(ticket, () -> apply.apply(result));
+        };
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            //The pool is only full when tasks pile up faster than they finish, the newest ones give way.
+            //The count is part of the stats logged by the activity
+            mRejected.incrementAndGet();
+            return false;
+        }
+        int depth = mExecutor.getQueue().size();
+        int max = mMaxQueueDepth.get();
+        while (depth > max && !mMaxQueueDepth.compareAndSet(max, depth)) {
+            max = mMaxQueueDepth.get();
+        }
+        return true;
+    }
+
+    /**
+     * Applies a UI change on the main thread, unless the ticket has been superseded by then.
+     * Runs right away when called on the main thread. Can be called from any thread.
+     */
+    void post(@NonNull Ticket ticket, @NonNull Runnable apply) {
+        if (mMainThread.isCurrent()) {
+            if (isDeliverable(ticket)) {
+                apply.run();
+            }
+            return;
+        }
+        long postedAt = System.nanoTime();
+        mMainThread.post(() -> {
+            mMainWait.record(System.nanoTime() - postedAt);
+            if (isDeliverable(ticket)) {
+                apply.run();
+            }
+        });
+    }
+
+    /**
+     * Like {@link #isCurrent(Ticket)}, counting why work is dropped.
+     */
+    private boolean isDeliverable(Ticket ticket) {
+        if (mDestroyed) {
+            mAfterDestroy.incrementAndGet();
+            return false;
+        }
+        if (mCurrent.get(ticket.mKey) != ticket) {
+            mSuperseded.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of tasks dropped because the pool was full
+     */
+    long getRejectedCount() {
+        return mRejected.get();
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_DESTROY) {
+            mDestroyed = true;
+            mCurrent.clear();
+            mExecutor.shutdownNow();
+            source.getLifecycle().removeObserver(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "queue depth " + mExecutor.getQueue().size() + " (max " + mMaxQueueDepth.get() + "), queue wait "
+                + mQueueWait + ", main wait " + mMainWait + ", dropped " + mSuperseded.get() + " superseded, "
+                + mAfterDestroy.get() + " after destroy, " + mRejected.get() + " rejected";
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MapsIndoors;
+import com.mapsindoors.mapssdk.OnPositionUpdateListener;
+import com.mapsindoors.mapssdk.Point;
+import com.mapsindoors.mapssdk.PositionProvider;
+import com.mapsindoors.mapssdk.PositionResult;
+import com.mapsindoors.mapssdk.Route;
+
+/**
+ * Feeds the fixes of the MapsIndoors position provider through a {@link PositioningPipeline} on a
+ * background thread, and delivers the smoothed, rate limited result on the main thread. While a
+ * route is set, the smoothed positions are also followed along the route by a {@link RouteProgressTracker}.
+ */
+class UserPositionTracker implements PositioningPipeline.Listener, RouteProgressTracker.Listener {
+
+    /**
+     * Receives position updates on the main thread.
+     */
+    interface Listener {
+        /**
+         * @param position the smoothed user position
+         */
+        void onUserPositionChanged(@NonNull Point position);
+
+        /**
+         * Called when the user has left the route passed to {@link #setRoute(Route)}.
+         * @param position the smoothed user position
+         */
+        void onUserOffRoute(@NonNull Point position);
+
+        /**
+         * Called when the progress of the user along the route passed to {@link #setRoute(Route)} has changed.
+         */
+        void onRouteProgress(@NonNull RouteProgress progress);
+    }
+
+    //Accuracy assumed for fixes that do not report one
+    private static final float DEFAULT_ACCURACY_M = 10;
+
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mThread = new HandlerThread("UserPositionTracker");
+    private final Handler mHandler;
+    private final PositioningPipeline mPipeline = new PositioningPipeline(this);
+    private final RouteProgressTracker mProgressTracker = new RouteProgressTracker(this);
+    private PositionProvider mPositionProvider;
+    //The route set on the main thread, and the route the background thread is tracking
+    private Route mRoute;
+    private Route mTrackedRoute;
+
+    private final OnPositionUpdateListener mPositionUpdateListener = new OnPositionUpdateListener() {
+        @Override
+        public void onPositioningStarted(@NonNull PositionProvider provider) {
+
+        }
+
+        @Override
+        public void onPositionFailed(@NonNull PositionProvider provider) {
+
+        }
+
+        @Override
+        public void onPositionUpdate(@NonNull PositionResult positionResult) {
+            Point point = positionResult.getPoint();
+            if (point == null) {
+                return;
+            }
+            double lat = point.getLat();
+            double lng = point.getLng();
+            int floor = positionResult.hasFloor() ? positionResult.getFloor() : point.getFloorIndex();
+            float accuracy = positionResult.hasAccuracy() ? positionResult.getAccuracy() : DEFAULT_ACCURACY_M;
+            long time = SystemClock.elapsedRealtime();
+            //The pipeline runs on its own thread, so the sensor rate never reaches the main thread
+            mHandler.post(() -> mPipeline.onRawFix(lat, lng, floor, accuracy, time));
+        }
+    };
+
+    UserPositionTracker(@NonNull Listener listener) {
+        mListener = listener;
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Starts listening to the position provider set on MapsIndoors, if there is one.
+     */
+    void start() {
+        PositionProvider positionProvider = MapsIndoors.getPositionProvider();
+        if (positionProvider == null || positionProvider == mPositionProvider) {
+            return;
+        }
+        stop();
+        mPositionProvider = positionProvider;
+        mPositionProvider.addOnPositionUpdateListener(mPositionUpdateListener);
+    }
+
+    /**
+     * Stops listening to the position provider.
+     */
+    void stop() {
+        if (mPositionProvider != null) {
+            mPositionProvider.removeOnPositionUpdateListener(mPositionUpdateListener);
+            mPositionProvider = null;
+        }
+    }
+
+    /**
+     * Stops tracking and ends the background thread.
+     */
+    void release() {
+        stop();
+        mThread.quitSafely();
+    }
+
+    /**
+     * Sets the route the user is following, or null when navigation ends.
+     * The geometry of the route is extracted on the background thread.
+     */
+    void setRoute(@Nullable Route route) {
+        mRoute = route;
+        mHandler.post(() -> {
+            RouteGeometry geometry = route != null ? RouteGeometry.from(route) : null;
+            mPipeline.setRoute(geometry);
+            mProgressTracker.setRoute(geometry);
+            mTrackedRoute = route;
+        });
+    }
+
+    @Override
+    public void onPositionChanged(double lat, double lng, int floor, double accuracy) {
+        mProgressTracker.onPosition(lat, lng, floor);
+        Point position = new Point(lat, lng, floor);
+        mMainHandler.post(() -> mListener.onUserPositionChanged(position));
+    }
+
+    @Override
+    public void onOffRoute(double lat, double lng, int floor) {
+        Point position = new Point(lat, lng, floor);
+        mMainHandler.post(() -> mListener.onUserOffRoute(position));
+    }
+
+    @Override
+    public void onRouteProgress(@NonNull RouteProgress progress) {
+        Route route = mTrackedRoute;
+        mMainHandler.post(() -> {
+            //Progress along a route that has been replaced since is dropped
+            if (route == mRoute) {
+                mListener.onRouteProgress(progress);
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The supplementary content of a venue that the SDK does not have, like opening hours and custom
+ * metadata of locations. Loaded by {@link VenueContentClient}, immutable once parsed.
+ */
+final class VenueContent {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    /**
+     * The content of one location.
+     */
+    static final class LocationContent {
+        //Pairs of opening and closing minute of the week, counted from Monday midnight. A closing
+        //minute past the end of the week means the location is open over Sunday midnight.
+        private final int[] mOpeningMinutes;
+        private final Map<String, String> mMetadata;
+
+        LocationContent(@NonNull int[] openingMinutes, @NonNull Map<String, String> metadata) {
+            mOpeningMinutes = openingMinutes;
+            mMetadata = metadata;
+        }
+
+        boolean hasOpeningHours() {
+            return mOpeningMinutes.length > 0;
+        }
+
+        /**
+         * @param minuteOfWeek see {@link #minuteOfWeek(Calendar)}
+         * @return true if the location is open at that minute, or has no opening hours
+         */
+        boolean isOpenAt(int minuteOfWeek) {
+            if (mOpeningMinutes.length == 0) {
+                return true;
+            }
+            for (int i = 0; i < mOpeningMinutes.length; i += 2) {
+                int open = mOpeningMinutes[i];
+                int close = mOpeningMinutes[i + 1];
+                if ((minuteOfWeek >= open && minuteOfWeek < close)
+                        || (minuteOfWeek + MINUTES_PER_WEEK >= open && minuteOfWeek + MINUTES_PER_WEEK < close)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @NonNull
+        Map<String, String> getMetadata() {
+            return mMetadata;
+        }
+    }
+
+    private final String mVenueId;
+    private final Map<String, LocationContent> mLocations;
+
+    VenueContent(@NonNull String venueId, @NonNull Map<String, LocationContent> locations) {
+        mVenueId = venueId;
+        mLocations = Collections.unmodifiableMap(locations);
+    }
+
+    @NonNull
+    String getVenueId() {
+        return mVenueId;
+    }
+
+    /**
+     * @return the content of a location, or null if there is none
+     */
+    @Nullable
+    LocationContent get(@NonNull String locationId) {
+        return mLocations.get(locationId);
+    }
+
+    int size() {
+        return mLocations.size();
+    }
+
+    /**
+     * @return the minute of the week of a time, counted from Monday midnight
+     */
+    static int minuteOfWeek(@NonNull Calendar calendar) {
+        //Calendar counts days from Sunday, which is 1
+        int day = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        return day * MINUTES_PER_DAY + calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+    }
+}
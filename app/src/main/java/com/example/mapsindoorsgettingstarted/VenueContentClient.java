@@ -0,0 +1,127 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads the {@link VenueContent} of a venue from our own content server, through OkHttp with an
+ * on-disk HTTP cache. Every load asks the server whether the cached content is still current, with
+ * the ETag or Last-Modified the server sent, so unchanged content costs an empty 304 response and
+ * is not parsed again. Without a network the cached content is used, for which the server must
+ * send its content with "Cache-Control: max-age=0" rather than "no-cache". Loads block, so they must
+ * run on a background thread.
+ */
+class VenueContentClient {
+
+    /**
+     * Where loaded content came from.
+     */
+    enum Source {
+        //Downloaded and parsed
+        NETWORK,
+        //The server confirmed the cached content, the content parsed last time was used
+        NOT_MODIFIED,
+        //The server could not be reached, the cached content was used
+        CACHE
+    }
+
+    /**
+     * The content of a venue and where it came from.
+     */
+    static final class Loaded {
+        final VenueContent mContent;
+        final Source mSource;
+
+        Loaded(@NonNull VenueContent content, @NonNull Source source) {
+            mContent = content;
+            mSource = source;
+        }
+    }
+
+    static final long CACHE_MAX_BYTES = 20 * 1024 * 1024;
+    private static final long TIMEOUT_SECONDS = 15;
+    //Ask the server every time, with the validators of the cached response
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().noCache().build();
+
+    private final OkHttpClient mClient;
+    private final HttpUrl mBaseUrl;
+    //The content parsed from the cached response of each venue, reused while the server says it has not changed
+    private final Map<String, VenueContent> mParsed = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseUrl the url of the content server, content of a venue is at venues/{venueId}/content.json
+     * @param cacheDirectory the directory of the HTTP cache, which the client owns
+     */
+    VenueContentClient(@NonNull HttpUrl baseUrl, @NonNull File cacheDirectory) {
+        this(baseUrl, new OkHttpClient.Builder()
+                .cache(new Cache(cacheDirectory, CACHE_MAX_BYTES))
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build());
+    }
+
+    VenueContentClient(@NonNull HttpUrl baseUrl, @NonNull OkHttpClient client) {
+        mBaseUrl = baseUrl;
+        mClient = client;
+    }
+
+    /**
+     * Loads the content of a venue.
+     * @throws IOException if the server can not be reached and nothing is cached, or the content is malformed
+     */
+    @NonNull
+    Loaded load(@NonNull String venueId) throws IOException {
+        HttpUrl url = mBaseUrl.newBuilder()
+                .addPathSegment("venues")
+                .addPathSegment(venueId)
+                .addPathSegment("content.json")
+                .build();
+        Request request = new Request.Builder().url(url).cacheControl(REVALIDATE).build();
+        try (Response response = mClient.newCall(request).execute()) {
+            return read(venueId, response, false);
+        } catch (IOException e) {
+            //Offline, fall back to whatever the cache holds, stale or not
+            Request cached = request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build();
+            try (Response response = mClient.newCall(cached).execute()) {
+                if (!response.isSuccessful()) {
+                    throw e;
+                }
+                return read(venueId, response, true);
+            }
+        }
+    }
+
+    private Loaded read(String venueId, Response response, boolean offline) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Loading the content of " + venueId + " failed with HTTP " + response.code());
+        }
+        Response networkResponse = response.networkResponse();
+        boolean notModified = networkResponse != null && networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        VenueContent parsed = mParsed.get(venueId);
+        //The body is the cached one we parsed before, so it is not parsed again
+        if (parsed != null && (notModified || offline)) {
+            return new Loaded(parsed, offline ? Source.CACHE : Source.NOT_MODIFIED);
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            throw new IOException("No content for " + venueId);
+        }
+        VenueContent content = VenueContentParser.parse(body.charStream());
+        mParsed.put(venueId, content);
+        return new Loaded(content, offline ? Source.CACHE : notModified ? Source.NOT_MODIFIED : Source.NETWORK);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses venue content with Gson's streaming {@link JsonReader}, straight into the compact form of
+ * {@link VenueContent}, so a payload of several megabytes never exists as a tree of JSON elements.
+ * Unknown fields are skipped, so the server can add fields without breaking older apps.
+ * The expected shape is:
+ * <pre>
+ * {"venueId": "...", "locations": [
+ *     {"id": "...",
+ *      "openingHours": [{"day": 0, "open": "08:00", "close": "17:30"}],
+ *      "metadata": {"key": "value"}}
+ * ]}
+ * </pre>
+ * Days count from Monday, which is 0. A closing time before the opening time is on the next day.
+ */
+final class VenueContentParser {
+
+    //Metadata keys repeat for every location, so each distinct key is only kept once
+    private final Map<String, String> mKeys = new HashMap<>();
+    private int[] mMinutes = new int[16];
+
+    private VenueContentParser() {
+    }
+
+    /**
+     * @throws IOException if the content can not be read or is malformed
+     */
+    @NonNull
+    static VenueContent parse(@NonNull Reader in) throws IOException {
+        return new VenueContentParser().read(new JsonReader(in));
+    }
+
+    private VenueContent read(JsonReader reader) throws IOException {
+        String venueId = "";
+        Map<String, VenueContent.LocationContent> locations = new HashMap<>();
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "venueId":
+                        venueId = reader.nextString();
+                        break;
+                    case "locations":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readLocation(reader, locations);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            //Thrown by the reader when the JSON does not have the expected shape
+            throw new IOException("Malformed venue content", e);
+        }
+        return new VenueContent(venueId, locations);
+    }
+
+    private void readLocation(JsonReader reader, Map<String, VenueContent.LocationContent> locations) throws IOException {
+        String id = null;
+        int minuteCount = 0;
+        Map<String, String> metadata = Collections.emptyMap();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "openingHours":
+                    minuteCount = readOpeningHours(reader);
+                    break;
+                case "metadata":
+                    metadata = readMetadata(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (id != null) {
+            locations.put(id, new VenueContent.LocationContent(Arrays.copyOf(mMinutes, minuteCount), metadata));
+        }
+    }
+
+    /**
+     * Reads the opening hours into the shared minute buffer.
+     * @return the number of minutes read, two per opening
+     */
+    private int readOpeningHours(JsonReader reader) throws IOException {
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int day = -1;
+            int open = -1;
+            int close = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "day":
+                        day = reader.nextInt();
+                        break;
+                    case "open":
+                        open = minuteOfDay(reader.nextString());
+                        break;
+                    case "close":
+                        close = minuteOfDay(reader.nextString());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (day < 0 || day > 6 || open < 0 || close < 0) {
+                continue;
+            }
+            if (count + 2 > mMinutes.length) {
+                mMinutes = Arrays.copyOf(mMinutes, mMinutes.length * 2);
+            }
+            int start = day * VenueContent.MINUTES_PER_DAY + open;
+            mMinutes[count++] = start;
+            mMinutes[count++] = day * VenueContent.MINUTES_PER_DAY + close + (close <= open ? VenueContent.MINUTES_PER_DAY : 0);
+        }
+        reader.endArray();
+        return count;
+    }
+
+    private Map<String, String> readMetadata(JsonReader reader) throws IOException {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            String key = mKeys.get(name);
+            if (key == null) {
+                key = name;
+                mKeys.put(key, key);
+            }
+            JsonToken token = reader.peek();
+            if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                metadata.put(key, reader.nextString());
+            } else if (token == JsonToken.BOOLEAN) {
+                metadata.put(key, Boolean.toString(reader.nextBoolean()));
+            } else {
+                //Nested values are not used by the app
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return metadata;
+    }
+
+    /**
+     * @return the minute of the day of a time like "08:30", or -1 if it is not one
+     */
+    static int minuteOfDay(@NonNull String time) {
+        int colon = time.indexOf(':');
+        if (colon <= 0 || colon == time.length() - 1) {
+            return -1;
+        }
+        try {
+            int hours = Integer.parseInt(time.substring(0, colon));
+            int minutes = Integer.parseInt(time.substring(colon + 1));
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes >= 60) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
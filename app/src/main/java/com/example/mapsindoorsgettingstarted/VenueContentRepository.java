@@ -0,0 +1,76 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Owns the supplementary {@link VenueContent} of the current venue, loaded in the background
+ * through a {@link VenueContentClient}.
+ */
+class VenueContentRepository {
+
+    /**
+     * Receives newly loaded content on the main thread.
+     */
+    interface Listener {
+        void onVenueContent(@NonNull VenueContent content);
+    }
+
+    private static final String TAG = "VenueContentRepository";
+
+    private final VenueContentClient mClient;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private volatile VenueContent mContent;
+
+    /**
+     * @param baseUrl the url of the content server
+     * @param cacheDirectory the directory of the HTTP cache
+     */
+    VenueContentRepository(@NonNull HttpUrl baseUrl, @NonNull File cacheDirectory) {
+        mClient = new VenueContentClient(baseUrl, cacheDirectory);
+    }
+
+    /**
+     * @return the content of the current venue, or null if it has not been loaded
+     */
+    @Nullable
+    VenueContent getContent() {
+        return mContent;
+    }
+
+    /**
+     * Loads the content of a venue in the background. The listener is only called when the content
+     * is new, not when the server confirmed that the content already shown is current.
+     */
+    void loadAsync(@NonNull String venueId, @NonNull Listener listener) {
+        mExecutor.execute(() -> {
+            Metrics.Span span = Metrics.begin();
+            VenueContentClient.Loaded loaded;
+            try {
+                loaded = mClient.load(venueId);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not load the content of venue " + venueId, e);
+                return;
+            }
+            Metrics.end(span, Metrics.Stage.CONTENT_LOAD);
+            Log.d(TAG, "Content of " + loaded.mContent.size() + " locations from " + loaded.mSource);
+            if (loaded.mContent == mContent) {
+                return;
+            }
+            mContent = loaded.mContent;
+            mHandler.post(() -> listener.onVenueContent(loaded.mContent));
+        });
+    }
+}
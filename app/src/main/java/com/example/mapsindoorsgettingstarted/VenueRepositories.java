@@ -0,0 +1,85 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Holds the repositories of venue data for the lifetime of the process, so the snapshot, the search
+ * index, the routing graph and the occupancy history are loaded from storage once, and not again every time the activity
+ * is recreated. Each repository keeps a single background thread, so their number stays fixed.
+ * Must be called on the main thread.
+ */
+final class VenueRepositories {
+
+    private static VenueRepositories sInstance;
+
+    private final VenueSnapshotRepository mSnapshotRepository;
+    private final LocationIndexRepository mIndexRepository;
+    private final LocalRouter mLocalRouter;
+    private final OccupancyHistoryRepository mOccupancyHistoryRepository;
+    private final VenueContentRepository mContentRepository;
+
+    private VenueRepositories(@NonNull Context context) {
+        //The snapshot and index of the last session answer searches until the SDK has synced
+        mSnapshotRepository = new VenueSnapshotRepository(new File(context.getFilesDir(), "venue_snapshot.bin"));
+        mSnapshotRepository.loadAsync();
+        mIndexRepository = new LocationIndexRepository(new File(context.getFilesDir(), "location_index.bin"), mSnapshotRepository);
+        mIndexRepository.loadAsync();
+        //Routes learned from earlier sessions answer route requests while the network is slow or gone.
+        //The graph belongs to the venues of a solution, so another solution learns a graph of its own
+        mLocalRouter = new LocalRouter(new File(context.getFilesDir(), "routing_graph_" + MapsActivity.MAPSINDOORS_API_KEY + ".bin"));
+        mLocalRouter.loadAsync();
+        //Live data of the locations of the solution, kept per solution like the graph
+        mOccupancyHistoryRepository = new OccupancyHistoryRepository(new File(context.getFilesDir(), "occupancy_history_" + MapsActivity.MAPSINDOORS_API_KEY + ".bin"));
+        mOccupancyHistoryRepository.loadAsync();
+        HttpUrl venueContentUrl = HttpUrl.parse(context.getString(R.string.venue_content_url));
+        mContentRepository = venueContentUrl != null
+                ? new VenueContentRepository(venueContentUrl, new File(context.getCacheDir(), "venue_content"))
+                : null;
+    }
+
+    /**
+     * @return the repositories, created and loading on the first call
+     */
+    @NonNull
+    static VenueRepositories get(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new VenueRepositories(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @NonNull
+    VenueSnapshotRepository getSnapshotRepository() {
+        return mSnapshotRepository;
+    }
+
+    @NonNull
+    LocationIndexRepository getIndexRepository() {
+        return mIndexRepository;
+    }
+
+    @NonNull
+    LocalRouter getLocalRouter() {
+        return mLocalRouter;
+    }
+
+    @NonNull
+    OccupancyHistoryRepository getOccupancyHistoryRepository() {
+        return mOccupancyHistoryRepository;
+    }
+
+    /**
+     * @return the venue content repository, or null if no content server is configured
+     */
+    @Nullable
+    VenueContentRepository getContentRepository() {
+        return mContentRepository;
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the locations of a solution, read straight from a memory mapped file.
+ * Locations are fixed size records sorted by id, pointing into a table of deduplicated strings,
+ * so opening a snapshot only checks the header and checksum and a location is only decoded when
+ * it is looked up. The checksum also identifies the content, so an unchanged solution can be
+ * detected without comparing locations one by one.
+ *
+ * <pre>
+ * header:  magic, format version, payload crc32, location count, string table size, written at millis
+ * records: lat, lng (double), floor, id, name, type, floor name (string offsets, -1 for none)
+ * strings: length (unsigned short) followed by UTF-8 bytes, cut to 65535 bytes on a character boundary
+ * </pre>
+ * Display rules are not part of the snapshot, icons come from MapControl once it has loaded them.
+ */
+final class VenueSnapshot {
+
+    private static final int MAGIC = 0x4D495653; //"MIVS"
+    static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8;
+    private static final int RECORD_SIZE = 8 + 8 + 4 * 5;
+    private static final int NO_STRING = -1;
+
+    private static final int OFFSET_LAT = 0;
+    private static final int OFFSET_LNG = 8;
+    private static final int OFFSET_FLOOR = 16;
+    private static final int OFFSET_ID = 20;
+    private static final int OFFSET_NAME = 24;
+    private static final int OFFSET_TYPE = 28;
+    private static final int OFFSET_FLOOR_NAME = 32;
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mStringsStart;
+    private final int mCrc;
+    private final long mWrittenAt;
+
+    private VenueSnapshot(ByteBuffer buffer, int size, int crc, long writtenAt) {
+        mBuffer = buffer;
+        mSize = size;
+        mStringsStart = HEADER_SIZE + size * RECORD_SIZE;
+        mCrc = crc;
+        mWrittenAt = writtenAt;
+    }
+
+    /**
+     * Maps a snapshot file into memory and checks it. The checksum reads the whole file once,
+     * after that pages are only touched when locations are looked up.
+     * @throws IOException if the file can not be read, was written by another format version or is corrupt
+     */
+    @NonNull
+    static VenueSnapshot map(@NonNull File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            //The mapping stays valid after the channel is closed
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a snapshot from a buffer holding the bytes of {@link Builder#toByteArray(long)}.
+     * @throws IOException if the buffer was written by another format version or is corrupt
+     */
+    @NonNull
+    static VenueSnapshot wrap(@NonNull ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a venue snapshot");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported venue snapshot version " + buffer.getInt(4));
+        }
+        int crc = buffer.getInt(8);
+        int size = buffer.getInt(12);
+        int stringsSize = buffer.getInt(16);
+        long writtenAt = buffer.getLong(20);
+        if (size < 0 || stringsSize < 0 || (long) HEADER_SIZE + (long) size * RECORD_SIZE + stringsSize != buffer.limit()) {
+            throw new IOException("Truncated venue snapshot");
+        }
+        if (crc(buffer, HEADER_SIZE, buffer.limit()) != crc) {
+            throw new IOException("Venue snapshot checksum mismatch");
+        }
+        return new VenueSnapshot(buffer, size, crc, writtenAt);
+    }
+
+    /**
+     * Checksums a range of a buffer without moving its position. Copies through a small array,
+     * as CRC32 only reads buffers directly from API 26.
+     */
+    private static int crc(ByteBuffer buffer, int from, int to) {
+        CRC32 crc32 = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        view.limit(to);
+        byte[] chunk = new byte[8192];
+        while (view.hasRemaining()) {
+            int length = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, length);
+            crc32.update(chunk, 0, length);
+        }
+        return (int) crc32.getValue();
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the checksum of the content, equal for snapshots of the same locations
+     */
+    int getCrc() {
+        return mCrc;
+    }
+
+    long getWrittenAt() {
+        return mWrittenAt;
+    }
+
+    /**
+     * Finds a location by id with a binary search over the records.
+     * @return the index of the location, or -1
+     */
+    int indexOf(@NonNull String id) {
+        int low = 0;
+        int high = mSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = id(middle).compareTo(id);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    double lat(int index) {
+        return mBuffer.getDouble(record(index) + OFFSET_LAT);
+    }
+
+    double lng(int index) {
+        return mBuffer.getDouble(record(index) + OFFSET_LNG);
+    }
+
+    int floor(int index) {
+        return mBuffer.getInt(record(index) + OFFSET_FLOOR);
+    }
+
+    @NonNull
+    String id(int index) {
+        //Ids are always written
+        return string(record(index) + OFFSET_ID);
+    }
+
+    @Nullable
+    String name(int index) {
+        return string(record(index) + OFFSET_NAME);
+    }
+
+    @Nullable
+    String type(int index) {
+        return string(record(index) + OFFSET_TYPE);
+    }
+
+    @Nullable
+    String floorName(int index) {
+        return string(record(index) + OFFSET_FLOOR_NAME);
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Location " + index + " of " + mSize);
+        }
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    @Nullable
+    private String string(int referencePosition) {
+        int offset = mBuffer.getInt(referencePosition);
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int position = mStringsStart + offset;
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = mBuffer.duplicate();
+        view.position(position + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects locations and writes a snapshot.
+     */
+    static class Builder {
+
+        private static final class Entry {
+            final String id;
+            final double lat;
+            final double lng;
+            final int floor;
+            //id, name, type and floor name, in record order
+            final String[] strings;
+
+            Entry(String id, double lat, double lng, int floor, String[] strings) {
+                this.id = id;
+                this.lat = lat;
+                this.lng = lng;
+                this.floor = floor;
+                this.strings = strings;
+            }
+        }
+
+        private final List<Entry> mLocations = new ArrayList<>();
+
+        /**
+         * Adds a location to the snapshot.
+         * @return this builder
+         */
+        @NonNull
+        Builder add(@NonNull String id, @Nullable String name, @Nullable String type, int floor,
+                    @Nullable String floorName, double lat, double lng) {
+            mLocations.add(new Entry(id, lat, lng, floor, new String[]{id, name, type, floorName}));
+            return this;
+        }
+
+        /**
+         * @param writtenAt the time the snapshot is written, in milliseconds since the epoch
+         * @return the bytes of the snapshot
+         */
+        @NonNull
+        byte[] toByteArray(long writtenAt) {
+            List<Entry> locations = new ArrayList<>(mLocations);
+            //Sorted by id, so a location can be found with a binary search
+            locations.sort((a, b) -> a.id.compareTo(b.id));
+
+            Map<String, Integer> stringOffsets = new HashMap<>();
+            ByteBuffer strings = ByteBuffer.allocate(1024);
+            int[][] references = new int[locations.size()][];
+            for (int i = 0; i < locations.size(); i++) {
+                String[] fields = locations.get(i).strings;
+                int[] locationReferences = new int[fields.length];
+                for (int f = 0; f < fields.length; f++) {
+                    String value = fields[f];
+                    if (value == null) {
+                        locationReferences[f] = NO_STRING;
+                        continue;
+                    }
+                    Integer offset = stringOffsets.get(value);
+                    if (offset == null) {
+                        byte[] bytes = utf8(value);
+                        if (strings.remaining() < bytes.length + 2) {
+                            ByteBuffer grown = ByteBuffer.allocate(Math.max(strings.capacity() * 2, strings.position() + bytes.length + 2));
+                            strings.flip();
+                            grown.put(strings);
+                            strings = grown;
+                        }
+                        offset = strings.position();
+                        strings.putShort((short) bytes.length);
+                        strings.put(bytes);
+                        stringOffsets.put(value, offset);
+                    }
+                    locationReferences[f] = offset;
+                }
+                references[i] = locationReferences;
+            }
+
+            int stringsSize = strings.position();
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + locations.size() * RECORD_SIZE + stringsSize);
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < locations.size(); i++) {
+                Entry location = locations.get(i);
+                buffer.putDouble(location.lat);
+                buffer.putDouble(location.lng);
+                buffer.putInt(location.floor);
+                for (int reference : references[i]) {
+                    buffer.putInt(reference);
+                }
+            }
+            buffer.put(strings.array(), 0, stringsSize);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, crc(buffer, HEADER_SIZE, buffer.limit()));
+            buffer.putInt(12, locations.size());
+            buffer.putInt(16, stringsSize);
+            buffer.putLong(20, writtenAt);
+            return buffer.array();
+        }
+
+        /**
+         * @return the UTF-8 bytes of a string, cut to the longest length that fits and does not split a character
+         */
+        @NonNull
+        static byte[] utf8(@NonNull String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= 0xFFFF) {
+                return bytes;
+            }
+            int length = 0xFFFF;
+            //Continuation bytes look like 10xxxxxx, the cut goes before the byte starting their character
+            while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+                length--;
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
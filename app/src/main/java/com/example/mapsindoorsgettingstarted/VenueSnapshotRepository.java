@@ -0,0 +1,142 @@
+package com.example.mapsindoorsgettingstarted;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.mapsindoors.mapssdk.MPLocation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the {@link VenueSnapshot} in app storage. The snapshot is mapped at startup, so locations
+ * can be searched and placed before the SDK has synced, and refreshed in the background after
+ * every sync. The file is only rewritten when the locations actually changed.
+ */
+class VenueSnapshotRepository {
+
+    /**
+     * Called on a background thread when a refresh has finished.
+     */
+    interface RefreshListener {
+        /**
+         * @param changed true if the locations differ from the previous snapshot, or there was none
+         */
+        void onSnapshotRefreshed(boolean changed);
+    }
+
+    private static final String TAG = "VenueSnapshotRepository";
+
+    private final File mFile;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private volatile VenueSnapshot mSnapshot;
+
+    /**
+     * @param file the file the snapshot is persisted to
+     */
+    VenueSnapshotRepository(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Maps the persisted snapshot in the background. A snapshot that fails its checks is deleted.
+     */
+    void loadAsync() {
+        mExecutor.execute(() -> {
+            if (mSnapshot != null || !mFile.exists()) {
+                return;
+            }
+            try {
+                long start = System.nanoTime();
+                mSnapshot = VenueSnapshot.map(mFile);
+                Log.d(TAG, "Mapped snapshot of " + mSnapshot.size() + " locations in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not use the venue snapshot, it will be rewritten", e);
+                mFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Builds a snapshot of the given locations in the background, and replaces the persisted one if it differs.
+     * @param locations all locations of the solution
+     * @param listener told whether the locations changed
+     */
+    void refreshAsync(@NonNull List<MPLocation> locations, @NonNull RefreshListener listener) {
+        //Copy the list, the SDK may change it while we are building
+        final List<MPLocation> copy = new ArrayList<>(locations);
+        mExecutor.execute(() -> {
+            long start = System.nanoTime();
+            VenueSnapshot.Builder builder = new VenueSnapshot.Builder();
+            for (MPLocation location : copy) {
+                builder.add(location.getId(), location.getName(), location.getType(), location.getFloor(),
+                        location.getFloorName(), location.getPoint().getLat(), location.getPoint().getLng());
+            }
+            byte[] bytes = builder.toByteArray(System.currentTimeMillis());
+            VenueSnapshot snapshot;
+            try {
+                snapshot = VenueSnapshot.wrap(ByteBuffer.wrap(bytes));
+            } catch (IOException e) {
+                //Can not happen with bytes we just wrote
+                throw new IllegalStateException(e);
+            }
+
+            VenueSnapshot previous = mSnapshot;
+            if (previous != null && previous.getCrc() == snapshot.getCrc()) {
+                Log.d(TAG, "Locations unchanged since " + previous.getWrittenAt() + ", snapshot kept");
+                listener.onSnapshotRefreshed(false);
+                return;
+            }
+
+            //Write to a temporary file first, so a crash never leaves a half written snapshot behind
+            File tmpFile = new File(mFile.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                out.write(bytes);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not persist the venue snapshot", e);
+                tmpFile.delete();
+            }
+            if (!tmpFile.exists() || !tmpFile.renameTo(mFile)) {
+                //The snapshot in memory always matches the one on disk
+                tmpFile.delete();
+                listener.onSnapshotRefreshed(true);
+                return;
+            }
+            mSnapshot = snapshot;
+            Log.d(TAG, "Wrote snapshot of " + snapshot.size() + " locations, " + bytes.length / 1024 + " KiB, in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            listener.onSnapshotRefreshed(true);
+        });
+    }
+
+    /**
+     * Builds a location from the snapshot, for when the SDK has not loaded its locations yet.
+     * @return the location, or null if there is no snapshot or it does not hold the location
+     */
+    @Nullable
+    MPLocation getLocation(@NonNull String id) {
+        VenueSnapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            return null;
+        }
+        int index = snapshot.indexOf(id);
+        if (index < 0) {
+            return null;
+        }
+        return new MPLocation.Builder(id)
+                .setPosition(snapshot.lat(index), snapshot.lng(index))
+                .setFloor(snapshot.floor(index))
+                .setName(snapshot.name(index))
+                .setType(snapshot.type(index))
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FloorCache}.
+ */
+public class FloorCacheTest {
+
+    private final List<Integer> mEvicted = new ArrayList<>();
+    private final FloorCache mCache = new FloorCache(3, mEvicted::add);
+
+    @Test
+    public void floorViewedLeastRecentlyIsEvicted() {
+        mCache.add(0);
+        mCache.add(1);
+        mCache.add(2);
+        //Viewing the ground floor makes the first floor the one viewed least recently
+        assertTrue(mCache.view(0));
+        mCache.add(3);
+        assertEquals(Arrays.asList(1), mEvicted);
+        assertFalse(mCache.contains(1));
+        assertFalse(mCache.view(1));
+        assertTrue(mCache.contains(0));
+        assertEquals(3, mCache.size());
+    }
+
+    @Test
+    public void containsDoesNotCountAsViewed() {
+        mCache.add(0);
+        mCache.add(1);
+        mCache.add(2);
+        assertTrue(mCache.contains(0));
+        mCache.add(3);
+        assertEquals(Arrays.asList(0), mEvicted);
+    }
+
+    @Test
+    public void trimmingKeepsTheFloorsViewedLast() {
+        mCache.add(0);
+        mCache.add(1);
+        mCache.add(2);
+        mCache.view(1);
+        mCache.trimTo(1);
+        assertEquals(Arrays.asList(0, 2), mEvicted);
+        assertTrue(mCache.contains(1));
+        mCache.trimTo(0);
+        assertEquals(0, mCache.size());
+    }
+
+    @Test
+    public void addingAWarmFloorAgainKeepsIt() {
+        mCache.add(0);
+        mCache.add(0);
+        assertEquals(new ArrayList<Integer>(), mEvicted);
+        assertEquals(1, mCache.size());
+    }
+
+    @Test
+    public void switchesAreCounted() {
+        mCache.recordSwitch(true);
+        mCache.recordSwitch(true);
+        mCache.recordSwitch(false);
+        assertEquals(2, mCache.getWarmSwitches());
+        assertEquals(1, mCache.getColdSwitches());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueOnce() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(micros > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        //1 to 10000 microseconds, once each
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(5000, histogram.percentileMicros(50), 5000 * 0.125);
+        assertEquals(9900, histogram.percentileMicros(99), 9900 * 0.125);
+        assertEquals(10_000, histogram.percentileMicros(100));
+        assertEquals(10_000, histogram.maxMicros());
+        assertEquals(5000, histogram.meanMicros());
+    }
+
+    @Test
+    public void record_isSafeFromManyThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                Random random = new Random();
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(random.nextInt(1_000_000_000));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.count());
+        assertTrue(histogram.percentileMicros(50) > 0);
+    }
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileMicros(99));
+        assertEquals(0, histogram.meanMicros());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LiveUpdateProcessor}.
+ */
+public class LiveUpdateProcessorTest {
+
+    private static final String OCCUPANCY = "occupancy";
+    private static final String AVAILABILITY = "availability";
+
+    private final LiveUpdateProcessor<String> mProcessor = new LiveUpdateProcessor<>();
+
+    @Test
+    public void onlyTheFirstUpdateOfABatchSchedulesAFrame() {
+        assertTrue(mProcessor.submit(OCCUPANCY, "a", "a1"));
+        assertFalse(mProcessor.submit(OCCUPANCY, "b", "b1"));
+        assertFalse(mProcessor.submit(OCCUPANCY, "a", "a2"));
+        assertEquals(2, mProcessor.drain(item -> true).size());
+        //The batch has been drained, so the next update needs a frame again
+        assertTrue(mProcessor.submit(OCCUPANCY, "a", "a3"));
+        assertEquals(1, mProcessor.drain(item -> true).size());
+        assertEquals(Collections.emptyList(), mProcessor.drain(item -> true));
+    }
+
+    @Test
+    public void repeatedUpdatesAreCoalescedInArrivalOrder() {
+        mProcessor.submit(OCCUPANCY, "a", "a1");
+        mProcessor.submit(OCCUPANCY, "b", "b1");
+        mProcessor.submit(OCCUPANCY, "a", "a2");
+        //The same id in another domain is another update
+        mProcessor.submit(AVAILABILITY, "a", "a-free");
+        assertEquals(Arrays.asList("a2", "b1", "a-free"), mProcessor.drain(item -> true));
+
+        long[] occupancy = mProcessor.getStats().get(OCCUPANCY);
+        assertEquals(3, occupancy[0]);
+        assertEquals(1, occupancy[1]);
+        assertEquals(0, occupancy[2]);
+        assertEquals(2, occupancy[3]);
+        assertEquals(1, mProcessor.getStats().get(AVAILABILITY)[3]);
+    }
+
+    @Test
+    public void invisibleUpdatesAreDropped() {
+        mProcessor.submit(OCCUPANCY, "a", "a1");
+        mProcessor.submit(OCCUPANCY, "b", "b1");
+        assertEquals(Collections.singletonList("b1"), mProcessor.drain(item -> item.startsWith("b")));
+        long[] stats = mProcessor.getStats().get(OCCUPANCY);
+        assertEquals(1, stats[2]);
+        assertEquals(1, stats[3]);
+    }
+
+    @Test
+    public void updatesFromManyThreadsAreAllCounted() throws InterruptedException {
+        int threads = 4;
+        int updates = 10_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < updates; i++) {
+                    mProcessor.submit(OCCUPANCY, "id" + (i % 100), "update" + i);
+                }
+                done.countDown();
+            }).start();
+        }
+        int delivered = 0;
+        while (done.getCount() > 0) {
+            delivered += mProcessor.drain(item -> true).size();
+        }
+        done.await();
+        List<String> last = mProcessor.drain(item -> true);
+        delivered += last.size();
+
+        long[] stats = mProcessor.getStats().get(OCCUPANCY);
+        assertEquals(threads * updates, stats[0]);
+        assertEquals(delivered, stats[3]);
+        //Every update is either delivered or replaced by a later one
+        assertEquals(stats[0], stats[1] + stats[3]);
+    }
+}
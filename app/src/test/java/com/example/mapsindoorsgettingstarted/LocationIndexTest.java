@@ -0,0 +1,115 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link LocationIndex}. Build time and query latency are measured by the benchmark module.
+ */
+public class LocationIndexTest {
+
+    private static LocationIndex smallIndex() {
+        return new LocationIndex.Builder()
+                .add("1", "Oval Office", Collections.singletonList("President's office"), "Office", "1")
+                .add("2", "Restroom East", Arrays.asList("WC", "Toilet"), "Toilet", "1")
+                .add("3", "Restroom West", null, "Toilet", "2")
+                .add("4", "Elevator A", null, "Elevator", "0")
+                .add("5", "Caf\u00e9 R\u00e9sistance", null, "Kitchen", "0")
+                .build();
+    }
+
+    @Test
+    public void exactMatch_ranksNameBeforeAlias() {
+        List<String> result = smallIndex().search("office", 10);
+        assertEquals(Collections.singletonList("1"), result);
+
+        result = smallIndex().search("toilet", 10);
+        //"Toilet" is an alias of 2 and only the type of 3
+        assertEquals(Arrays.asList("2", "3"), result);
+    }
+
+    @Test
+    public void prefixMatch() {
+        assertEquals(Arrays.asList("2", "3"), smallIndex().search("rest", 10));
+        assertEquals(Collections.singletonList("4"), smallIndex().search("elev", 10));
+    }
+
+    @Test
+    public void everyTokenMustMatch() {
+        assertEquals(Collections.singletonList("3"), smallIndex().search("restroom west", 10));
+        assertTrue(smallIndex().search("restroom oval", 10).isEmpty());
+    }
+
+    @Test
+    public void fuzzyMatch_forgivesTypos() {
+        assertEquals(Arrays.asList("2", "3"), smallIndex().search("resrtoom", 10));
+        assertEquals(Collections.singletonList("4"), smallIndex().search("elavator", 10));
+    }
+
+    @Test
+    public void accentsAreIgnored() {
+        assertEquals(Collections.singletonList("5"), smallIndex().search("cafe resistance", 10));
+    }
+
+    @Test
+    public void limitIsRespected() {
+        assertEquals(1, smallIndex().search("restroom", 1).size());
+        assertTrue(smallIndex().search("restroom", 0).isEmpty());
+        assertTrue(smallIndex().search("  ", 10).isEmpty());
+    }
+
+    @Test
+    public void editDistance() {
+        assertEquals(0, LocationIndex.editDistance("room", "room", 4, 2));
+        assertEquals(1, LocationIndex.editDistance("room", "rooms", 5, 2));
+        assertEquals(2, LocationIndex.editDistance("kitten", "sittin", 6, 2));
+        assertEquals(3, LocationIndex.editDistance("abc", "xyz", 3, 2));
+    }
+
+    @Test
+    public void writeAndRead_roundTrips() throws IOException {
+        LocationIndex index = smallIndex();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+
+        LocationIndex read = LocationIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(index.size(), read.size());
+        assertEquals(index.termCount(), read.termCount());
+        assertEquals(index.search("restroom", 10), read.search("restroom", 10));
+        assertEquals(index.search("elavator", 10), read.search("elavator", 10));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsGarbage() throws IOException {
+        LocationIndex.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void syntheticVenueIsSearchable() throws IOException {
+        VenueFixtures.Venue venue = VenueFixtures.venue(10_000);
+        LocationIndex.Builder builder = new LocationIndex.Builder();
+        for (int i = 0; i < venue.size(); i++) {
+            builder.add(venue.ids[i], venue.names[i], venue.aliases[i], venue.types[i], String.valueOf(venue.floors[i]));
+        }
+        LocationIndex index = builder.build();
+        assertEquals(venue.size(), index.size());
+        for (String query : VenueFixtures.queries()) {
+            assertFalse(query, index.search(query, 30).isEmpty());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        LocationIndex read = LocationIndex.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        for (String query : VenueFixtures.queries()) {
+            assertEquals(query, index.search(query, 30), read.search(query, 30));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MarkerClusterIndex}.
+ */
+public class MarkerClusterIndexTest {
+
+    private static final int RADIUS_PX = 60;
+    private static final int MAX_ZOOM = 21;
+
+    @Test
+    public void clusters_keepAllPointsAtEveryZoom() {
+        MarkerClusterIndex index = randomIndex(2000, new Random(1));
+        for (int zoom = MarkerClusterIndex.MIN_ZOOM; zoom <= MAX_ZOOM + 1; zoom++) {
+            int[] total = {0};
+            index.query(zoom, -90, -180, 90, 180, (lat, lng, count, point) -> total[0] += count);
+            assertEquals("zoom " + zoom, 2000, total[0]);
+        }
+    }
+
+    @Test
+    public void clusters_shrinkWhenZoomingOut() {
+        MarkerClusterIndex index = randomIndex(2000, new Random(2));
+        assertEquals(2000, index.clusterCount(MAX_ZOOM + 1));
+        for (int zoom = MAX_ZOOM; zoom >= MarkerClusterIndex.MIN_ZOOM; zoom--) {
+            assertTrue(index.clusterCount(zoom) <= index.clusterCount(zoom + 1));
+        }
+        //A single building fits in one cluster when looking at the whole world
+        assertEquals(1, index.clusterCount(MarkerClusterIndex.MIN_ZOOM));
+    }
+
+    @Test
+    public void singlePoint_reportsItsIndex() {
+        double[] lats = {38.8974, 38.8974, 10.0};
+        double[] lngs = {-77.0374, -77.0374, 10.0};
+        MarkerClusterIndex index = new MarkerClusterIndex(lats, lngs, RADIUS_PX, MAX_ZOOM);
+
+        List<int[]> found = new ArrayList<>();
+        index.query(5, -90, -180, 90, 180, (lat, lng, count, point) -> found.add(new int[]{count, point}));
+        assertEquals(2, found.size());
+        for (int[] cluster : found) {
+            if (cluster[0] == 1) {
+                assertEquals(2, cluster[1]);
+            } else {
+                assertEquals(2, cluster[0]);
+                assertEquals(-1, cluster[1]);
+            }
+        }
+    }
+
+    @Test
+    public void query_onlyReturnsClustersInsideBounds() {
+        double[] lats = {38.8974, 38.9100};
+        double[] lngs = {-77.0374, -77.0100};
+        MarkerClusterIndex index = new MarkerClusterIndex(lats, lngs, RADIUS_PX, MAX_ZOOM);
+
+        List<double[]> found = new ArrayList<>();
+        index.query(MAX_ZOOM + 1, 38.89, -77.04, 38.90, -77.03, (lat, lng, count, point) -> found.add(new double[]{lat, lng}));
+        assertEquals(1, found.size());
+        assertEquals(38.8974, found.get(0)[0], 1e-9);
+        assertEquals(-77.0374, found.get(0)[1], 1e-9);
+    }
+
+    @Test
+    public void radius_isScaledByDensity() {
+        //Two points 20 meters apart are about 86 dp apart at zoom 19
+        double[] lats = {38.8974, 38.8974};
+        double[] lngs = {-77.0374, -77.0374 + 20 / GeoMath.metersPerDegreeLng(38.8974)};
+        //On a density 1 display 120 px is 120 dp, on a density 3 display it is 40 dp
+        assertEquals(1, new MarkerClusterIndex(lats, lngs, 120, MAX_ZOOM).clusterCount(19));
+        assertEquals(2, new MarkerClusterIndex(lats, lngs, 120, MAX_ZOOM, 3).clusterCount(19));
+    }
+
+    /**
+     * @return an index of points spread over a venue sized area
+     */
+    private static MarkerClusterIndex randomIndex(int pointCount, Random random) {
+        double[] lats = new double[pointCount];
+        double[] lngs = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            lats[i] = 38.89 + random.nextDouble() * 0.01;
+            lngs[i] = -77.04 + random.nextDouble() * 0.01;
+        }
+        return new MarkerClusterIndex(lats, lngs, RADIUS_PX, MAX_ZOOM);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mapsindoorsgettingstarted;
+
+import com.google.gson.Gson;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.Route;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ModelStore}. The store is shared by the whole process, so every test makes its own keys.
+ */
+public class ModelStoreTest {
+
+    @Test
+    public void modelsAreFoundByTheirKey() {
+        List<MPLocation> locations = new ArrayList<>();
+        String key = ModelStore.putLocations(locations);
+        assertNotEquals(key, ModelStore.putLocations(new ArrayList<>()));
+        assertSame(locations, ModelStore.getLocations(key));
+        assertNull(ModelStore.getLocations("unknown"));
+
+        Route route = new Gson().fromJson("{}", Route.class);
+        String routeKey = ModelStore.putRoute(route);
+        assertSame(route, ModelStore.getRoute(routeKey));
+    }
+
+    @Test
+    public void replacingLocationsKeepsOneEntry() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(ModelStore.putLocations(new ArrayList<>()));
+        }
+        //Saving the state of a fragment many times does not push the other lists out
+        List<MPLocation> latest = null;
+        for (int i = 0; i < 10; i++) {
+            latest = new ArrayList<>();
+            ModelStore.replaceLocations(keys.get(0), latest);
+        }
+        assertSame(latest, ModelStore.getLocations(keys.get(0)));
+        assertNotNull(ModelStore.getLocations(keys.get(1)));
+        assertNotNull(ModelStore.getLocations(keys.get(2)));
+    }
+
+    @Test
+    public void leastRecentlyUsedListsAreEvicted() {
+        String first = ModelStore.putLocations(new ArrayList<>());
+        for (int i = 0; i < 4; i++) {
+            ModelStore.putLocations(new ArrayList<>());
+        }
+        assertNull(ModelStore.getLocations(first));
+    }
+}
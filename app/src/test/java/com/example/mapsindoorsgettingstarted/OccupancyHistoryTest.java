@@ -0,0 +1,143 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OccupancyHistory}.
+ */
+public class OccupancyHistoryTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    //Monday 2024-01-01 00:00 UTC
+    private static final long MONDAY = 1704067200000L;
+
+    private final OccupancyHistory mHistory = new OccupancyHistory(8, TimeZone.getTimeZone("UTC"));
+
+    @Test
+    public void latestStateOfBothDomainsIsKept() {
+        mHistory.recordAvailability("a", MONDAY, true);
+        assertEquals(OccupancyHistory.FREE, mHistory.stateAt("a", MONDAY + MINUTE));
+        mHistory.recordOccupancy("a", MONDAY + 2 * MINUTE, 3);
+        assertEquals(OccupancyHistory.BUSY, mHistory.stateAt("a", MONDAY + 3 * MINUTE));
+        mHistory.recordOccupancy("a", MONDAY + 4 * MINUTE, 0);
+        assertEquals(OccupancyHistory.FREE, mHistory.stateAt("a", MONDAY + 5 * MINUTE));
+        //Occupancy does not overwrite the availability
+        mHistory.recordAvailability("a", MONDAY + 6 * MINUTE, false);
+        mHistory.recordOccupancy("a", MONDAY + 7 * MINUTE, 0);
+        assertEquals(OccupancyHistory.BUSY, mHistory.stateAt("a", MONDAY + 8 * MINUTE));
+
+        assertEquals(OccupancyHistory.UNKNOWN, mHistory.stateAt("a", MONDAY + 7 * MINUTE + OccupancyHistory.STATE_VALID_MS + 1));
+        assertEquals(OccupancyHistory.UNKNOWN, mHistory.stateAt("b", MONDAY));
+    }
+
+    @Test
+    public void ringKeepsTheLatestSamples() {
+        for (int i = 0; i < 40; i++) {
+            mHistory.recordOccupancy("a", MONDAY + i * MINUTE, i);
+        }
+        List<Long> samples = mHistory.samples("a");
+        assertEquals(OccupancyHistory.RING_SIZE, samples.size());
+        assertEquals(40 - OccupancyHistory.RING_SIZE, OccupancyHistory.people(samples.get(0)));
+        assertEquals(MONDAY + 39 * MINUTE, OccupancyHistory.time(samples.get(samples.size() - 1)));
+    }
+
+    @Test
+    public void hoursAreDownsampledIntoAWeeklyProfile() {
+        //For two weeks the room is busy from 9 to 10 and free the rest of the day, updates come every 5 minutes
+        for (long time = MONDAY; time < MONDAY + 14 * DAY; time += 5 * MINUTE) {
+            long hourOfDay = (time % DAY) / HOUR;
+            mHistory.recordOccupancy("a", time, hourOfDay == 9 ? 4 : 0);
+        }
+        long nextMonday = MONDAY + 14 * DAY;
+        assertEquals(0, mHistory.usuallyFree("a", nextMonday + 9 * HOUR + 30 * MINUTE), 0.05);
+        assertEquals(1, mHistory.usuallyFree("a", nextMonday + 11 * HOUR), 0.05);
+        //The sample at 8:55 holds until the room turns busy at 9:00, so the hour before is all free
+        assertEquals(1, mHistory.usuallyFree("a", nextMonday + 8 * HOUR), 0.1);
+    }
+
+    @Test
+    public void recentSamplesStandInForAMissingProfile() {
+        mHistory.recordAvailability("a", MONDAY, true);
+        mHistory.recordAvailability("a", MONDAY + 30 * MINUTE, false);
+        //Free for 30 minutes, then busy for 10
+        assertEquals(0.75, mHistory.usuallyFree("a", MONDAY + 40 * MINUTE), 0.01);
+        assertEquals(-1, mHistory.usuallyFree("b", MONDAY), 0);
+    }
+
+    @Test
+    public void freeLocationsRankFirstAndTiesKeepTheirOrder() {
+        List<String> results = Arrays.asList("busy", "unknown1", "free", "unknown2");
+        assertSame(results, mHistory.rank(results, id -> id, MONDAY));
+
+        mHistory.recordOccupancy("busy", MONDAY, 2);
+        mHistory.recordAvailability("free", MONDAY, true);
+        assertEquals(Arrays.asList("free", "unknown1", "unknown2", "busy"), mHistory.rank(results, id -> id, MONDAY + MINUTE));
+    }
+
+    @Test
+    public void locationUpdatedLongestAgoIsEvicted() {
+        for (int i = 0; i < 8; i++) {
+            mHistory.recordAvailability("loc" + i, MONDAY + i * MINUTE, true);
+        }
+        mHistory.recordAvailability("loc1", MONDAY + 10 * MINUTE, false);
+        mHistory.recordAvailability("new", MONDAY + 11 * MINUTE, true);
+        assertEquals(OccupancyHistory.UNKNOWN, mHistory.stateAt("loc0", MONDAY + 12 * MINUTE));
+        assertEquals(OccupancyHistory.BUSY, mHistory.stateAt("loc1", MONDAY + 12 * MINUTE));
+        assertEquals(OccupancyHistory.FREE, mHistory.stateAt("new", MONDAY + 12 * MINUTE));
+        //The slot starts over, nothing of the evicted location is left in it
+        assertEquals(1, mHistory.samples("new").size());
+    }
+
+    @Test
+    public void historyReadBackIsTheSame() throws IOException {
+        for (long time = MONDAY; time < MONDAY + 2 * DAY; time += 5 * MINUTE) {
+            mHistory.recordOccupancy("a", time, (time % DAY) / HOUR == 9 ? 4 : 0);
+        }
+        mHistory.recordAvailability("b", MONDAY, true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        mHistory.writeTo(bytes);
+
+        OccupancyHistory read = new OccupancyHistory(8, TimeZone.getTimeZone("UTC"));
+        read.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(mHistory.samples("a"), read.samples("a"));
+        assertEquals(mHistory.samples("b"), read.samples("b"));
+        long nextMonday = MONDAY + 7 * DAY;
+        assertEquals(mHistory.usuallyFree("a", nextMonday + 9 * HOUR), read.usuallyFree("a", nextMonday + 9 * HOUR), 0);
+        assertEquals(mHistory.usuallyFree("a", nextMonday + 11 * HOUR), read.usuallyFree("a", nextMonday + 11 * HOUR), 0);
+        //Recording goes on where it left off
+        mHistory.recordOccupancy("a", MONDAY + 2 * DAY, 1);
+        read.recordOccupancy("a", MONDAY + 2 * DAY, 1);
+        assertEquals(mHistory.samples("a"), read.samples("a"));
+    }
+
+    @Test
+    public void locationsRecordedBeforeReadingKeepTheirHistory() throws IOException {
+        mHistory.recordAvailability("a", MONDAY, true);
+        mHistory.recordAvailability("b", MONDAY, true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        mHistory.writeTo(bytes);
+
+        OccupancyHistory read = new OccupancyHistory(8, TimeZone.getTimeZone("UTC"));
+        read.recordAvailability("a", MONDAY + HOUR, false);
+        read.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(OccupancyHistory.BUSY, read.stateAt("a", MONDAY + HOUR));
+        assertEquals(1, read.samples("a").size());
+        assertEquals(OccupancyHistory.FREE, read.stateAt("b", MONDAY + MINUTE));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherDataIsNotRead() throws IOException {
+        mHistory.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PolylineSimplifier}.
+ */
+public class PolylineSimplifierTest {
+
+    private static final double LAT = 38.8974;
+    private static final double LNG = -77.0374;
+    private static final double METER = 1 / GeoMath.METERS_PER_DEGREE;
+    private static final double METER_LNG = 1 / GeoMath.metersPerDegreeLng(LAT);
+
+    private double[] mLats;
+    private double[] mLngs;
+    private int[] mFloors;
+
+    /**
+     * A walk along corridors with a vertex every half meter, jittered by a few centimeters, which
+     * turns every 20 meters and changes floor every 500 vertices.
+     */
+    private void walk(int vertexCount) {
+        Random random = new Random(42);
+        mLats = new double[vertexCount];
+        mLngs = new double[vertexCount];
+        mFloors = new int[vertexCount];
+        double x = 0;
+        double y = 0;
+        int direction = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            if (i % 40 == 0) {
+                direction = (direction + (random.nextBoolean() ? 1 : 3)) % 4;
+            }
+            x += direction == 0 ? 0.5 : direction == 2 ? -0.5 : 0;
+            y += direction == 1 ? 0.5 : direction == 3 ? -0.5 : 0;
+            mLats[i] = LAT + (y + random.nextGaussian() * 0.05) * METER;
+            mLngs[i] = LNG + (x + random.nextGaussian() * 0.05) * METER_LNG;
+            mFloors[i] = i / 500;
+        }
+    }
+
+    /**
+     * @return the largest distance in meters from a vertex to the part of the simplified polyline that replaced it
+     */
+    private double maxError(int[] kept) {
+        double maxError = 0;
+        for (int k = 0; k + 1 < kept.length; k++) {
+            for (int i = kept[k]; i <= kept[k + 1]; i++) {
+                maxError = Math.max(maxError, GeoMath.distanceToSegment(mLats[i], mLngs[i],
+                        mLats[kept[k]], mLngs[kept[k]], mLats[kept[k + 1]], mLngs[kept[k + 1]]));
+            }
+        }
+        return maxError;
+    }
+
+    @Test
+    public void errorStaysWithinTheToleranceOfEachBand() {
+        walk(5000);
+        int previousCount = 0;
+        for (int band = 0; band < PolylineSimplifier.bandCount(); band++) {
+            double tolerance = PolylineSimplifier.tolerance(band, LAT);
+            int[] kept = PolylineSimplifier.simplify(mLats, mLngs, mFloors, 0, mLats.length, tolerance);
+            //A millimeter of slack for the projection used by the simplifier
+            assertTrue("Band " + band + " is off by " + maxError(kept) + " m", maxError(kept) <= tolerance + 0.001);
+            assertTrue(kept.length > previousCount);
+            previousCount = kept.length;
+        }
+        assertEquals(mLats.length, previousCount);
+        //The least detailed band drops most of a jittered walk
+        int[] coarse = PolylineSimplifier.simplify(mLats, mLngs, mFloors, 0, mLats.length, PolylineSimplifier.tolerance(0, LAT));
+        assertTrue(coarse.length + " vertices kept", coarse.length < mLats.length / 10);
+    }
+
+    @Test
+    public void endsAndFloorChangesAreKept() {
+        walk(1200);
+        int[] kept = PolylineSimplifier.simplify(mLats, mLngs, mFloors, 100, 1100, 100);
+        assertEquals(100, kept[0]);
+        assertEquals(1099, kept[kept.length - 1]);
+        for (int k = 0; k + 1 < kept.length; k++) {
+            assertTrue(kept[k] < kept[k + 1]);
+        }
+        assertArrayEquals(new int[]{100, 499, 500, 999, 1000, 1099}, kept);
+    }
+
+    @Test
+    public void straightLineKeepsItsEnds() {
+        mLats = new double[100];
+        mLngs = new double[100];
+        mFloors = new int[100];
+        for (int i = 0; i < 100; i++) {
+            mLats[i] = LAT + i * METER;
+            mLngs[i] = LNG;
+        }
+        assertArrayEquals(new int[]{0, 99}, PolylineSimplifier.simplify(mLats, mLngs, mFloors, 0, 100, 0.01));
+        //No tolerance keeps everything
+        assertEquals(100, PolylineSimplifier.simplify(mLats, mLngs, mFloors, 0, 100, 0).length);
+    }
+
+    @Test
+    public void bandsFollowTheZoom() {
+        assertEquals(0, PolylineSimplifier.band(12));
+        assertEquals(1, PolylineSimplifier.band(15));
+        assertEquals(2, PolylineSimplifier.band(18.5f));
+        assertEquals(PolylineSimplifier.bandCount() - 1, PolylineSimplifier.band(21));
+        //About a meter at zoom 17, halving with each zoom level
+        assertEquals(0.93, PolylineSimplifier.tolerance(1, LAT), 0.01);
+        assertEquals(PolylineSimplifier.tolerance(0, LAT) / 4, PolylineSimplifier.tolerance(1, LAT), 1e-9);
+        assertEquals(0, PolylineSimplifier.tolerance(PolylineSimplifier.bandCount() - 1, LAT), 0);
+    }
+}
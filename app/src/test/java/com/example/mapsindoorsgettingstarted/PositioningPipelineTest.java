@@ -0,0 +1,107 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link PositioningPipeline}.
+ */
+public class PositioningPipelineTest {
+
+    private static final double LAT = 38.8974;
+    private static final double LNG = -77.0374;
+    //Roughly one meter in degrees
+    private static final double METER = 1 / GeoMath.METERS_PER_DEGREE;
+
+    private final List<double[]> mPositions = new ArrayList<>();
+    private int mOffRouteCount;
+    private PositioningPipeline mPipeline;
+
+    @Before
+    public void setUp() {
+        mPipeline = new PositioningPipeline(new PositioningPipeline.Listener() {
+            @Override
+            public void onPositionChanged(double lat, double lng, int floor, double accuracy) {
+                mPositions.add(new double[]{lat, lng, floor});
+            }
+
+            @Override
+            public void onOffRoute(double lat, double lng, int floor) {
+                mOffRouteCount++;
+            }
+        });
+    }
+
+    @Test
+    public void noisyFixes_areSmoothed() {
+        Random random = new Random(1);
+        double worstRaw = 0;
+        for (int i = 0; i < 100; i++) {
+            double noise = random.nextGaussian() * 5 * METER;
+            worstRaw = Math.max(worstRaw, Math.abs(noise));
+            mPipeline.onRawFix(LAT + noise, LNG, 0, 5, i * 1000L);
+        }
+        double[] last = mPositions.get(mPositions.size() - 1);
+        double error = GeoMath.distance(LAT, LNG, last[0], last[1]);
+        assertTrue("Smoothed error " + error + " m", error < 2.5);
+        assertTrue(error < worstRaw * GeoMath.METERS_PER_DEGREE);
+    }
+
+    @Test
+    public void updates_areRateLimited() {
+        //A fix every 10 ms for one second, while walking slowly
+        for (int i = 0; i < 100; i++) {
+            mPipeline.onRawFix(LAT + i * 0.01 * METER, LNG, 0, 1, i * 10L);
+        }
+        int maxUpdates = (int) (1000 / PositioningPipeline.MIN_UPDATE_INTERVAL_MS) + 1;
+        assertTrue("Got " + mPositions.size() + " updates", mPositions.size() <= maxUpdates);
+    }
+
+    @Test
+    public void floorChange_isPassedOnRightAway() {
+        mPipeline.onRawFix(LAT, LNG, 0, 3, 0);
+        mPipeline.onRawFix(LAT, LNG, 1, 3, 10);
+        assertEquals(2, mPositions.size());
+        assertEquals(1, mPositions.get(1)[2], 0);
+    }
+
+    @Test
+    public void offRoute_needsConfirmationAndRespectsCooldown() {
+        //A straight route of 100 meters north on floor 0
+        RouteGeometry route = new RouteGeometry(
+                new double[]{LAT, LAT + 100 * METER},
+                new double[]{LNG, LNG},
+                new int[]{0, 0},
+                new int[]{0, 2});
+        mPipeline.setRoute(route);
+
+        //On the route
+        for (int i = 0; i < 10; i++) {
+            mPipeline.onRawFix(LAT + i * METER, LNG, 0, 1, i * 1000L);
+        }
+        assertEquals(0, mOffRouteCount);
+
+        //Take the stairs to a floor the route never visits, and walk 30 meters east
+        double offLng = LNG + 30 * METER / Math.cos(Math.toRadians(LAT));
+        long time = 10_000;
+        for (int i = 0; i < 10; i++) {
+            mPipeline.onRawFix(LAT, offLng, 1, 1, time);
+            time += 100;
+        }
+        //The first fixes only count as confirmations, after that it is reported once within the cooldown
+        assertEquals(1, mOffRouteCount);
+
+        time += PositioningPipeline.REROUTE_COOLDOWN_MS;
+        for (int i = 0; i < PositioningPipeline.OFF_ROUTE_CONFIRMATIONS; i++) {
+            mPipeline.onRawFix(LAT, offLng, 1, 1, time);
+            time += 100;
+        }
+        assertEquals(2, mOffRouteCount);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link QueryResultCache}, on a clock the tests move.
+ */
+public class QueryResultCacheTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private long mNow = 1000;
+    private final QueryResultCache<String, String> mCache = new QueryResultCache<String, String>(3, 10, TimeUnit.MINUTES) {
+        @Override
+        long now() {
+            return mNow;
+        }
+    };
+
+    @Test
+    public void entriesExpireAfterTheMaximumAge() {
+        mCache.put("a", "1");
+        mNow += 10 * MINUTE;
+        assertTrue(mCache.contains("a"));
+        assertEquals("1", mCache.get("a"));
+        mNow += 1;
+        assertFalse(mCache.contains("a"));
+        assertNull(mCache.get("a"));
+        assertEquals(0, mCache.size());
+        assertEquals(1, mCache.getEvictionCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        mCache.put("a", "1");
+        mCache.put("b", "2");
+        mCache.put("c", "3");
+        //Reading a makes b the least recently used entry
+        mCache.get("a");
+        mCache.put("d", "4");
+        assertEquals(3, mCache.size());
+        assertFalse(mCache.contains("b"));
+        assertTrue(mCache.contains("a"));
+        assertTrue(mCache.contains("d"));
+        assertEquals(1, mCache.getEvictionCount());
+    }
+
+    @Test
+    public void expiredEntriesAreDroppedWhenPutting() {
+        mCache.put("a", "1");
+        mNow += 6 * MINUTE;
+        mCache.put("b", "2");
+        mNow += 5 * MINUTE;
+        mCache.put("c", "3");
+        assertEquals(2, mCache.size());
+        assertFalse(mCache.contains("a"));
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        mCache.put("a", "1");
+        mCache.get("a");
+        mCache.get("b");
+        //contains is not a lookup by the user of the cache
+        mCache.contains("a");
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(1, mCache.getMissCount());
+        mCache.invalidate();
+        assertNull(mCache.get("a"));
+        assertEquals(2, mCache.getMissCount());
+    }
+}
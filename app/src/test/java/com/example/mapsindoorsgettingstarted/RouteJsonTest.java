@@ -0,0 +1,81 @@
+package com.example.mapsindoorsgettingstarted;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteCoordinate;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RouteJson}.
+ */
+public class RouteJsonTest {
+
+    @Test
+    public void route_sumsTheDistanceAndDurationOfItsLegs() {
+        JsonArray legs = new JsonArray();
+        for (int l = 0; l < 3; l++) {
+            JsonArray geometry = new JsonArray();
+            geometry.add(RouteJson.coordinate(38.8975, -77.0374, l));
+            JsonArray steps = new JsonArray();
+            steps.add(RouteJson.step(geometry, null, 10 + l, 20 + l));
+            legs.add(RouteJson.leg(steps, 10 + l, 20 + l));
+        }
+        JsonObject route = RouteJson.route(legs);
+        assertEquals(33, route.get("distance").getAsDouble(), 0);
+        assertEquals(63, route.get("duration").getAsDouble(), 0);
+        assertEquals(3, route.getAsJsonArray("legs").size());
+
+        JsonObject step = route.getAsJsonArray("legs").get(2).getAsJsonObject().getAsJsonArray("steps").get(0).getAsJsonObject();
+        assertFalse(step.has("maneuver"));
+        assertEquals(2, step.getAsJsonArray("geometry").get(0).getAsJsonObject().get("zLevel").getAsInt());
+    }
+
+    @Test
+    public void toRoute_fillsEveryValueTheAppReads() {
+        JsonArray geometry = new JsonArray();
+        geometry.add(RouteJson.coordinate(38.8975, -77.0374, 10));
+        geometry.add(RouteJson.coordinate(38.8976, -77.0375, 20));
+        JsonArray steps = new JsonArray();
+        steps.add(RouteJson.step(geometry, "elevator", 12, 34));
+        JsonArray legs = new JsonArray();
+        legs.add(RouteJson.leg(steps, 12, 34));
+
+        //The names of the fields of the SDK's route models are pinned here
+        Route route = RouteJson.toRoute(RouteJson.route(legs));
+        assertEquals(12, route.getDistance(), 0);
+        assertEquals(34, route.getDuration(), 0);
+        assertEquals(1, route.getLegs().size());
+        RouteLeg leg = route.getLegs().get(0);
+        assertEquals(12, leg.getDistance(), 0);
+        assertEquals(34, leg.getDuration(), 0);
+        assertEquals(1, leg.getSteps().size());
+        RouteStep step = leg.getSteps().get(0);
+        assertEquals("elevator", step.getManeuver());
+        assertEquals(12, step.getDistance(), 0);
+        assertEquals(34, step.getDuration(), 0);
+        assertEquals(2, step.getGeometry().size());
+        RouteCoordinate coordinate = step.getGeometry().get(1);
+        assertEquals(38.8976, coordinate.getLat(), 0);
+        assertEquals(-77.0375, coordinate.getLng(), 0);
+        assertEquals(20, coordinate.getZIndex());
+    }
+
+    @Test
+    public void leg_copiesARouteLeg() {
+        JsonArray geometry = new JsonArray();
+        geometry.add(RouteJson.coordinate(38.8975, -77.0374, 0));
+        JsonArray steps = new JsonArray();
+        steps.add(RouteJson.step(geometry, "straight", 5, 6));
+        JsonArray legs = new JsonArray();
+        legs.add(RouteJson.leg(steps, 5, 6));
+        RouteLeg leg = RouteJson.toRoute(RouteJson.route(legs)).getLegs().get(0);
+
+        assertEquals(RouteJson.leg(steps, 5, 6), RouteJson.leg(leg));
+    }
+}
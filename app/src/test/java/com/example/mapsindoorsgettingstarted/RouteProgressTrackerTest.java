@@ -0,0 +1,149 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RouteProgressTracker} and the segment index of {@link RouteGeometry}.
+ */
+public class RouteProgressTrackerTest {
+
+    private static final double LAT = 38.8974;
+    private static final double LNG = -77.0374;
+    private static final double METER = 1 / GeoMath.METERS_PER_DEGREE;
+    private static final double METER_LNG = 1 / GeoMath.metersPerDegreeLng(LAT);
+
+    private final List<RouteProgress> mProgress = new ArrayList<>();
+    private RouteProgressTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new RouteProgressTracker(mProgress::add);
+    }
+
+    /**
+     * Leg 0 on floor 0 goes 10 meters north (step 0) and 10 meters east (step 1) to an elevator,
+     * leg 1 on floor 1 goes 10 more meters north from there (step 0).
+     */
+    private static RouteGeometry twoLegRoute() {
+        return new RouteGeometry(
+                new double[]{LAT, LAT + 10 * METER, LAT + 10 * METER, LAT + 10 * METER, LAT + 20 * METER},
+                new double[]{LNG, LNG, LNG + 10 * METER_LNG, LNG + 10 * METER_LNG, LNG + 10 * METER_LNG},
+                new int[]{0, 0, 0, 1, 1},
+                new int[]{0, 3, 5},
+                new int[]{0, 1, 3, 5},
+                new double[]{10, 10, 20});
+    }
+
+    @Test
+    public void onlyChangedProgressIsEmitted() {
+        mTracker.setRoute(twoLegRoute());
+        //A position every 10 centimeters along the first 8 meters
+        for (int i = 0; i <= 80; i++) {
+            mTracker.onPosition(LAT + i * 0.1 * METER, LNG, 0);
+        }
+        assertTrue("Got " + mProgress.size() + " updates", mProgress.size() >= 8 && mProgress.size() <= 10);
+        RouteProgress first = mProgress.get(0);
+        assertEquals(0, first.mLeg);
+        assertEquals(0, first.mStep);
+        assertEquals(30, first.mRemainingMeters, 0.1);
+        assertEquals(40, first.mRemainingSeconds, 0.1);
+        assertEquals(10, first.mStepRemainingMeters, 0.1);
+        RouteProgress last = mProgress.get(mProgress.size() - 1);
+        assertEquals(2, last.mStepRemainingMeters, 1.1);
+        assertEquals(32, last.mRemainingSeconds, 1.1);
+    }
+
+    @Test
+    public void stepAndLegAdvance() {
+        mTracker.setRoute(twoLegRoute());
+        mTracker.onPosition(LAT + 5 * METER, LNG, 0);
+        mTracker.onPosition(LAT + 10 * METER, LNG + 3 * METER_LNG, 0);
+        RouteProgress progress = mProgress.get(mProgress.size() - 1);
+        assertEquals(0, progress.mLeg);
+        assertEquals(1, progress.mStep);
+
+        //Standing at the elevator, the next leg is shown before the user changes floor
+        mTracker.onPosition(LAT + 10 * METER, LNG + 8 * METER_LNG, 0);
+        progress = mProgress.get(mProgress.size() - 1);
+        assertEquals(1, progress.mLeg);
+        assertEquals(0, progress.mStep);
+        assertEquals(10, progress.mRemainingMeters, 0.1);
+
+        mTracker.onPosition(LAT + 19 * METER, LNG + 10 * METER_LNG, 1);
+        progress = mProgress.get(mProgress.size() - 1);
+        assertEquals(1, progress.mLeg);
+        assertTrue(progress.mArrived);
+    }
+
+    @Test
+    public void positionsAwayFromTheRouteAreIgnored() {
+        mTracker.setRoute(twoLegRoute());
+        mTracker.onPosition(LAT, LNG + 30 * METER_LNG, 0);
+        //The second leg is on another floor
+        mTracker.onPosition(LAT + 25 * METER, LNG + 10 * METER_LNG, 0);
+        assertTrue(mProgress.isEmpty());
+    }
+
+    @Test
+    public void corridorWalkedTwiceIsMatchedInWalkingOrder() {
+        //20 meters north and back along the same corridor, one meter to the side
+        mTracker.setRoute(new RouteGeometry(
+                new double[]{LAT, LAT + 20 * METER, LAT + 20 * METER, LAT},
+                new double[]{LNG, LNG, LNG + METER_LNG, LNG + METER_LNG},
+                new int[]{0, 0, 0, 0},
+                new int[]{0, 4}));
+        for (int i = 0; i <= 6; i++) {
+            mTracker.onPosition(LAT + i * METER, LNG + 0.6 * METER_LNG, 0);
+        }
+        RouteProgress progress = mProgress.get(mProgress.size() - 1);
+        //Within the change that is not passed on
+        assertEquals(41 - 6, progress.mRemainingMeters, RouteProgressTracker.MIN_CHANGE_M);
+    }
+
+    @Test
+    public void segmentIndexFindsAllNearbySegments() {
+        Random random = new Random(7);
+        int count = 500;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        int[] floors = new int[count];
+        for (int i = 1; i < count; i++) {
+            lats[i] = lats[i - 1] + (random.nextDouble() - 0.5) * 10 * METER;
+            lngs[i] = lngs[i - 1] + (random.nextDouble() - 0.5) * 10 * METER_LNG;
+            floors[i] = random.nextInt(20) == 0 ? floors[i - 1] + 10 : floors[i - 1];
+        }
+        for (int i = 0; i < count; i++) {
+            lats[i] += LAT;
+            lngs[i] += LNG;
+        }
+        RouteGeometry route = new RouteGeometry(lats, lngs, floors, new int[]{0, count / 2, count});
+        double radius = 6;
+        for (int q = 0; q < 200; q++) {
+            int near = random.nextInt(count);
+            double lat = lats[near] + (random.nextDouble() - 0.5) * 20 * METER;
+            double lng = lngs[near] + (random.nextDouble() - 0.5) * 20 * METER_LNG;
+            int floor = floors[near];
+            Set<Integer> found = new HashSet<>();
+            route.visitSegmentsNear(lat, lng, floor, radius, found::add);
+            for (int i = 0; i < count - 1; i++) {
+                if (i == count / 2 - 1 || (floors[i] != floor && floors[i + 1] != floor)) {
+                    continue;
+                }
+                if (GeoMath.distanceToSegment(lat, lng, lats[i], lngs[i], lats[i + 1], lngs[i + 1]) <= radius) {
+                    assertTrue("Segment " + i + " missing", found.contains(i));
+                }
+            }
+            //Segments do not cross legs
+            assertFalse(found.contains(count / 2 - 1));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RoutingGraph}.
+ */
+public class RoutingGraphTest {
+
+    private static final double LAT = 38.8974;
+    private static final double LNG = -77.0374;
+    private static final double METER = 1 / GeoMath.METERS_PER_DEGREE;
+    private static final double METER_LNG = 1 / GeoMath.metersPerDegreeLng(LAT);
+
+    /**
+     * A grid of corridors on every floor, 5 meters apart with a few corridors missing, and a
+     * random set of elevators between neighbouring floors. Some corridors are walking only.
+     */
+    private static RoutingGraph grid(int size, int floors, long seed) {
+        Random random = new Random(seed);
+        RoutingGraph.Builder builder = new RoutingGraph.Builder();
+        int[][][] nodes = new int[floors][size][size];
+        for (int f = 0; f < floors; f++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    nodes[f][y][x] = builder.node(LAT + y * 5 * METER, LNG + x * 5 * METER_LNG, f);
+                }
+            }
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int modes = random.nextInt(4) == 0 ? RoutingGraph.MODE_WALKING : RoutingGraph.ALL_MODES;
+                    if (x + 1 < size && random.nextInt(10) != 0) {
+                        builder.addTwoWayEdge(nodes[f][y][x], nodes[f][y][x + 1], modes);
+                    }
+                    if (y + 1 < size && random.nextInt(10) != 0) {
+                        builder.addTwoWayEdge(nodes[f][y][x], nodes[f][y + 1][x], modes);
+                    }
+                }
+            }
+        }
+        for (int f = 0; f + 1 < floors; f++) {
+            for (int i = 0; i < 3; i++) {
+                int y = random.nextInt(size);
+                int x = random.nextInt(size);
+                builder.addTwoWayEdge(nodes[f][y][x], nodes[f + 1][y][x], RoutingGraph.ALL_MODES);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Plain Dijkstra over all nodes, to check A* against.
+     */
+    private static float dijkstra(RoutingGraph graph, int from, int to, int modes) {
+        float[] cost = new float[graph.nodeCount()];
+        boolean[] settled = new boolean[graph.nodeCount()];
+        Arrays.fill(cost, Float.POSITIVE_INFINITY);
+        cost[from] = 0;
+        while (true) {
+            int node = -1;
+            for (int i = 0; i < cost.length; i++) {
+                if (!settled[i] && cost[i] != Float.POSITIVE_INFINITY && (node < 0 || cost[i] < cost[node])) {
+                    node = i;
+                }
+            }
+            if (node < 0 || node == to) {
+                return node < 0 ? Float.POSITIVE_INFINITY : cost[to];
+            }
+            settled[node] = true;
+            for (int target = 0; target < cost.length; target++) {
+                float edge = graph.cost(node, target, modes);
+                if (!settled[target] && cost[node] + edge < cost[target]) {
+                    cost[target] = cost[node] + edge;
+                }
+            }
+        }
+    }
+
+    private static float pathCost(RoutingGraph graph, int[] path, int modes) {
+        float cost = 0;
+        for (int i = 1; i < path.length; i++) {
+            cost += graph.cost(path[i - 1], path[i], modes);
+        }
+        return cost;
+    }
+
+    @Test
+    public void aStarFindsTheCheapestPath() {
+        RoutingGraph graph = grid(8, 4, 3);
+        RoutingGraph.Search search = graph.newSearch();
+        Random random = new Random(5);
+        for (int q = 0; q < 100; q++) {
+            int from = random.nextInt(graph.nodeCount());
+            int to = random.nextInt(graph.nodeCount());
+            int modes = q % 2 == 0 ? RoutingGraph.MODE_WALKING : RoutingGraph.MODE_DRIVING;
+            float expected = dijkstra(graph, from, to, modes);
+            int[] path = search.find(from, to, modes);
+            if (expected == Float.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(from, path[0]);
+            assertEquals(to, path[path.length - 1]);
+            //Every step of the path is an edge the mode may use
+            assertEquals(expected, pathCost(graph, path, modes), 0.01);
+            assertEquals(expected, search.lastCost(to), 0.01);
+        }
+    }
+
+    @Test
+    public void floorChangesCostExtra() {
+        RoutingGraph.Builder builder = new RoutingGraph.Builder();
+        int a = builder.node(LAT, LNG, 0);
+        int b = builder.node(LAT, LNG, 1);
+        int c = builder.node(LAT + 10 * METER, LNG, 1);
+        builder.addTwoWayEdge(a, b, RoutingGraph.MODE_WALKING).addTwoWayEdge(b, c, RoutingGraph.MODE_WALKING);
+        RoutingGraph graph = builder.build();
+        assertEquals(3, graph.nodeCount());
+        RoutingGraph.Search search = graph.newSearch();
+        assertArrayEquals(new int[]{a, b, c}, search.find(a, c, RoutingGraph.MODE_WALKING));
+        assertEquals(10 + RoutingGraph.Builder.FLOOR_CHANGE_COST_M, search.lastCost(c), 0.01);
+        //No edge for driving
+        assertNull(search.find(a, c, RoutingGraph.MODE_DRIVING));
+    }
+
+    @Test
+    public void nearbyPointsAreMergedAndEdgesKeepAllModes() {
+        RoutingGraph.Builder builder = new RoutingGraph.Builder();
+        int a = builder.node(LAT, LNG, 0);
+        int b = builder.node(LAT + 20 * METER, LNG, 0);
+        assertEquals(a, builder.node(LAT + 0.5 * METER, LNG + 0.5 * METER_LNG, 0));
+        assertNotEquals(a, builder.node(LAT, LNG, 1));
+        builder.addEdge(a, b, RoutingGraph.MODE_WALKING);
+        builder.addEdge(builder.node(LAT, LNG + 0.2 * METER_LNG, 0), b, RoutingGraph.MODE_BICYCLING);
+        RoutingGraph graph = builder.build();
+        assertEquals(3, graph.nodeCount());
+        assertEquals(1, graph.edgeCount());
+        assertEquals(20, graph.cost(a, b, RoutingGraph.MODE_BICYCLING), 0.01);
+        assertEquals(Float.POSITIVE_INFINITY, graph.cost(b, a, RoutingGraph.MODE_WALKING), 0);
+    }
+
+    @Test
+    public void nearestNodeOnlyConsidersTheFloorAndMode() {
+        RoutingGraph graph = grid(6, 2, 9);
+        int node = graph.nearestNode(LAT + 6 * METER, LNG + 4 * METER_LNG, 1, RoutingGraph.MODE_WALKING, 10);
+        assertEquals(1, graph.floor(node));
+        assertEquals(LAT + 5 * METER, graph.lat(node), 1e-9);
+        assertEquals(LNG + 5 * METER_LNG, graph.lng(node), 1e-9);
+        assertEquals(-1, graph.nearestNode(LAT - 50 * METER, LNG, 0, RoutingGraph.MODE_WALKING, 10));
+    }
+
+    @Test
+    public void writtenGraphReadsBackAndExtends() throws IOException {
+        RoutingGraph graph = grid(6, 3, 11);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        graph.writeTo(out);
+        RoutingGraph read = RoutingGraph.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(graph.nodeCount(), read.nodeCount());
+        assertEquals(graph.edgeCount(), read.edgeCount());
+        int last = graph.nodeCount() - 1;
+        assertArrayEquals(graph.newSearch().find(0, last, RoutingGraph.ALL_MODES), read.newSearch().find(0, last, RoutingGraph.ALL_MODES));
+
+        RoutingGraph.Builder builder = new RoutingGraph.Builder(read);
+        assertEquals(0, builder.node(LAT, LNG, 0));
+        assertEquals(graph.edgeCount(), builder.build().edgeCount());
+    }
+
+    @Test(expected = IOException.class)
+    public void otherDataIsRejected() throws IOException {
+        RoutingGraph.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+
+    @Test
+    public void searchesAcrossALargeVenueAreFast() {
+        //A 10 floor venue of 40 x 40 corridor crossings per floor
+        RoutingGraph graph = grid(40, 10, 13);
+        RoutingGraph.Search search = graph.newSearch();
+        Random random = new Random(17);
+        int queries = 200;
+        for (int q = 0; q < queries; q++) {
+            search.find(random.nextInt(graph.nodeCount()), random.nextInt(graph.nodeCount()), RoutingGraph.MODE_WALKING);
+        }
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            search.find(random.nextInt(graph.nodeCount()), random.nextInt(graph.nodeCount()), RoutingGraph.MODE_WALKING);
+        }
+        double millisPerQuery = (System.nanoTime() - start) / 1e6 / queries;
+        //A generous bound so slow test machines pass, a query takes well under a millisecond on a laptop
+        assertTrue("A query took " + millisPerQuery + " ms", millisPerQuery < 5);
+    }
+}
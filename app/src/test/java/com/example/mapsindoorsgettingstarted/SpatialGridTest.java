@@ -0,0 +1,85 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SpatialGrid}, checked against a brute force scan.
+ */
+public class SpatialGridTest {
+
+    private static final SpatialGrid.Locator<double[]> LOCATOR = new SpatialGrid.Locator<double[]>() {
+        @Override
+        public double lat(@NonNull double[] item) {
+            return item[0];
+        }
+
+        @Override
+        public double lng(@NonNull double[] item) {
+            return item[1];
+        }
+
+        @Override
+        public int floor(@NonNull double[] item) {
+            return (int) item[2];
+        }
+    };
+
+    @Test
+    public void query_matchesBruteForce() {
+        Random random = new Random(7);
+        SpatialGrid<double[]> grid = new SpatialGrid<>(0.0002, LOCATOR);
+        List<double[]> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double[] item = {38.89 + random.nextDouble() * 0.01, -77.04 + random.nextDouble() * 0.01, random.nextInt(3)};
+            items.add(item);
+            grid.add(item);
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double south = 38.89 + random.nextDouble() * 0.01;
+            double west = -77.04 + random.nextDouble() * 0.01;
+            //Mix small boxes with boxes larger than the whole data set
+            double size = q % 5 == 0 ? 0.1 : random.nextDouble() * 0.002;
+            int floor = random.nextInt(3);
+
+            List<double[]> found = new ArrayList<>();
+            grid.query(floor, south, west, south + size, west + size, found);
+
+            Set<double[]> expected = new HashSet<>();
+            for (double[] item : items) {
+                if (item[2] == floor && item[0] >= south && item[0] <= south + size && item[1] >= west && item[1] <= west + size) {
+                    expected.add(item);
+                }
+            }
+            assertEquals(expected.size(), found.size());
+            assertEquals(expected, new HashSet<>(found));
+        }
+    }
+
+    @Test
+    public void remove_dropsItem() {
+        SpatialGrid<double[]> grid = new SpatialGrid<>(0.0002, LOCATOR);
+        double[] a = {38.8974, -77.0374, 0};
+        double[] b = {38.8975, -77.0375, 0};
+        grid.add(a);
+        grid.add(b);
+        assertTrue(grid.remove(a));
+        assertFalse(grid.remove(a));
+        assertEquals(1, grid.size());
+
+        List<double[]> found = new ArrayList<>();
+        grid.query(0, 38.8, -77.1, 38.9, -77.0, found);
+        assertEquals(1, found.size());
+        assertSame(b, found.get(0));
+    }
+}
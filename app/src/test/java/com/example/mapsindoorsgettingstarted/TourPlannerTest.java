@@ -0,0 +1,108 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TourPlannerTest {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    @Test
+    public void nearestSkipsUnreachable() {
+        assertEquals(2, TourPlanner.nearest(new double[]{INF, 30, 12, 40}));
+        assertEquals(-1, TourPlanner.nearest(new double[]{INF, INF}));
+        assertEquals(-1, TourPlanner.nearest(new double[0]));
+    }
+
+    @Test
+    public void twoOptImprovesNearestNeighbour() {
+        //Stops on a line at 1, -2 and 4 from the origin. Nearest neighbour goes 1, -2, 4 for 10,
+        //while -2, 1, 4 costs 8
+        double[] positions = {1, -2, 4};
+        int[] order = TourPlanner.tour(fromOrigin(0, positions), between(positions));
+        assertArrayEquals(new int[]{1, 0, 2}, order);
+        assertEquals(8, TourPlanner.cost(order, fromOrigin(0, positions), between(positions)), 1e-9);
+    }
+
+    @Test
+    public void respectsOneWayCosts() {
+        double[] fromOrigin = {1, 1};
+        double[][] between = {
+                {0, INF},
+                {1, 0},
+        };
+        assertArrayEquals(new int[]{1, 0}, TourPlanner.tour(fromOrigin, between));
+    }
+
+    @Test
+    public void unreachableStopFailsTheTour() {
+        double[] fromOrigin = {1, INF};
+        double[][] between = {
+                {0, INF},
+                {INF, 0},
+        };
+        assertNull(TourPlanner.tour(fromOrigin, between));
+    }
+
+    @Test
+    public void closeToOptimalOnRandomVenues() {
+        Random random = new Random(42);
+        for (int run = 0; run < 50; run++) {
+            int count = 6;
+            double[] xs = new double[count + 1];
+            double[] ys = new double[count + 1];
+            for (int i = 0; i <= count; i++) {
+                xs[i] = random.nextDouble() * 100;
+                ys[i] = random.nextDouble() * 100;
+            }
+            double[] fromOrigin = new double[count];
+            double[][] between = new double[count][count];
+            for (int i = 0; i < count; i++) {
+                fromOrigin[i] = Math.hypot(xs[0] - xs[i + 1], ys[0] - ys[i + 1]);
+                for (int j = 0; j < count; j++) {
+                    between[i][j] = Math.hypot(xs[i + 1] - xs[j + 1], ys[i + 1] - ys[j + 1]);
+                }
+            }
+            int[] order = TourPlanner.tour(fromOrigin, between);
+            assertNotNull(order);
+            double optimal = bestCost(new int[count], new boolean[count], 0, fromOrigin, between);
+            //2-opt is not exact, but on small venues it should stay close to the best order
+            assertTrue(TourPlanner.cost(order, fromOrigin, between) <= optimal * 1.2);
+        }
+    }
+
+    private static double bestCost(int[] order, boolean[] used, int depth, double[] fromOrigin, double[][] between) {
+        if (depth == order.length) {
+            return TourPlanner.cost(order, fromOrigin, between);
+        }
+        double best = INF;
+        for (int i = 0; i < order.length; i++) {
+            if (!used[i]) {
+                used[i] = true;
+                order[depth] = i;
+                best = Math.min(best, bestCost(order, used, depth + 1, fromOrigin, between));
+                used[i] = false;
+            }
+        }
+        return best;
+    }
+
+    private static double[] fromOrigin(double origin, double[] positions) {
+        double[] costs = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            costs[i] = Math.abs(positions[i] - origin);
+        }
+        return costs;
+    }
+
+    private static double[][] between(double[] positions) {
+        double[][] costs = new double[positions.length][];
+        for (int i = 0; i < positions.length; i++) {
+            costs[i] = fromOrigin(positions[i], positions);
+        }
+        return costs;
+    }
+}
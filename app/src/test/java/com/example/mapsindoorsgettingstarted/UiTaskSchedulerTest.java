@@ -0,0 +1,146 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link UiTaskScheduler}. The test thread stands in for the main thread, it runs
+ * the posted UI changes when the test asks for them.
+ */
+public class UiTaskSchedulerTest {
+
+    /**
+     * Holds the tasks posted to the main thread until the test runs them.
+     */
+    private static final class FakeMainThread implements UiTaskScheduler.MainThread {
+        final Thread mThread = Thread.currentThread();
+        final BlockingQueue<Runnable> mPosted = new LinkedBlockingQueue<>();
+
+        @Override
+        public boolean isCurrent() {
+            return Thread.currentThread() == mThread;
+        }
+
+        @Override
+        public void post(@NonNull Runnable task) {
+            mPosted.add(task);
+        }
+
+        /**
+         * Waits for a posted task and runs it.
+         */
+        void runNext() throws InterruptedException {
+            Runnable task = mPosted.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Nothing was posted to the main thread", task);
+            task.run();
+        }
+    }
+
+    private final FakeMainThread mMainThread = new FakeMainThread();
+    private final UiTaskScheduler mScheduler = new UiTaskScheduler(mMainThread);
+    private final CountDownLatch mReleasePool = new CountDownLatch(1);
+
+    @After
+    public void releasePool() {
+        mReleasePool.countDown();
+    }
+
+    @Test
+    public void resultsAreAppliedOnTheMainThread() throws InterruptedException {
+        List<Thread> appliedOn = new ArrayList<>();
+        assertTrue(mScheduler.submit(mScheduler.begin("route"), () -> "route", result -> appliedOn.add(Thread.currentThread())));
+        mMainThread.runNext();
+        assertEquals(Collections.singletonList(mMainThread.mThread), appliedOn);
+    }
+
+    @Test
+    public void ticketSupersededWhileOnItsWayToTheMainThreadIsDropped() throws InterruptedException {
+        List<String> applied = new ArrayList<>();
+        UiTaskScheduler.Ticket first = mScheduler.begin("route");
+        assertTrue(mScheduler.submit(first, () -> "first", applied::add));
+        //Wait for the result to be posted, then supersede it before the main thread gets to it
+        Runnable posted = mMainThread.mPosted.poll(5, TimeUnit.SECONDS);
+        assertNotNull(posted);
+        mScheduler.begin("route");
+        posted.run();
+        assertEquals(Collections.emptyList(), applied);
+    }
+
+    @Test
+    public void postOnTheMainThreadRunsRightAway() {
+        List<String> applied = new ArrayList<>();
+        mScheduler.post(mScheduler.begin("search"), () -> applied.add("now"));
+        assertEquals(Collections.singletonList("now"), applied);
+        assertTrue(mMainThread.mPosted.isEmpty());
+    }
+
+    @Test
+    public void newestTicketOfAKeyWins() throws InterruptedException {
+        blockPool();
+        List<String> applied = new ArrayList<>();
+        UiTaskScheduler.Ticket first = mScheduler.begin("route");
+        assertTrue(mScheduler.submit(first, () -> "first", applied::add));
+        //Superseded while still queued, so its work is skipped when it starts
+        UiTaskScheduler.Ticket second = mScheduler.begin("route");
+        assertTrue(mScheduler.submit(second, () -> "second", applied::add));
+        assertFalse(mScheduler.isCurrent(first));
+        mReleasePool.countDown();
+        //The blocking tasks post their empty results as well
+        while (applied.isEmpty()) {
+            mMainThread.runNext();
+        }
+        assertEquals(Collections.singletonList("second"), applied);
+    }
+
+    @Test
+    public void supersededAndCancelledTicketsAreDroppedRightAway() {
+        List<String> applied = new ArrayList<>();
+        UiTaskScheduler.Ticket superseded = mScheduler.begin("search");
+        UiTaskScheduler.Ticket current = mScheduler.begin("search");
+        assertFalse(mScheduler.submit(superseded, () -> "stale", applied::add));
+
+        mScheduler.cancel("search");
+        assertFalse(mScheduler.isCurrent(current));
+        mScheduler.post(current, () -> applied.add("cancelled"));
+        assertEquals(Collections.emptyList(), applied);
+        //Other keys are not affected
+        assertTrue(mScheduler.isCurrent(mScheduler.begin("route")));
+    }
+
+    @Test
+    public void fullPoolDropsTheNewestTask() throws InterruptedException {
+        blockPool();
+        for (int i = 0; i < UiTaskScheduler.QUEUE_CAPACITY; i++) {
+            assertTrue(mScheduler.submit(mScheduler.begin("queued" + i), () -> null, result -> { }));
+        }
+        assertFalse(mScheduler.submit(mScheduler.begin("overflow"), () -> null, result -> { }));
+        assertEquals(1, mScheduler.getRejectedCount());
+    }
+
+    /**
+     * Occupies every thread of the pool until the test releases it.
+     */
+    private void blockPool() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(UiTaskScheduler.POOL_SIZE);
+        for (int i = 0; i < UiTaskScheduler.POOL_SIZE; i++) {
+            assertTrue(mScheduler.submit(mScheduler.begin("block" + i), () -> {
+                started.countDown();
+                mReleasePool.await();
+                return null;
+            }, result -> { }));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+}
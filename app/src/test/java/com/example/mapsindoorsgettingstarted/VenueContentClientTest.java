@@ -0,0 +1,108 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link VenueContentClient} against a local stand-in for the content server.
+ */
+public class VenueContentClientTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockWebServer mServer;
+    private VenueContentClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClient = new VenueContentClient(mServer.url("/"), mFolder.newFolder("cache"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    /**
+     * The content server marks content as stale right away, with an ETag to revalidate it.
+     */
+    private static MockResponse content(String json, String etag) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeader("Cache-Control", "max-age=0")
+                .setHeader("ETag", etag)
+                .setBody(json);
+    }
+
+    @Test
+    public void unchangedContentIsRevalidatedAndNotParsedAgain() throws Exception {
+        mServer.enqueue(content(VenueContentParserTest.payload(10), "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        mServer.enqueue(content(VenueContentParserTest.payload(20), "\"v2\""));
+
+        VenueContentClient.Loaded first = mClient.load("venue1");
+        assertEquals(VenueContentClient.Source.NETWORK, first.mSource);
+        assertEquals(10, first.mContent.size());
+        RecordedRequest request = mServer.takeRequest();
+        assertEquals("/venues/venue1/content.json", request.getPath());
+        assertNull(request.getHeader("If-None-Match"));
+
+        VenueContentClient.Loaded second = mClient.load("venue1");
+        assertEquals(VenueContentClient.Source.NOT_MODIFIED, second.mSource);
+        assertSame(first.mContent, second.mContent);
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+
+        VenueContentClient.Loaded third = mClient.load("venue1");
+        assertEquals(VenueContentClient.Source.NETWORK, third.mSource);
+        assertEquals(20, third.mContent.size());
+    }
+
+    @Test
+    public void cachedContentIsUsedOffline() throws Exception {
+        mServer.enqueue(content(VenueContentParserTest.payload(10), "\"v1\""));
+        VenueContentClient.Loaded online = mClient.load("venue1");
+        mServer.shutdown();
+
+        VenueContentClient.Loaded offline = mClient.load("venue1");
+        assertEquals(VenueContentClient.Source.CACHE, offline.mSource);
+        assertSame(online.mContent, offline.mContent);
+    }
+
+    @Test(expected = IOException.class)
+    public void failureWithoutCacheIsReported() throws IOException {
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mClient.load("venue1");
+    }
+
+    @Test
+    public void largePayloadsAreParsedWhileStreaming() throws Exception {
+        //About 5 MB, sent twice so the second load runs on warmed up code
+        String json = VenueContentParserTest.payload(20000);
+        mServer.enqueue(content(json, "\"v1\""));
+        mServer.enqueue(content(json, "\"v2\""));
+        mClient.load("venue1");
+
+        long start = System.nanoTime();
+        VenueContentClient.Loaded loaded = mClient.load("venue1");
+        long nanos = System.nanoTime() - start;
+
+        assertEquals(VenueContentClient.Source.NETWORK, loaded.mSource);
+        assertEquals(20000, loaded.mContent.size());
+        //A generous bound so slow test machines pass
+        assertTrue("Loading took " + nanos / 1_000_000 + " ms", nanos < 5_000_000_000L);
+    }
+}
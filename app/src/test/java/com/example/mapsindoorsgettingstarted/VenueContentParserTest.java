@@ -0,0 +1,121 @@
+package com.example.mapsindoorsgettingstarted;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link VenueContentParser}.
+ */
+public class VenueContentParserTest {
+
+    private static final String[] KEYS = {"phone", "email", "floorArea", "accessible", "department"};
+
+    /**
+     * Builds venue content JSON of roughly 250 bytes per location, with fields the parser does not know.
+     */
+    static String payload(int locationCount) {
+        StringBuilder json = new StringBuilder(locationCount * 260);
+        json.append("{\"venueId\":\"venue1\",\"generated\":\"2021-03-01\",\"locations\":[");
+        for (int i = 0; i < locationCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"loc").append(i).append("\",\"openingHours\":[");
+            for (int day = 0; day < 5; day++) {
+                if (day > 0) {
+                    json.append(',');
+                }
+                json.append("{\"day\":").append(day).append(",\"open\":\"08:00\",\"close\":\"17:30\"}");
+            }
+            json.append("],\"metadata\":{");
+            for (int k = 0; k < KEYS.length; k++) {
+                if (k > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(KEYS[k]).append("\":");
+                if (k == 3) {
+                    json.append(i % 2 == 0);
+                } else {
+                    json.append("\"value ").append(i).append('"');
+                }
+            }
+            json.append("},\"extra\":{\"nested\":[1,2,3]}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @Test
+    public void contentIsParsed() throws IOException {
+        VenueContent content = VenueContentParser.parse(new StringReader("{\"venueId\":\"v\",\"locations\":["
+                + "{\"id\":\"a\",\"openingHours\":[{\"day\":0,\"open\":\"08:00\",\"close\":\"17:30\"},{\"day\":6,\"open\":\"22:00\",\"close\":\"02:00\"}],"
+                + "\"metadata\":{\"phone\":\"123\",\"seats\":12,\"accessible\":true,\"nested\":{\"a\":1}}},"
+                + "{\"id\":\"b\"}]}"));
+        assertEquals("v", content.getVenueId());
+        assertEquals(2, content.size());
+        VenueContent.LocationContent a = content.get("a");
+        assertTrue(a.hasOpeningHours());
+        assertTrue(a.isOpenAt(8 * 60));
+        assertFalse(a.isOpenAt(17 * 60 + 30));
+        assertFalse(a.isOpenAt(VenueContent.MINUTES_PER_DAY + 9 * 60));
+        //Sunday night into Monday morning
+        assertTrue(a.isOpenAt(6 * VenueContent.MINUTES_PER_DAY + 23 * 60));
+        assertTrue(a.isOpenAt(60));
+        assertFalse(a.isOpenAt(3 * 60));
+        assertEquals("123", a.getMetadata().get("phone"));
+        assertEquals("12", a.getMetadata().get("seats"));
+        assertEquals("true", a.getMetadata().get("accessible"));
+        assertFalse(a.getMetadata().containsKey("nested"));
+        //No opening hours means never closed
+        assertFalse(content.get("b").hasOpeningHours());
+        assertTrue(content.get("b").isOpenAt(3 * 60));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedContentIsRejected() throws IOException {
+        VenueContentParser.parse(new StringReader("{\"locations\":{\"id\":\"a\"}}"));
+    }
+
+    @Test
+    public void minuteOfDayIsParsed() {
+        assertEquals(8 * 60 + 30, VenueContentParser.minuteOfDay("08:30"));
+        assertEquals(24 * 60, VenueContentParser.minuteOfDay("24:00"));
+        assertEquals(-1, VenueContentParser.minuteOfDay("8"));
+        assertEquals(-1, VenueContentParser.minuteOfDay("08:60"));
+        assertEquals(-1, VenueContentParser.minuteOfDay("ab:cd"));
+    }
+
+    @Test
+    public void streamingAllocatesLessThanATree() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+        //About 5 MB
+        String json = payload(20000);
+        VenueContentParser.parse(new StringReader(json));
+        JsonParser.parseReader(new StringReader(json));
+
+        long start = allocations.getThreadAllocatedBytes(thread);
+        VenueContent content = VenueContentParser.parse(new StringReader(json));
+        long streaming = allocations.getThreadAllocatedBytes(thread) - start;
+
+        start = allocations.getThreadAllocatedBytes(thread);
+        JsonElement tree = JsonParser.parseReader(new StringReader(json));
+        long treeBytes = allocations.getThreadAllocatedBytes(thread) - start;
+
+        assertEquals(20000, content.size());
+        assertNotNull(tree);
+        assertTrue("Streaming allocated " + streaming + " bytes, the tree " + treeBytes, streaming < treeBytes);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link VenueSnapshot}.
+ */
+public class VenueSnapshotTest {
+
+    private static VenueSnapshot.Builder smallSnapshot() {
+        return new VenueSnapshot.Builder()
+                .add("b", "Oval Office", "Office", 1, "1", 38.8975, -77.0374)
+                .add("a", "Caf\u00e9", "Kitchen", 0, "G", 38.8976, -77.0375)
+                .add("c", null, "Office", 1, "1", 38.8977, -77.0376);
+    }
+
+    @Test
+    public void roundTrip_keepsLocationsSortedById() throws IOException {
+        VenueSnapshot snapshot = VenueSnapshot.wrap(ByteBuffer.wrap(smallSnapshot().toByteArray(1234)));
+        assertEquals(3, snapshot.size());
+        assertEquals(1234, snapshot.getWrittenAt());
+        assertEquals("a", snapshot.id(0));
+        assertEquals("b", snapshot.id(1));
+
+        int index = snapshot.indexOf("a");
+        assertEquals("Caf\u00e9", snapshot.name(index));
+        assertEquals("Kitchen", snapshot.type(index));
+        assertEquals(0, snapshot.floor(index));
+        assertEquals("G", snapshot.floorName(index));
+        assertEquals(38.8976, snapshot.lat(index), 0);
+        assertEquals(-77.0375, snapshot.lng(index), 0);
+
+        index = snapshot.indexOf("c");
+        assertNull(snapshot.name(index));
+        assertEquals(-1, snapshot.indexOf("d"));
+    }
+
+    @Test
+    public void crc_identifiesContent() throws IOException {
+        VenueSnapshot first = VenueSnapshot.wrap(ByteBuffer.wrap(smallSnapshot().toByteArray(1)));
+        VenueSnapshot second = VenueSnapshot.wrap(ByteBuffer.wrap(smallSnapshot().toByteArray(2)));
+        VenueSnapshot changed = VenueSnapshot.wrap(ByteBuffer.wrap(smallSnapshot()
+                .add("d", "New", "Office", 2, "2", 0, 0).toByteArray(1)));
+        assertEquals(first.getCrc(), second.getCrc());
+        assertNotEquals(first.getCrc(), changed.getCrc());
+    }
+
+    @Test
+    public void longStrings_areCutOnACharacterBoundary() throws IOException {
+        StringBuilder name = new StringBuilder("a");
+        //The cut at 65535 bytes falls in the middle of the 3 byte euro signs
+        while (name.length() < 30_000) {
+            name.append('\u20ac');
+        }
+        VenueSnapshot snapshot = VenueSnapshot.wrap(ByteBuffer.wrap(new VenueSnapshot.Builder()
+                .add("a", name.toString(), null, 0, null, 0, 0).toByteArray(1)));
+        String read = snapshot.name(0);
+        assertEquals(1 + 65532 / 3, read.length());
+        assertTrue(name.toString().startsWith(read));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrap_rejectsCorruptData() throws IOException {
+        byte[] bytes = smallSnapshot().toByteArray(1);
+        bytes[bytes.length - 1] ^= 1;
+        VenueSnapshot.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrap_rejectsOtherVersions() throws IOException {
+        byte[] bytes = smallSnapshot().toByteArray(1);
+        bytes[7] = (byte) (VenueSnapshot.FORMAT_VERSION + 1);
+        VenueSnapshot.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrap_rejectsTruncatedData() throws IOException {
+        byte[] bytes = smallSnapshot().toByteArray(1);
+        VenueSnapshot.wrap(ByteBuffer.wrap(bytes, 0, bytes.length - 4).slice());
+    }
+
+    @Test
+    public void map_readsFile() throws IOException {
+        VenueSnapshot.Builder builder = new VenueSnapshot.Builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.add("loc" + i, "Room " + i, "Office", i % 5, String.valueOf(i % 5), 38.89 + i * 1e-6, -77.04);
+        }
+        File file = File.createTempFile("snapshot", ".bin");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(builder.toByteArray(1));
+            }
+            VenueSnapshot snapshot = VenueSnapshot.map(file);
+            assertEquals(10_000, snapshot.size());
+            assertEquals("Room 4711", snapshot.name(snapshot.indexOf("loc4711")));
+        } finally {
+            file.delete();
+        }
+    }
+}
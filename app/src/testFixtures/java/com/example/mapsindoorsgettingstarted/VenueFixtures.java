@@ -0,0 +1,85 @@
+package com.example.mapsindoorsgettingstarted;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic venues for the benchmarks. The same size and seed always give the same
+ * locations, so results of different runs and of the JVM and on-device benchmarks can be compared.
+ */
+public final class VenueFixtures {
+
+    public static final long SEED = 42;
+
+    private static final String[] TYPES = {"Meetingroom", "Office", "Toilet", "Elevator", "Stairs", "Exit", "Kitchen", "Desk"};
+    private static final String[] WORDS = {"East", "West", "North", "South", "Oval", "Blue", "Green", "Library", "Lobby", "Study", "Cabinet", "Press", "Situation"};
+    //Queries users type, partial words and typos included
+    private static final String[] QUERIES = {"office", "meet", "toilet east", "lobby", "desk 4", "libary", "stairs", "green kitch"};
+
+    //A venue of roughly a kilometer square, about the size of a campus
+    private static final double SOUTH = 38.89;
+    private static final double WEST = -77.04;
+    private static final double SIZE_DEGREES = 0.01;
+    private static final int FLOORS = 10;
+
+    /**
+     * The locations of a venue as parallel arrays.
+     */
+    public static final class Venue {
+        public final String[] ids;
+        public final String[] names;
+        public final List<String>[] aliases;
+        public final String[] types;
+        public final int[] floors;
+        public final double[] lats;
+        public final double[] lngs;
+
+        @SuppressWarnings("unchecked")
+        Venue(int size) {
+            ids = new String[size];
+            names = new String[size];
+            aliases = new List[size];
+            types = new String[size];
+            floors = new int[size];
+            lats = new double[size];
+            lngs = new double[size];
+        }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    private VenueFixtures() {
+    }
+
+    public static Venue venue(int locationCount) {
+        Random random = new Random(SEED);
+        Venue venue = new Venue(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            venue.ids[i] = "loc" + i;
+            venue.names[i] = WORDS[random.nextInt(WORDS.length)] + " " + type + " " + i;
+            venue.aliases[i] = Collections.singletonList("R" + i);
+            venue.types[i] = type;
+            venue.floors[i] = random.nextInt(FLOORS);
+            venue.lats[i] = SOUTH + random.nextDouble() * SIZE_DEGREES;
+            venue.lngs[i] = WEST + random.nextDouble() * SIZE_DEGREES;
+        }
+        return venue;
+    }
+
+    public static String[] queries() {
+        return QUERIES.clone();
+    }
+
+    /**
+     * @return the bounds of a camera looking at a tenth of the venue, as south, west, north, east
+     */
+    public static double[] cameraBounds() {
+        double center = SIZE_DEGREES / 2;
+        double half = SIZE_DEGREES / 20;
+        return new double[]{SOUTH + center - half, WEST + center - half, SOUTH + center + half, WEST + center + half};
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mapsindoorsgettingstarted;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mapsindoors.mapssdk.MPLocation;
+import com.mapsindoors.mapssdk.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic SDK objects for the on-device benchmarks, built from {@link VenueFixtures} so they
+ * hold the same data as the JVM benchmarks use.
+ */
+final class DeviceFixtures {
+
+    private static final String[] MANEUVERS = {"straight", "turn-left", "turn-right", "elevator", "stairs", "slight-left", "slight-right"};
+
+    private DeviceFixtures() {
+    }
+
+    static List<MPLocation> locations(int locationCount) {
+        VenueFixtures.Venue venue = VenueFixtures.venue(locationCount);
+        List<MPLocation> locations = new ArrayList<>(locationCount);
+        for (int i = 0; i < locationCount; i++) {
+            locations.add(new MPLocation.Builder(venue.ids[i])
+                    .setPosition(venue.lats[i], venue.lngs[i])
+                    .setFloor(venue.floors[i])
+                    .setName(venue.names[i])
+                    .setType(venue.types[i])
+                    .build());
+        }
+        return locations;
+    }
+
+    /**
+     * Builds the JSON of a route, in the shape the routing service returns, so a fresh
+     * {@link Route} can be parsed for every measurement. The SDK has no public way to build a
+     * route, so benchmarks check the parsed route holds the data, see {@link RouteBenchmark}.
+     * @param legCount the number of legs, a floor change between each
+     * @param stepsPerLeg the number of steps in each leg
+     * @param pointsPerStep the number of coordinates in the geometry of each step
+     */
+    static String routeJson(int legCount, int stepsPerLeg, int pointsPerStep) {
+        Random random = new Random(VenueFixtures.SEED);
+        double lat = 38.895;
+        double lng = -77.035;
+        JsonArray legs = new JsonArray();
+        int routeDistance = 0;
+        int routeDuration = 0;
+        for (int l = 0; l < legCount; l++) {
+            JsonArray steps = new JsonArray();
+            int legDistance = 0;
+            int legDuration = 0;
+            for (int s = 0; s < stepsPerLeg; s++) {
+                JsonArray geometry = new JsonArray();
+                for (int p = 0; p < pointsPerStep; p++) {
+                    JsonObject coordinate = new JsonObject();
+                    coordinate.addProperty("lat", lat);
+                    coordinate.addProperty("lng", lng);
+                    coordinate.addProperty("zLevel", l);
+                    geometry.add(coordinate);
+                    lat += (random.nextDouble() - 0.5) * 0.0001;
+                    lng += (random.nextDouble() - 0.5) * 0.0001;
+                }
+                JsonObject step = new JsonObject();
+                step.add("geometry", geometry);
+                step.addProperty("maneuver", MANEUVERS[random.nextInt(MANEUVERS.length)]);
+                int distance = 10 + random.nextInt(40);
+                int duration = 10 + random.nextInt(40);
+                step.addProperty("distance", distance);
+                step.addProperty("duration", duration);
+                steps.add(step);
+                legDistance += distance;
+                legDuration += duration;
+            }
+            JsonObject leg = new JsonObject();
+            leg.add("steps", steps);
+            leg.addProperty("distance", legDistance);
+            leg.addProperty("duration", legDuration);
+            legs.add(leg);
+            routeDistance += legDistance;
+            routeDuration += legDuration;
+        }
+        JsonObject route = new JsonObject();
+        route.add("legs", legs);
+        route.addProperty("distance", routeDistance);
+        route.addProperty("duration", routeDuration);
+        return route.toString();
+    }
+
+    static Route route(Gson gson, String json) {
+        return gson.fromJson(json, Route.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.gson.Gson;
+import com.mapsindoors.mapssdk.Route;
+import com.mapsindoors.mapssdk.RouteLeg;
+import com.mapsindoors.mapssdk.RouteStep;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * The work done on a route when it arrives: building the step instructions and the flattened
+ * geometry, and the summary shown by the navigation fragment.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RouteBenchmark {
+
+    private static final int LEGS = 4;
+    private static final int STEPS_PER_LEG = 12;
+    private static final int POINTS_PER_STEP = 8;
+    private static final String ROUTE_JSON = DeviceFixtures.routeJson(LEGS, STEPS_PER_LEG, POINTS_PER_STEP);
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final Gson mGson = new Gson();
+
+    /**
+     * Fails if the route JSON no longer matches the fields of the SDK, an empty route would measure nothing.
+     */
+    @Before
+    public void checkRoute() {
+        Route route = DeviceFixtures.route(mGson, ROUTE_JSON);
+        assertEquals(LEGS, route.getLegs().size());
+        for (RouteLeg leg : route.getLegs()) {
+            assertEquals(STEPS_PER_LEG, leg.getSteps().size());
+            assertTrue(leg.getDistance() > 0);
+            assertTrue(leg.getDuration() > 0);
+            for (RouteStep step : leg.getSteps()) {
+                assertEquals(POINTS_PER_STEP, step.getGeometry().size());
+                assertNotNull(step.getManeuver());
+            }
+        }
+        assertTrue(route.getDistance() > 0);
+    }
+
+    @Test
+    public void instructions() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            //Instructions are memoized per route, so every measurement needs a route of its own
+            state.pauseTiming();
+            Route route = DeviceFixtures.route(mGson, ROUTE_JSON);
+            state.resumeTiming();
+            RouteInstructions.of(route);
+        }
+    }
+
+    @Test
+    public void geometry() {
+        Route route = DeviceFixtures.route(mGson, ROUTE_JSON);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            RouteGeometry.from(route);
+        }
+    }
+
+    @Test
+    public void summary() {
+        Route route = DeviceFixtures.route(mGson, ROUTE_JSON);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            NavigationFragment.describeDistance(route);
+            NavigationFragment.describeDuration(route);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.mapsindoors.mapssdk.MPLocation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Refining a shown result list locally, as the search pipeline does while the user keeps typing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmark {
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void filter_30() {
+        filter(LocationSearchPipeline.TAKE);
+    }
+
+    @Test
+    public void filter_1000() {
+        filter(1000);
+    }
+
+    private void filter(int locationCount) {
+        List<MPLocation> locations = DeviceFixtures.locations(locationCount);
+        String[] queries = VenueFixtures.queries();
+        int next = 0;
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            next = (next + 1) % queries.length;
+            LocationSearchPipeline.filter(locations, queries[next]);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Building and searching the on-device location index.
+ */
+@State(Scope.Benchmark)
+public class LocationIndexBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int locationCount;
+
+    //The page size of LocationSearchPipeline, which is not available on the JVM
+    private static final int TAKE = 30;
+
+    private VenueFixtures.Venue mVenue;
+    private LocationIndex mIndex;
+    private String[] mQueries;
+    private int mNextQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mVenue = VenueFixtures.venue(locationCount);
+        mIndex = build();
+        mQueries = VenueFixtures.queries();
+    }
+
+    @Benchmark
+    public LocationIndex build() {
+        LocationIndex.Builder builder = new LocationIndex.Builder();
+        for (int i = 0; i < mVenue.size(); i++) {
+            builder.add(mVenue.ids[i], mVenue.names[i], mVenue.aliases[i], mVenue.types[i], String.valueOf(mVenue.floors[i]));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public List<String> search() {
+        mNextQuery = (mNextQuery + 1) % mQueries.length;
+        return mIndex.search(mQueries[mNextQuery], TAKE);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building the cluster hierarchy for a result set, and reading the clusters of a zoom level.
+ */
+@State(Scope.Benchmark)
+public class MarkerClusterIndexBenchmark {
+
+    //The values SearchResultCuller uses, on an xxhdpi display
+    private static final float DENSITY = 3;
+    private static final int RADIUS_PX = Math.round(60 * DENSITY);
+    private static final int MAX_ZOOM = 20;
+
+    @Param({"1000", "10000", "50000"})
+    public int pointCount;
+
+    @Param({"17", "20"})
+    public int zoom;
+
+    private VenueFixtures.Venue mVenue;
+    private MarkerClusterIndex mIndex;
+    private double[] mBounds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mVenue = VenueFixtures.venue(pointCount);
+        mIndex = build();
+        mBounds = VenueFixtures.cameraBounds();
+    }
+
+    @Benchmark
+    public MarkerClusterIndex build() {
+        return new MarkerClusterIndex(mVenue.lats, mVenue.lngs, RADIUS_PX, MAX_ZOOM, DENSITY);
+    }
+
+    @Benchmark
+    public void query(Blackhole blackhole) {
+        mIndex.query(zoom, mBounds[0], mBounds[1], mBounds[2], mBounds[3],
+                (lat, lng, count, point) -> blackhole.consume(count));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Simplifying the polyline of a long route across a campus for each level of detail, as done once
+ * per route before it is drawn.
+ */
+@State(Scope.Benchmark)
+public class PolylineSimplifierBenchmark {
+
+    private static final double LAT = 38.89;
+    private static final double LNG = -77.04;
+    //Routing service geometry has a vertex about every half meter along curved paths
+    private static final double SPACING_M = 0.5;
+    private static final int VERTICES_PER_FLOOR = 2000;
+
+    //Vertices of the route, 5000 is a walk of 2.5 kilometers
+    @Param({"5000", "50000"})
+    public int vertices;
+
+    //The level of detail, the last one is not simplified and so not measured
+    @Param({"0", "1", "2"})
+    public int band;
+
+    private double[] mLats;
+    private double[] mLngs;
+    private int[] mFloors;
+    private double mTolerance;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(VenueFixtures.SEED);
+        double meter = 1 / GeoMath.METERS_PER_DEGREE;
+        double meterLng = 1 / GeoMath.metersPerDegreeLng(LAT);
+        mLats = new double[vertices];
+        mLngs = new double[vertices];
+        mFloors = new int[vertices];
+        double x = 0;
+        double y = 0;
+        double heading = 0;
+        for (int i = 0; i < vertices; i++) {
+            //Gentle curves with a sharp turn now and then, jittered by a few centimeters
+            heading += random.nextInt(50) == 0 ? Math.PI / 2 * (random.nextBoolean() ? 1 : -1) : random.nextGaussian() * 0.02;
+            x += Math.cos(heading) * SPACING_M;
+            y += Math.sin(heading) * SPACING_M;
+            mLats[i] = LAT + (y + random.nextGaussian() * 0.05) * meter;
+            mLngs[i] = LNG + (x + random.nextGaussian() * 0.05) * meterLng;
+            mFloors[i] = i / VERTICES_PER_FLOOR;
+        }
+        mTolerance = PolylineSimplifier.tolerance(band, LAT);
+    }
+
+    @Benchmark
+    public int[] simplify() {
+        return PolylineSimplifier.simplify(mLats, mLngs, mFloors, 0, vertices, mTolerance);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.mapsindoorsgettingstarted;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Answering route queries on the on-device routing graph of a multi-floor venue, from snapping the
+ * origin to the graph to the path found by A*.
+ */
+@State(Scope.Benchmark)
+public class RoutingGraphBenchmark {
+
+    private static final double LAT = 38.89;
+    private static final double LNG = -77.04;
+    //Corridor crossings are this far apart
+    private static final double SPACING_M = 5;
+    private static final int FLOORS = 10;
+    private static final int ELEVATORS_PER_FLOOR = 4;
+    private static final int QUERIES = 256;
+    //The distance LocalRouter snaps origins and destinations within
+    private static final double SNAP_DISTANCE_M = 15;
+
+    //Corridor crossings along each side of a floor
+    @Param({"20", "50"})
+    public int crossings;
+
+    private RoutingGraph mGraph;
+    private RoutingGraph.Search mSearch;
+    private int[] mFrom;
+    private int[] mTo;
+    private int mQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(VenueFixtures.SEED);
+        double meter = 1 / GeoMath.METERS_PER_DEGREE;
+        double meterLng = 1 / GeoMath.metersPerDegreeLng(LAT);
+        RoutingGraph.Builder builder = new RoutingGraph.Builder();
+        int[][][] nodes = new int[FLOORS][crossings][crossings];
+        for (int f = 0; f < FLOORS; f++) {
+            for (int y = 0; y < crossings; y++) {
+                for (int x = 0; x < crossings; x++) {
+                    nodes[f][y][x] = builder.node(LAT + y * SPACING_M * meter, LNG + x * SPACING_M * meterLng, f);
+                }
+            }
+            //A tenth of the corridors is walled off, so paths have to go around
+            for (int y = 0; y < crossings; y++) {
+                for (int x = 0; x < crossings; x++) {
+                    if (x + 1 < crossings && random.nextInt(10) != 0) {
+                        builder.addTwoWayEdge(nodes[f][y][x], nodes[f][y][x + 1], RoutingGraph.MODE_WALKING);
+                    }
+                    if (y + 1 < crossings && random.nextInt(10) != 0) {
+                        builder.addTwoWayEdge(nodes[f][y][x], nodes[f][y + 1][x], RoutingGraph.MODE_WALKING);
+                    }
+                }
+            }
+        }
+        for (int f = 0; f + 1 < FLOORS; f++) {
+            for (int i = 0; i < ELEVATORS_PER_FLOOR; i++) {
+                int y = random.nextInt(crossings);
+                int x = random.nextInt(crossings);
+                builder.addTwoWayEdge(nodes[f][y][x], nodes[f + 1][y][x], RoutingGraph.MODE_WALKING);
+            }
+        }
+        mGraph = builder.build();
+        mSearch = mGraph.newSearch();
+        mFrom = new int[QUERIES];
+        mTo = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            mFrom[i] = random.nextInt(mGraph.nodeCount());
+            mTo[i] = random.nextInt(mGraph.nodeCount());
+        }
+    }
+
+    @Benchmark
+    public int[] find() {
+        int query = mQuery++ & (QUERIES - 1);
+        return mSearch.find(mFrom[query], mTo[query], RoutingGraph.MODE_WALKING);
+    }
+
+    @Benchmark
+    public int nearestNode() {
+        int node = mTo[mQuery++ & (QUERIES - 1)];
+        return mGraph.nearestNode(mGraph.lat(node) + 0.00001, mGraph.lng(node), mGraph.floor(node),
+                RoutingGraph.MODE_WALKING, SNAP_DISTANCE_M);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.mapsindoorsgettingstarted;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Culling search results to the camera bounds, and applying a changed result set to the grid.
+ */
+@State(Scope.Benchmark)
+public class SpatialGridBenchmark {
+
+    //The cell size SearchResultCuller uses
+    private static final double CELL_DEGREES = 0.0002;
+
+    @Param({"150", "1000", "10000"})
+    public int locationCount;
+
+    private VenueFixtures.Venue mVenue;
+    private SpatialGrid<Integer> mGrid;
+    private double[] mBounds;
+    private final List<Integer> mOut = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mVenue = VenueFixtures.venue(locationCount);
+        mBounds = VenueFixtures.cameraBounds();
+        mGrid = new SpatialGrid<>(CELL_DEGREES, new SpatialGrid.Locator<Integer>() {
+            @Override
+            public double lat(@NonNull Integer location) {
+                return mVenue.lats[location];
+            }
+
+            @Override
+            public double lng(@NonNull Integer location) {
+                return mVenue.lngs[location];
+            }
+
+            @Override
+            public int floor(@NonNull Integer location) {
+                return mVenue.floors[location];
+            }
+        });
+        for (int i = 0; i < locationCount; i++) {
+            mGrid.add(i);
+        }
+    }
+
+    @Benchmark
+    public int query() {
+        mOut.clear();
+        mGrid.query(0, mBounds[0], mBounds[1], mBounds[2], mBounds[3], mOut);
+        return mOut.size();
+    }
+
+    /**
+     * Removes and adds back a tenth of the locations, like a refined query does.
+     */
+    @Benchmark
+    public int update() {
+        int changed = locationCount / 10;
+        for (int i = 0; i < changed; i++) {
+            mGrid.remove(i);
+        }
+        for (int i = 0; i < changed; i++) {
+            mGrid.add(i);
+        }
+        return mGrid.size();
+    }
+}